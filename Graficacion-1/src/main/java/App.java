@@ -1,15 +1,30 @@
 import java.awt.BorderLayout;
 import java.awt.EventQueue;
+import java.awt.Font;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import javax.swing.ImageIcon;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 import javax.swing.KeyStroke;
 
 public class App extends JFrame {
@@ -21,9 +36,43 @@ public class App extends JFrame {
 
     // Estado actual
     private BufferedImage currentImage;
-    private BufferedImage originalImage;
     private File currentFile;
 
+    // Historial de deshacer/rehacer (también guarda la imagen original)
+    private final EditHistory history = new EditHistory(EditHistory.defaultBudget());
+    private JMenuItem itemDeshacer;
+    private JMenuItem itemRehacer;
+
+    // Operaciones en segundo plano y barra de estado
+    private final OperationRunner runner = new OperationRunner(TileScheduler.common());
+    private JLabel estado;
+    private JProgressBar progreso;
+
+    // Apertura en dos tiempos (vista previa y luego imagen completa); aperturas solo se usa en el EDT.
+    private final ExecutorService cargador = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "apertura");
+        t.setDaemon(true);
+        return t;
+    });
+    private int aperturas;
+
+    // Estadísticas de la imagen actual (histograma, Otsu) calculadas fuera del EDT.
+    private final ExecutorService estadisticas = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "estadisticas");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Operación morfológica con elemento estructurante de (2rx+1)x(2ry+1). */
+    private interface OperacionConRadio {
+        BufferedImage apply(BufferedImage img, int rx, int ry, TileScheduler exec);
+    }
+
+    /** Variante de una operación que modifica img en sitio solo dentro de roi (RegionProcessor). */
+    private interface OperacionEnRegion {
+        BufferedImage apply(BufferedImage img, Rectangle roi, TileScheduler exec);
+    }
+
     public static void main(String[] args) {
         EventQueue.invokeLater(() -> {
             try {
@@ -45,8 +94,21 @@ public class App extends JFrame {
 
         setLayout(new BorderLayout());
         viewer = new ImageViewerPanel();
+        viewer.addPropertyChangeListener(ImageViewerPanel.SELECTION_PROPERTY, e -> {
+            Rectangle sel = viewer.getSelection();
+            estado.setText(sel == null ? " " : "Selección: " + sel.width + "x" + sel.height
+                    + " en (" + sel.x + ", " + sel.y + ")");
+        });
         add(viewer, BorderLayout.CENTER);
 
+        JPanel barraEstado = new JPanel(new BorderLayout(8, 0));
+        estado = new JLabel(" ");
+        progreso = new JProgressBar(0, 100);
+        progreso.setVisible(false);
+        barraEstado.add(estado, BorderLayout.CENTER);
+        barraEstado.add(progreso, BorderLayout.EAST);
+        add(barraEstado, BorderLayout.SOUTH);
+
         crearMenu();
     }
 
@@ -103,8 +165,20 @@ public class App extends JFrame {
         JMenuItem exportTIFF = new JMenuItem("TIFF");
         exportTIFF.addActionListener(e -> accionExportar("tiff"));
         submenuExportar.add(exportTIFF);
+        submenuExportar.addSeparator();
+        JMenuItem exportVarios = new JMenuItem("Varios formatos a la vez...");
+        exportVarios.addActionListener(e -> accionExportarVarios());
+        submenuExportar.add(exportVarios);
         menuArchivo.add(submenuExportar);
 
+        JMenuItem itemMiniaturas = new JMenuItem("Generar miniaturas de una carpeta...");
+        itemMiniaturas.addActionListener(e -> accionMiniaturas());
+        menuArchivo.add(itemMiniaturas);
+
+        JMenuItem itemCompresion = new JMenuItem("Ajustes de compresión...");
+        itemCompresion.addActionListener(e -> accionAjustesCompresion());
+        menuArchivo.add(itemCompresion);
+
         menuArchivo.addSeparator();
         JMenuItem itemCerrar = new JMenuItem("Cerrar");
         itemCerrar.setMnemonic(KeyEvent.VK_R);
@@ -117,16 +191,30 @@ public class App extends JFrame {
         menuEdicion.setMnemonic(KeyEvent.VK_E);
         menuBar.add(menuEdicion);
 
-        JMenuItem itemDeshacer = new JMenuItem("Deshacer");
-        itemDeshacer.setEnabled(false); // La lógica de Undo/Redo es compleja
+        itemDeshacer = new JMenuItem("Deshacer");
+        itemDeshacer.setEnabled(false);
         itemDeshacer.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        itemDeshacer.addActionListener(e -> deshacer());
         menuEdicion.add(itemDeshacer);
         
-        JMenuItem itemRehacer = new JMenuItem("Rehacer");
+        itemRehacer = new JMenuItem("Rehacer");
         itemRehacer.setEnabled(false);
         itemRehacer.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        itemRehacer.addActionListener(e -> rehacer());
         menuEdicion.add(itemRehacer);
 
+        JMenuItem itemCancelar = new JMenuItem("Cancelar operación en curso");
+        itemCancelar.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0));
+        itemCancelar.addActionListener(e -> runner.cancel());
+        menuEdicion.add(itemCancelar);
+
+        // La selección se marca con Mayús + arrastrar en el visor.
+        JMenuItem itemQuitarSeleccion = new JMenuItem("Quitar selección");
+        itemQuitarSeleccion.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_A,
+                InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
+        itemQuitarSeleccion.addActionListener(e -> viewer.clearSelection());
+        menuEdicion.add(itemQuitarSeleccion);
+
         menuEdicion.addSeparator();
 
         JMenuItem itemEscalar = new JMenuItem("Escalar (redimensionar)...");
@@ -161,33 +249,66 @@ public class App extends JFrame {
         menuBar.add(menuImagen);
 
         JMenuItem itemBrillo = new JMenuItem("Ajustar brillo...");
-        itemBrillo.addActionListener(this::accionNoImplementada);
+        itemBrillo.addActionListener(e -> accionBrillo());
         menuImagen.add(itemBrillo);
         
         JMenuItem itemContraste = new JMenuItem("Ajustar contraste...");
-        itemContraste.addActionListener(this::accionNoImplementada);
+        itemContraste.addActionListener(e -> accionContraste());
         menuImagen.add(itemContraste);
+
+        JMenuItem itemGamma = new JMenuItem("Corrección gamma...");
+        itemGamma.addActionListener(e -> accionGamma());
+        menuImagen.add(itemGamma);
         
         menuImagen.addSeparator();
         
         JMenuItem itemGris = new JMenuItem("Escala de grises");
-        itemGris.addActionListener(this::accionNoImplementada);
+        itemGris.addActionListener(e -> accionPuntual("Escala de grises", PointOp.grayscale()));
         menuImagen.add(itemGris);
         
         JMenuItem itemBinaria = new JMenuItem("Imagen binaria (umbralización)...");
-        itemBinaria.addActionListener(this::accionNoImplementada);
+        itemBinaria.addActionListener(e -> accionUmbral());
         menuImagen.add(itemBinaria);
         
         JMenuItem itemNegativo = new JMenuItem("Negativo de la imagen");
-        itemNegativo.addActionListener(this::accionNoImplementada);
+        itemNegativo.addActionListener(e -> accionPuntual("Negativo", PointOp.invert()));
         menuImagen.add(itemNegativo);
         
         menuImagen.addSeparator();
         
         JMenuItem itemHistograma = new JMenuItem("Histograma");
-        itemHistograma.addActionListener(this::accionNoImplementada);
+        itemHistograma.addActionListener(e -> accionHistograma());
         menuImagen.add(itemHistograma);
 
+        // --- Ver ---
+        JMenu menuVer = new JMenu("Ver");
+        menuVer.setMnemonic(KeyEvent.VK_V);
+        menuBar.add(menuVer);
+
+        JMenuItem itemAcercar = new JMenuItem("Acercar");
+        itemAcercar.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_PLUS, InputEvent.CTRL_DOWN_MASK));
+        itemAcercar.addActionListener(e -> viewer.zoomIn());
+        menuVer.add(itemAcercar);
+
+        JMenuItem itemAlejar = new JMenuItem("Alejar");
+        itemAlejar.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, InputEvent.CTRL_DOWN_MASK));
+        itemAlejar.addActionListener(e -> viewer.zoomOut());
+        menuVer.add(itemAlejar);
+
+        JMenuItem itemTamanoReal = new JMenuItem("Tamaño real");
+        itemTamanoReal.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK));
+        itemTamanoReal.addActionListener(e -> viewer.setZoom(1));
+        menuVer.add(itemTamanoReal);
+
+        JMenuItem itemAjustar = new JMenuItem("Ajustar a la ventana");
+        itemAjustar.addActionListener(e -> viewer.zoomToFit());
+        menuVer.add(itemAjustar);
+        menuVer.addSeparator();
+
+        JMenuItem itemMetricas = new JMenuItem("Métricas de operaciones...");
+        itemMetricas.addActionListener(e -> accionMetricas());
+        menuVer.add(itemMetricas);
+
         // --- Filtros ---
         JMenu menuFiltros = new JMenu("Filtros");
         menuFiltros.setMnemonic(KeyEvent.VK_F);
@@ -195,11 +316,11 @@ public class App extends JFrame {
         
         // Suavizado
         JMenu submenuSuavizado = new JMenu("Suavizado (reducción de ruido)");
-        JMenuItem itemMedia = new JMenuItem("Media");
-        itemMedia.addActionListener(this::accionNoImplementada);
+        JMenuItem itemMedia = new JMenuItem("Media...");
+        itemMedia.addActionListener(e -> accionMedia());
         submenuSuavizado.add(itemMedia);
-        JMenuItem itemMediana = new JMenuItem("Mediana");
-        itemMediana.addActionListener(this::accionNoImplementada);
+        JMenuItem itemMediana = new JMenuItem("Mediana...");
+        itemMediana.addActionListener(e -> accionMediana());
         submenuSuavizado.add(itemMediana);
         JMenuItem itemGauss = new JMenuItem("Suavizado gaussiano...");
         itemGauss.addActionListener(e -> accionGaussiano());
@@ -209,51 +330,51 @@ public class App extends JFrame {
         // Realce
         JMenu submenuRealce = new JMenu("Realce (detección de bordes)");
         JMenuItem itemLaplaciano = new JMenuItem("Laplaciano");
-        itemLaplaciano.addActionListener(this::accionNoImplementada);
+        itemLaplaciano.addActionListener(e -> accionBordes("Laplaciano", ImageOperations::laplacianFilter));
         submenuRealce.add(itemLaplaciano);
         JMenuItem itemPrewitt = new JMenuItem("Prewitt");
-        itemPrewitt.addActionListener(this::accionNoImplementada);
+        itemPrewitt.addActionListener(e -> accionBordes("Prewitt", ImageOperations::prewittFilter));
         submenuRealce.add(itemPrewitt);
         JMenuItem itemRoberts = new JMenuItem("Roberts");
-        itemRoberts.addActionListener(this::accionNoImplementada);
+        itemRoberts.addActionListener(e -> accionBordes("Roberts", ImageOperations::robertsFilter));
         submenuRealce.add(itemRoberts);
         JMenuItem itemSobel = new JMenuItem("Sobel");
         itemSobel.addActionListener(e -> accionSobel());
         submenuRealce.add(itemSobel);
         JMenuItem itemCanny = new JMenuItem("Canny");
-        itemCanny.addActionListener(this::accionNoImplementada);
+        itemCanny.addActionListener(e -> accionCanny());
         submenuRealce.add(itemCanny);
         menuFiltros.add(submenuRealce);
 
         // Morfológicos
         JMenu submenuMorfologicos = new JMenu("Morfológicos (imágenes binarias)");
-        JMenuItem itemErosion = new JMenuItem("Erosión");
-        itemErosion.addActionListener(this::accionNoImplementada);
+        JMenuItem itemErosion = new JMenuItem("Erosión...");
+        itemErosion.addActionListener(e -> accionMorfologia("Erosión", Morphology::erode));
         submenuMorfologicos.add(itemErosion);
-        JMenuItem itemDilatacion = new JMenuItem("Dilatación");
-        itemDilatacion.addActionListener(this::accionNoImplementada);
+        JMenuItem itemDilatacion = new JMenuItem("Dilatación...");
+        itemDilatacion.addActionListener(e -> accionMorfologia("Dilatación", Morphology::dilate));
         submenuMorfologicos.add(itemDilatacion);
-        JMenuItem itemApertura = new JMenuItem("Apertura");
-        itemApertura.addActionListener(this::accionNoImplementada);
+        JMenuItem itemApertura = new JMenuItem("Apertura...");
+        itemApertura.addActionListener(e -> accionMorfologia("Apertura", Morphology::open));
         submenuMorfologicos.add(itemApertura);
-        JMenuItem itemCierre = new JMenuItem("Cierre");
-        itemCierre.addActionListener(this::accionNoImplementada);
+        JMenuItem itemCierre = new JMenuItem("Cierre...");
+        itemCierre.addActionListener(e -> accionMorfologia("Cierre", Morphology::close));
         submenuMorfologicos.add(itemCierre);
         JMenuItem itemEsqueleto = new JMenuItem("Esqueletonización");
-        itemEsqueleto.addActionListener(this::accionNoImplementada);
+        itemEsqueleto.addActionListener(e -> accionEsqueleto());
         submenuMorfologicos.add(itemEsqueleto);
         menuFiltros.add(submenuMorfologicos);
 
         // Frecuencia
         JMenu submenuFrecuencia = new JMenu("Operaciones con frecuencia");
-        JMenuItem itemPasaBajo = new JMenuItem("Filtro de pasa bajo");
-        itemPasaBajo.addActionListener(this::accionNoImplementada);
+        JMenuItem itemPasaBajo = new JMenuItem("Filtro de pasa bajo...");
+        itemPasaBajo.addActionListener(e -> accionPasaBajo());
         submenuFrecuencia.add(itemPasaBajo);
-        JMenuItem itemPasaAlto = new JMenuItem("Filtro de pasa alto");
-        itemPasaAlto.addActionListener(this::accionNoImplementada);
+        JMenuItem itemPasaAlto = new JMenuItem("Filtro de pasa alto...");
+        itemPasaAlto.addActionListener(e -> accionPasaAlto());
         submenuFrecuencia.add(itemPasaAlto);
-        JMenuItem itemPasoBanda = new JMenuItem("Filtro de paso de banda");
-        itemPasoBanda.addActionListener(this::accionNoImplementada);
+        JMenuItem itemPasoBanda = new JMenuItem("Filtro de paso de banda...");
+        itemPasoBanda.addActionListener(e -> accionPasoBanda());
         submenuFrecuencia.add(itemPasoBanda);
         menuFiltros.add(submenuFrecuencia);
 
@@ -262,10 +383,89 @@ public class App extends JFrame {
     // --- Acciones de Archivo ---
 
     private void accionAbrirImagen(ActionEvent e) {
-        ImageFileService.OpenResult res = ImageFileService.openWithChooser(this);
-        if (res != null && res.image != null) {
-            mostrarImagen(res.image, res.file);
+        File file = ImageFileService.chooseImageFile(this);
+        if (file != null) abrir(file);
+    }
+
+    // Muestra enseguida una vista previa reducida (miniatura incrustada o decodificación submuestreada)
+    // y la sustituye por la imagen completa cuando termina de decodificarse. Abrir otra la descarta.
+    private void abrir(File file) {
+        runner.cancel();
+        int gen = ++aperturas;
+        estado.setText("Abriendo " + file.getName() + "...");
+        cargador.execute(() -> {
+            try {
+                PreviewDecoder.Preview p = PreviewDecoder.read(file, 2 * OperationRunner.PREVIEW_SIZE, 1);
+                if (p.isComplete()) {
+                    EventQueue.invokeLater(() -> terminarApertura(gen, p.image, file));
+                    return;
+                }
+                EventQueue.invokeLater(() -> {
+                    if (gen != aperturas) return;
+                    currentImage = null;
+                    viewer.setPreview(p.image, p.scale());
+                    estado.setText("Abriendo " + file.getName() + " (vista previa, " + p.source + ")...");
+                });
+                BufferedImage full = ImageFileService.read(file);
+                EventQueue.invokeLater(() -> terminarApertura(gen, full, file));
+            } catch (IOException | RuntimeException | OutOfMemoryError ex) {
+                EventQueue.invokeLater(() -> {
+                    if (gen != aperturas) return;
+                    estado.setText(" ");
+                    actualizarVista();
+                    JOptionPane.showMessageDialog(this, "Error al abrir la imagen:\n" + ex.getMessage(),
+                            "Error de lectura", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    private void terminarApertura(int gen, BufferedImage img, File file) {
+        if (gen != aperturas) return;
+        int bits = PixelStore.sourceBits(img);
+        estado.setText(bits > 8 ? file.getName() + ": " + bits + " bits por muestra, se edita y se guarda con 8" : " ");
+        mostrarImagen(img, file);
+    }
+
+    // Miniaturas de todas las imágenes de una carpeta en su subcarpeta "miniaturas" (solo las que faltan).
+    private void accionMiniaturas() {
+        File dir = ImageFileService.chooseDirectory(this, "Carpeta de imágenes");
+        if (dir == null) return;
+        String in = JOptionPane.showInputDialog(this, "Lado máximo de las miniaturas (pixeles):",
+                String.valueOf(ThumbnailGenerator.DEFAULT_SIZE));
+        if (in == null) return;
+        int lado;
+        try {
+            lado = Integer.parseInt(in.trim());
+            if (lado < 1) throw new NumberFormatException("Fuera de rango");
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        File salida = new File(dir, "miniaturas");
+        estado.setText("Generando miniaturas...");
+        Thread t = new Thread(() -> {
+            try {
+                if (!salida.isDirectory() && !salida.mkdirs()) throw new IOException("No se pudo crear " + salida);
+                List<File> pendientes = ThumbnailGenerator.outdated(BatchProcessor.listInputs(dir.getPath()), salida, "jpg");
+                int total = pendientes.size();
+                BatchProcessor.Report r = ThumbnailGenerator.generate(pendientes, salida, lado, "jpg",
+                        Runtime.getRuntime().availableProcessors(),
+                        n -> EventQueue.invokeLater(() -> estado.setText("Miniaturas: " + n + " de " + total)));
+                EventQueue.invokeLater(() -> {
+                    estado.setText(" ");
+                    JOptionPane.showMessageDialog(this, "Miniaturas en " + salida + ":\n" + r, "Miniaturas",
+                            JOptionPane.INFORMATION_MESSAGE);
+                });
+            } catch (IOException ex) {
+                EventQueue.invokeLater(() -> {
+                    estado.setText(" ");
+                    JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Miniaturas", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        }, "miniaturas");
+        t.setDaemon(true);
+        t.start();
     }
 
     private void accionGuardar(ActionEvent e) {
@@ -310,39 +510,170 @@ public class App extends JFrame {
         }
     }
 
+    private void accionExportarVarios() {
+        if (currentImage == null) {
+            JOptionPane.showMessageDialog(this, "No hay imagen para exportar.", "Aviso", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        String in = JOptionPane.showInputDialog(this, "Formatos separados por comas:", "png,jpg,tiff");
+        if (in == null || in.trim().isEmpty()) return;
+        List<String> formatos = new ArrayList<>();
+        for (String f : in.split("[\\s,;]+")) {
+            if (!f.isEmpty()) formatos.add(ImageEncoder.canonical(f));
+        }
+        File sugerido = ImageFileService.sugerirNombreExport(currentFile, formatos.get(0));
+        List<ImageEncoder.Result> res = ImageFileService.exportAllWithChooser(this, currentImage, formatos, sugerido);
+        if (res != null) {
+            StringBuilder sb = new StringBuilder("Exportado a " + res.get(0).file.getParent() + ":");
+            for (ImageEncoder.Result r : res) sb.append("\n").append(r);
+            JOptionPane.showMessageDialog(this, sb.toString(), "Exportar", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    private void accionAjustesCompresion() {
+        String in = JOptionPane.showInputDialog(this,
+                "Ajustes (jpg=calidad 0-1, progressive, png=nivel 0-9, tiff=lzw|deflate|packbits|jpeg|none):",
+                ImageFileService.getEncodeOptions().toString().replace(" progresivo", ",progressive").replace(" ", ""));
+        if (in == null) return;
+        try {
+            ImageFileService.setEncodeOptions(ImageEncoder.Options.parse(in));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     // --- Acciones de Edición ---
 
     private void rotar90CW() {
         if (currentImage == null) { warnNoImage(); return; }
-        currentImage = ImageOperations.rotate90CW(currentImage);
-        actualizarVista();
+        ejecutar("Rotar 90° horario", (img, exec) -> ImageOperations.rotate90CW(img, exec));
     }
 
     private void rotar90CCW() {
         if (currentImage == null) { warnNoImage(); return; }
-        currentImage = ImageOperations.rotate90CCW(currentImage);
-        actualizarVista();
+        ejecutar("Rotar 90° antihorario", (img, exec) -> ImageOperations.rotate90CCW(img, exec));
     }
     
     private void rotar180() {
         if (currentImage == null) { warnNoImage(); return; }
-        currentImage = ImageOperations.rotate180(currentImage);
-        actualizarVista();
+        ejecutar("Rotar 180°", (img, exec) -> ImageOperations.rotate180(img, exec));
     }
 
     private void redimensionarPorcentaje() {
-        
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Porcentaje (100 = tamaño actual):", "50");
+        if (in == null) return;
+        double pct;
+        try {
+            pct = Double.parseDouble(in.trim());
+            if (!(pct > 0)) throw new NumberFormatException("El porcentaje debe ser > 0");
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Resampler.Filter filtro = (Resampler.Filter) JOptionPane.showInputDialog(this, "Filtro de remuestreo:",
+                "Escalar", JOptionPane.QUESTION_MESSAGE, null, Resampler.Filter.values(), ImageOperations.RESIZE_FILTER);
+        if (filtro == null) return;
+        ejecutar("Escalar " + in.trim() + "%", (img, exec) -> ImageOperations.resizePercent(img, pct, filtro, exec));
     }
 
     private void restaurarOriginal() {
-        if (originalImage == null) {
+        if (currentImage == null) {
             JOptionPane.showMessageDialog(this, "No hay imagen original para restaurar.", "Aviso", JOptionPane.WARNING_MESSAGE);
             return;
         }
-        currentImage = ImageOperations.deepCopy(originalImage);
+        // Se registra como un paso más para poder deshacerlo; no hay nada que calcular.
+        runner.cancel();
+        currentImage = history.apply("Restaurar original", img -> history.original());
         actualizarVista();
     }
 
+    private void deshacer() {
+        runner.cancel();
+        BufferedImage img = history.undo();
+        if (img != null) {
+            currentImage = img;
+            actualizarVista();
+        }
+    }
+
+    private void rehacer() {
+        runner.cancel();
+        BufferedImage img = history.redo();
+        if (img != null) {
+            currentImage = img;
+            actualizarVista();
+        }
+    }
+
+    // --- Acciones de operaciones puntuales ---
+
+    private void accionPuntual(String nombre, PointOp op) {
+        if (currentImage == null) { warnNoImage(); return; }
+        ejecutarFiltro(nombre, (img, exec) -> ImageOperations.applyPointOp(img, op, false, exec),
+                (img, roi, exec) -> ImageOperations.applyPointOp(img, op, roi, null, exec));
+    }
+
+    private void accionBrillo() {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Incremento de brillo (-255 a 255):", "32");
+        if (in == null) return;
+        try {
+            int delta = Integer.parseInt(in.trim());
+            accionPuntual("Brillo", PointOp.brightness(delta));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionContraste() {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Factor de contraste (1.0 = sin cambio):", "1.5");
+        if (in == null) return;
+        try {
+            double factor = Double.parseDouble(in.trim());
+            if (factor < 0) throw new NumberFormatException("El factor debe ser >= 0");
+            accionPuntual("Contraste", PointOp.contrast(factor));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionGamma() {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Gamma (> 1 aclara, < 1 oscurece):", "1.8");
+        if (in == null) return;
+        try {
+            double gamma = Double.parseDouble(in.trim());
+            if (!(gamma > 0)) throw new NumberFormatException("Gamma debe ser > 0");
+            accionPuntual("Gamma", PointOp.gamma(gamma));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionUmbral() {
+        if (currentImage == null) { warnNoImage(); return; }
+        conEstadisticas("Umbral", st -> pedirUmbral(st.otsuThreshold(ImageStatistics.LUMA)));
+    }
+
+    private void pedirUmbral(int otsu) {
+        String in = JOptionPane.showInputDialog(this, "Umbral 0 a 255 (por defecto el de Otsu; vacío = adaptativo):",
+                String.valueOf(otsu));
+        if (in == null) return;
+        if (in.trim().isEmpty()) {
+            ejecutar("Umbral adaptativo", ImageOperations::binarize);
+            return;
+        }
+        try {
+            int t = Integer.parseInt(in.trim());
+            if (t < 0 || t > 255) throw new NumberFormatException("Fuera de rango");
+            accionPuntual("Umbral", PointOp.threshold(t));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     // --- Acciones de Filtros (existentes) ---
 
     private void accionGaussiano() {
@@ -352,44 +683,277 @@ public class App extends JFrame {
         try {
             float sigma = Float.parseFloat(in.trim());
             if (sigma <= 0) throw new NumberFormatException("Sigma debe ser > 0");
-            currentImage = ImageOperations.gaussianBlur(currentImage, sigma);
-            actualizarVista();
+            ejecutarFiltro("Suavizado gaussiano", (img, exec) -> ImageOperations.gaussianBlur(img, sigma, exec),
+                    (img, roi, exec) -> ImageOperations.gaussianBlur(img, sigma, roi, null, exec));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    private void accionMedia() {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Radio de la ventana (ej. 1 a 50):", "1");
+        if (in == null) return;
+        try {
+            int radio = Integer.parseInt(in.trim());
+            if (radio < 1) throw new NumberFormatException("El radio debe ser >= 1");
+            ejecutarFiltro("Media", (img, exec) -> ImageOperations.meanFilter(img, radio, exec),
+                    (img, roi, exec) -> ImageOperations.meanFilter(img, radio, roi, null, exec));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionMediana() {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Radio de la ventana (1 a 15):", "1");
+        if (in == null) return;
+        try {
+            int radio = Integer.parseInt(in.trim());
+            if (radio < 1) throw new NumberFormatException("El radio debe ser >= 1");
+            ejecutarFiltro("Mediana", (img, exec) -> ImageOperations.medianFilter(img, radio, exec),
+                    (img, roi, exec) -> ImageOperations.medianFilter(img, radio, roi, null, exec));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionMorfologia(String nombre, OperacionConRadio op) {
+        if (currentImage == null) { warnNoImage(); return; }
+        String in = JOptionPane.showInputDialog(this, "Radio del elemento estructurante (cuadrado de 2r+1):", "1");
+        if (in == null) return;
+        try {
+            int radio = Integer.parseInt(in.trim());
+            if (radio < 1) throw new NumberFormatException("El radio debe ser >= 1");
+            // Halo de 2 radios: apertura y cierre encadenan dos pasadas.
+            ejecutarFiltro(nombre, (img, exec) -> op.apply(img, radio, radio, exec),
+                    (img, roi, exec) -> RegionProcessor.apply(img, roi, null, 2 * radio,
+                            (v, e) -> op.apply(v, radio, radio, e), exec));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void accionHistograma() {
+        if (currentImage == null) { warnNoImage(); return; }
+        conEstadisticas("Histograma", st -> {
+            JLabel texto = new JLabel("<html>" + st.toString().replace(System.lineSeparator(), "<br>")
+                    + "<br>Umbral de Otsu (L): " + st.otsuThreshold(ImageStatistics.LUMA) + "</html>");
+            JLabel grafica = new JLabel(new ImageIcon(ImageOperations.histogramChart(st, 512, 200)));
+            JOptionPane.showMessageDialog(this, new Object[]{grafica, texto}, "Histograma", JOptionPane.PLAIN_MESSAGE);
+        });
+    }
+
+    // Llama a accion en el EDT con las estadísticas de la imagen actual. Si no están en caché se
+    // calculan en paralelo en el hilo "estadisticas" y accion se descarta si la imagen cambia entretanto.
+    private void conEstadisticas(String nombre, Consumer<ImageStatistics> accion) {
+        BufferedImage base = currentImage;
+        ImageStatistics cacheadas = StatisticsCache.shared().lookup(base);
+        if (cacheadas != null) {
+            accion.accept(cacheadas);
+            return;
+        }
+        estado.setText(nombre + ": calculando estadísticas...");
+        estadisticas.execute(() -> {
+            try {
+                ImageStatistics st = StatisticsCache.shared().get(base, runner.getScheduler());
+                EventQueue.invokeLater(() -> {
+                    if (currentImage != base) return;
+                    estado.setText(" ");
+                    accion.accept(st);
+                });
+            } catch (RuntimeException | OutOfMemoryError ex) {
+                EventQueue.invokeLater(() -> {
+                    estado.setText(nombre + ": error");
+                    JOptionPane.showMessageDialog(this, "Error en " + nombre + ":\n" + ex, "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
+    }
+
+    // Tiempos, throughput y memoria por operación desde el arranque (OperationMetrics).
+    private void accionMetricas() {
+        JTextArea texto = new JTextArea(OperationMetrics.summary(), 20, 110);
+        texto.setEditable(false);
+        texto.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        Object[] opciones = {"Cerrar", "Reiniciar"};
+        int r = JOptionPane.showOptionDialog(this, new JScrollPane(texto), "Métricas de operaciones",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, opciones, opciones[0]);
+        if (r == 1) OperationMetrics.reset();
+    }
+
+    private void accionEsqueleto() {
+        if (currentImage == null) { warnNoImage(); return; }
+        ejecutar("Esqueletonización", ImageOperations::skeletonization);
+    }
+
+    private void accionPasaBajo() {
+        FrequencyFilter.Shape forma = pedirForma("Pasa bajo");
+        double[] c = forma == null ? null : pedirCortes(1, "0.25");
+        if (c == null) return;
+        ejecutar("Pasa bajo", (img, exec) -> ImageOperations.lowPassFilter(img, forma, c[0], exec));
+    }
+
+    private void accionPasaAlto() {
+        FrequencyFilter.Shape forma = pedirForma("Pasa alto");
+        double[] c = forma == null ? null : pedirCortes(1, "0.1");
+        if (c == null) return;
+        ejecutar("Pasa alto", (img, exec) -> ImageOperations.highPassFilter(img, forma, c[0], exec));
+    }
+
+    private void accionPasoBanda() {
+        FrequencyFilter.Shape forma = pedirForma("Paso de banda");
+        double[] c = forma == null ? null : pedirCortes(2, "0.1 0.4");
+        if (c == null) return;
+        ejecutar("Paso de banda", (img, exec) -> ImageOperations.bandPassFilter(img, forma, c[0], c[1], exec));
+    }
+
+    private FrequencyFilter.Shape pedirForma(String titulo) {
+        if (currentImage == null) { warnNoImage(); return null; }
+        return (FrequencyFilter.Shape) JOptionPane.showInputDialog(this, "Forma del filtro:", titulo,
+                JOptionPane.QUESTION_MESSAGE, null, FrequencyFilter.Shape.values(), FrequencyFilter.Shape.BUTTERWORTH);
+    }
+
+    // Cortes en fracción de Nyquist, en (0, 1] y crecientes; null si se cancela o no son válidos.
+    private double[] pedirCortes(int n, String porDefecto) {
+        String in = JOptionPane.showInputDialog(this, n == 1
+                ? "Frecuencia de corte (0 a 1, fracción de Nyquist):"
+                : "Cortes inferior y superior (0 a 1, fracción de Nyquist):", porDefecto);
+        if (in == null) return null;
+        try {
+            String[] v = in.trim().split("[\\s,;]+");
+            if (v.length != n) throw new NumberFormatException("Se esperaban " + n + " valores");
+            double[] c = new double[n];
+            for (int i = 0; i < n; i++) {
+                c[i] = Double.parseDouble(v[i]);
+                if (!(c[i] > 0 && c[i] <= 1) || (i > 0 && c[i] <= c[i - 1])) throw new NumberFormatException("Fuera de rango");
+            }
+            return c;
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+    private void accionBordes(String nombre, ImagePipeline.Stage op) {
+        if (currentImage == null) { warnNoImage(); return; }
+        ejecutar(nombre, op);
+    }
+
     private void accionSobel() {
         if (currentImage == null) { warnNoImage(); return; }
-        currentImage = ImageOperations.sobelEdges(currentImage);
-        actualizarVista();
+        ejecutar("Sobel", (img, exec) -> ImageOperations.sobelEdges(img, exec));
     }
-    
-    /**
-     * Acción de marcador de posición para funciones no implementadas.
-     */
-    private void accionNoImplementada(ActionEvent e) {
+
+    // Sigma y umbrales bajo/alto en fracción (0 a 1) de la magnitud máxima; sin umbrales = automáticos.
+    private void accionCanny() {
         if (currentImage == null) { warnNoImage(); return; }
-        String command = "Operación no definida";
-        if (e.getSource() instanceof JMenuItem) {
-            command = ((JMenuItem) e.getSource()).getText();
+        String in = JOptionPane.showInputDialog(this,
+                "Sigma y, opcionalmente, umbrales bajo y alto (0 a 1; vacíos = automáticos):",
+                String.valueOf(CannyDetector.DEFAULT_SIGMA));
+        if (in == null) return;
+        try {
+            String[] v = in.trim().split("[\\s,;]+");
+            if (v.length != 1 && v.length != 3) throw new NumberFormatException("Se esperaban 1 o 3 valores");
+            float sigma = Float.parseFloat(v[0]);
+            double low = v.length == 3 ? Double.parseDouble(v[1]) : CannyDetector.AUTO;
+            double high = v.length == 3 ? Double.parseDouble(v[2]) : CannyDetector.AUTO;
+            if (sigma < 0 || (v.length == 3 && !(low >= 0 && low <= high && high <= 1))) {
+                throw new NumberFormatException("Fuera de rango");
+            }
+            ejecutar("Canny", (img, exec) -> ImageOperations.cannyFilter(img, sigma, low, high, exec));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Valor inválido: " + in, "Error", JOptionPane.ERROR_MESSAGE);
         }
-        JOptionPane.showMessageDialog(this,
-            "La función '" + command + "' no está implementada todavía.",
-            "Función no disponible",
-            JOptionPane.INFORMATION_MESSAGE);
     }
 
 
     // --- Utilidades de vista/estado ---
 
     private void mostrarImagen(BufferedImage img, File file) {
+        runner.cancel();
         this.currentImage = img;
         this.currentFile = file;
-        this.originalImage = ImageOperations.deepCopy(img);
+        history.reset(img);
         actualizarVista();
     }
 
+    // Como ejecutar, pero con una selección en el visor solo se procesa la selección (más el halo del
+    // kernel) con enRegion. Se escribe sobre una copia: las imágenes del historial no se modifican en
+    // sitio; las estadísticas en caché de la copia se derivan de las del original recorriendo solo la
+    // selección. En la vista previa, que es una reducción, la selección se escala con ella.
+    private void ejecutarFiltro(String nombre, ImagePipeline.Stage op, OperacionEnRegion enRegion) {
+        Rectangle sel = viewer.getSelection();
+        if (sel == null) {
+            ejecutar(nombre, op);
+            return;
+        }
+        int ancho = currentImage.getWidth();
+        ejecutar(nombre + " (selección)", (img, exec) -> {
+            Rectangle roi = sel;
+            if (img.getWidth() != ancho) {
+                double s = (double) img.getWidth() / ancho;
+                int x0 = (int) Math.floor(sel.x * s), y0 = (int) Math.floor(sel.y * s);
+                roi = new Rectangle(x0, y0, (int) Math.ceil((sel.x + sel.width) * s) - x0,
+                        (int) Math.ceil((sel.y + sel.height) * s) - y0);
+            }
+            BufferedImage out = enRegion.apply(PixelStore.copy(img), roi, exec);
+            StatisticsCache.shared().derive(img, out, roi, exec);
+            return out;
+        });
+    }
+
+    // Ejecuta op en segundo plano sobre la imagen actual: vista previa, avance en la barra de estado
+    // y, al terminar, registro en el historial. Una operación nueva sustituye a la que siga en curso.
+    private void ejecutar(String nombre, ImagePipeline.Stage op) {
+        BufferedImage base = currentImage;
+        UnaryOperator<BufferedImage> repetir = img -> op.apply(img, runner.getScheduler());
+        estado.setText(nombre + "...");
+        progreso.setValue(0);
+        progreso.setVisible(true);
+        runner.submit(nombre, base, op, new OperationRunner.Listener() {
+            @Override
+            public void preview(BufferedImage preview, double scale) {
+                viewer.setPreview(preview, scale);
+            }
+
+            @Override
+            public void progress(String fase, int percent, long elapsedNanos) {
+                estado.setText(nombre + ": " + fase + " " + percent + "% (" + elapsedNanos / 1_000_000 + " ms)");
+                progreso.setValue(percent);
+            }
+
+            @Override
+            public void done(BufferedImage result, long elapsedNanos) {
+                progreso.setVisible(false);
+                if (history.record(nombre, repetir, base, result, elapsedNanos)) {
+                    currentImage = result;
+                    estado.setText(nombre + ": " + elapsedNanos / 1_000_000 + " ms");
+                } else {
+                    estado.setText(nombre + ": descartada (la imagen cambió mientras se calculaba)");
+                }
+                actualizarVista();
+            }
+
+            @Override
+            public void failed(Throwable error) {
+                progreso.setVisible(false);
+                estado.setText(nombre + ": error");
+                actualizarVista();
+                JOptionPane.showMessageDialog(App.this, "Error en " + nombre + ":\n" + error, "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+
+            @Override
+            public void cancelled() {
+                progreso.setVisible(false);
+                estado.setText(nombre + ": cancelada");
+                actualizarVista();
+            }
+        });
+    }
+
     private void actualizarVista() {
         if (currentImage != null) {
             viewer.setImage(currentImage);
@@ -397,6 +961,16 @@ public class App extends JFrame {
             viewer.setPlaceholder("No hay imagen abierta");
         }
         updateWindowTitle();
+        actualizarMenuHistorial();
+    }
+
+    private void actualizarMenuHistorial() {
+        String deshacer = history.getUndoLabel();
+        String rehacer = history.getRedoLabel();
+        itemDeshacer.setEnabled(deshacer != null);
+        itemDeshacer.setText(deshacer != null ? "Deshacer " + deshacer : "Deshacer");
+        itemRehacer.setEnabled(rehacer != null);
+        itemRehacer.setText(rehacer != null ? "Rehacer " + rehacer : "Rehacer");
     }
 
     private void updateWindowTitle() {
@@ -414,6 +988,6 @@ public class App extends JFrame {
     }
 
     private void redimensionarPorcentaje(ActionEvent actionevent1) {
-        
+        redimensionarPorcentaje();
     }
 }
\ No newline at end of file
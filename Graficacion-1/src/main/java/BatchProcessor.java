@@ -0,0 +1,311 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Procesamiento por lotes sin interfaz gráfica (java.awt.headless=true).
+ *
+ * Uso: java BatchProcessor -i <directorio|glob> -o <dir salida> -ops gaussian:1.5,sobel,rotate90cw
+ *                          [-f png[,jpg,tiff]] [-c jpg=0.85,png=9,tiff=deflate] [-t hilos]
+ *                          [-q max imágenes en vuelo] [-s]
+ *
+ * Cada archivo pasa por decodificar -> procesar -> codificar; las etapas de distintos archivos
+ * se solapan y un semáforo limita cuántas imágenes hay en memoria a la vez. Las operaciones
+ * forman un ImagePipeline, así que las puntuales consecutivas se ejecutan en una sola pasada.
+ * Con varios formatos en -f cada resultado se codifica en todos a la vez (ImageEncoder.encodeAll).
+ * Si las operaciones son un solo gaussiano o Sobel, las imágenes que no caben en el heap (según su
+ * cabecera y -q) se procesan por franjas de archivo a archivo (StreamingProcessor); -s lo fuerza
+ * para todas.
+ * Al terminar imprime las métricas por operación (OperationMetrics); -Dpdi.metrics.dump=<segundos>
+ * las vuelca también durante la ejecución.
+ */
+public class BatchProcessor {
+
+    private BatchProcessor() {}
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String input = null, output = null, ops = "", format = "png";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int inFlight = -1;
+        boolean streaming = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-i": input = value(args, i++); break;
+                    case "-o": output = value(args, i++); break;
+                    case "-ops": ops = value(args, i++); break;
+                    case "-f": format = value(args, i++).toLowerCase(Locale.ROOT); break;
+                    case "-c": ImageFileService.setEncodeOptions(ImageEncoder.Options.parse(value(args, i++))); break;
+                    case "-t": threads = Integer.parseInt(value(args, i++)); break;
+                    case "-q": inFlight = Integer.parseInt(value(args, i++)); break;
+                    case "-s": streaming = true; break;
+                    default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                }
+            }
+            if (input == null || output == null) throw new IllegalArgumentException("Faltan -i y/o -o");
+
+            List<File> files = listInputs(input);
+            ImagePipeline chain = parseOperations(ops);
+            System.out.println("Plan:\n" + chain);
+            if (chain.streamed() != null) System.out.println("Por franjas: " + (streaming ? "todas" : "las que no caben en memoria"));
+            else if (streaming) throw new IllegalArgumentException("-s requiere una sola operación gaussian o sobel");
+            File outDir = new File(output);
+            if (!outDir.isDirectory() && !outDir.mkdirs()) throw new IOException("No se pudo crear " + outDir);
+
+            Report r = run(files, chain, outDir, format, threads, inFlight > 0 ? inFlight : threads * 2, streaming);
+            System.out.println(r);
+            System.out.println(PixelStore.summary());
+            System.out.println(ImageEncoder.summary());
+            System.out.print(OperationMetrics.summary());
+            if (r.failed > 0) System.exit(1);
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.err.println("Uso: java BatchProcessor -i <dir|glob> -o <dir> -ops gaussian:1.5,sobel,rotate90cw [-f png,jpg] [-c jpg=0.85] [-t hilos] [-q en vuelo] [-s]");
+            System.exit(2);
+        }
+    }
+
+    // --- Resultado ---
+
+    public static class Report {
+        public final int processed, failed;
+        public final long elapsedNanos, pixels;
+
+        Report(int processed, int failed, long elapsedNanos, long pixels) {
+            this.processed = processed;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.pixels = pixels;
+        }
+
+        public double imagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : processed * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double secs = elapsedNanos / 1e9;
+            return String.format(Locale.ROOT, "%d procesadas, %d con error en %.2f s (%.2f img/s, %.1f MP/s)",
+                    processed, failed, secs, imagesPerSecond(), secs == 0 ? 0 : pixels / 1e6 / secs);
+        }
+    }
+
+    // --- Ejecución ---
+
+    /** format admite varios formatos separados por comas; cada uno se escribe con su extensión. */
+    public static Report run(List<File> files, UnaryOperator<BufferedImage> chain, File outDir,
+                             String format, int threads, int maxInFlight) {
+        return run(files, chain, outDir, format, threads, maxInFlight, false);
+    }
+
+    /**
+     * Como run; si chain tiene versión por franjas (ImagePipeline.streamed) la usa para las imágenes
+     * que no caben en memoria, o para todas con forceStreaming.
+     */
+    public static Report run(List<File> files, UnaryOperator<BufferedImage> chain, File outDir,
+                             String format, int threads, int maxInFlight, boolean forceStreaming) {
+        List<String> formats = new ArrayList<>();
+        for (String f : format.split(",")) {
+            if (!f.trim().isEmpty()) formats.add(ImageEncoder.canonical(f.trim()));
+        }
+        for (String f : formats) {
+            if (!ImageEncoder.canWrite(f)) throw new IllegalArgumentException("El formato '" + f + "' no es escribible.");
+        }
+        ImageIO.setUseCache(false); // evita el caché temporal en disco de ImageIO
+        ExecutorService io = Executors.newFixedThreadPool(Math.max(1, threads));
+        ExecutorService cpu = Executors.newFixedThreadPool(Math.max(1, threads));
+        Semaphore slots = new Semaphore(Math.max(1, maxInFlight));
+        AtomicInteger ok = new AtomicInteger(), failed = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        List<CompletableFuture<Void>> pending = new ArrayList<>(files.size());
+        ImagePipeline.Streamed streamed = chain instanceof ImagePipeline ? ((ImagePipeline) chain).streamed() : null;
+        int inFlight = Math.max(1, maxInFlight);
+
+        long t0 = System.nanoTime();
+        try {
+            for (File f : files) {
+                slots.acquireUninterruptibly();
+                long size = streamed != null ? StreamingProcessor.pixelCount(f) : -1;
+                File dest = new File(outDir, ImageFileService.baseName(f));
+                CompletableFuture<Void> work;
+                if (size >= 0 && (forceStreaming || !StreamingProcessor.fitsInMemory(size, inFlight))) {
+                    work = CompletableFuture.runAsync(() -> {
+                        streamUnchecked(streamed, f, dest, formats);
+                        pixels.addAndGet(size);
+                    }, cpu);
+                } else {
+                    work = CompletableFuture
+                            .supplyAsync(() -> readUnchecked(f), io)
+                            .thenApplyAsync(img -> {
+                                pixels.addAndGet((long) img.getWidth() * img.getHeight());
+                                return chain.apply(img);
+                            }, cpu)
+                            .thenAcceptAsync(img -> writeUnchecked(img, dest, formats), io);
+                }
+                pending.add(work.whenComplete((v, ex) -> {
+                    slots.release();
+                    if (ex == null) {
+                        ok.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        System.err.println(f.getName() + ": " + cause.getMessage());
+                    }
+                }));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                    .exceptionally(ex -> null)
+                    .join();
+        } finally {
+            io.shutdown();
+            cpu.shutdown();
+        }
+        return new Report(ok.get(), failed.get(), System.nanoTime() - t0, pixels.get());
+    }
+
+    // --- Operaciones: "gaussian:1.5,sobel,rotate90cw" ---
+
+    public static ImagePipeline parseOperations(String spec) {
+        ImagePipeline chain = ImagePipeline.EMPTY;
+        if (spec == null || spec.trim().isEmpty()) return chain;
+        for (String token : spec.split(",")) chain = parseOperation(chain, token.trim());
+        return chain;
+    }
+
+    private static ImagePipeline parseOperation(ImagePipeline chain, String token) {
+        int colon = token.indexOf(':');
+        String name = (colon < 0 ? token : token.substring(0, colon)).toLowerCase(Locale.ROOT);
+        String arg = colon < 0 ? null : token.substring(colon + 1);
+        switch (name) {
+            case "gaussian": return chain.gaussian(arg == null ? 1.5f : Float.parseFloat(arg));
+            case "sobel": return chain.sobel();
+            case "canny": return chain.canny(arg == null ? CannyDetector.DEFAULT_SIGMA : Float.parseFloat(arg));
+            case "rotate90cw": return chain.rotate90CW();
+            case "rotate90ccw": return chain.rotate90CCW();
+            case "rotate180": return chain.rotate180();
+            case "fliph": return chain.flipHorizontal();
+            case "flipv": return chain.flipVertical();
+            case "resize": {
+                // resize:AnchoxAlto[:filtro]
+                if (arg == null || !arg.contains("x")) throw new IllegalArgumentException("resize requiere AnchoxAlto");
+                String[] parts = arg.split(":");
+                String[] wh = parts[0].split("x");
+                int w = Integer.parseInt(wh[0]), h = Integer.parseInt(wh[1]);
+                Resampler.Filter f = parts.length > 1 ? parseFilter(parts[1]) : ImageOperations.RESIZE_FILTER;
+                return chain.thenStage(token, (img, exec) -> Resampler.resize(img, w, h, f, exec));
+            }
+            case "thumbnail": {
+                // thumbnail:lado[:filtro], lado máximo conservando la proporción
+                String[] parts = arg == null ? new String[]{"256"} : arg.split(":");
+                int size = Integer.parseInt(parts[0]);
+                Resampler.Filter f = parts.length > 1 ? parseFilter(parts[1]) : ImageOperations.RESIZE_FILTER;
+                return chain.thenStage(token, (img, exec) -> Resampler.thumbnail(img, size, f, exec));
+            }
+            case "brightness": return chain.brightness(arg == null ? 20 : Integer.parseInt(arg));
+            case "contrast": return chain.contrast(arg == null ? 1.2 : Double.parseDouble(arg));
+            case "grayscale": return chain.grayscale();
+            case "invert": return chain.invert();
+            case "threshold": return chain.threshold(arg == null ? 128 : Integer.parseInt(arg));
+            default:
+                throw new IllegalArgumentException("Operación desconocida: " + token);
+        }
+    }
+
+    private static Resampler.Filter parseFilter(String name) {
+        try {
+            return Resampler.Filter.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Filtro desconocido: " + name);
+        }
+    }
+
+    // --- Entradas: directorio o glob ---
+
+    public static List<File> listInputs(String input) throws IOException {
+        File dir = new File(input);
+        if (dir.isDirectory()) {
+            File[] all = dir.listFiles(f -> f.isFile() && ImageFileService.hasReadableExtension(f));
+            List<File> files = new ArrayList<>();
+            if (all != null) {
+                for (File f : all) files.add(f);
+            }
+            files.sort(null);
+            return files;
+        }
+        if (dir.isFile()) return List.of(dir);
+
+        // Glob: se recorre desde el prefijo sin comodines.
+        Path pattern = Paths.get(input).toAbsolutePath().normalize();
+        Path base = pattern.getRoot();
+        for (Path part : pattern) {
+            if (part.toString().matches(".*[*?\\[{].*")) break;
+            base = base.resolve(part);
+        }
+        if (!Files.isDirectory(base)) throw new IOException("No existe: " + input);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.toString().replace("\\", "\\\\"));
+        try (Stream<Path> s = Files.walk(base)) {
+            return s.filter(Files::isRegularFile)
+                    .filter(matcher::matches)
+                    .map(Path::toFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // --- Helpers ---
+
+    /** Valor de la opción args[i] (el argumento siguiente); falla con un mensaje claro si falta. */
+    static String value(String[] args, int i) {
+        if (i + 1 >= args.length) throw new IllegalArgumentException("Falta el valor de " + args[i]);
+        return args[i + 1];
+    }
+
+    private static BufferedImage readUnchecked(File f) {
+        try {
+            return ImageFileService.read(f);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    // Un recorrido del origen por formato: StreamingProcessor escribe un solo archivo por pasada.
+    private static void streamUnchecked(ImagePipeline.Streamed streamed, File src, File base, List<String> formats) {
+        try {
+            for (String fmt : formats) streamed.run(src, new File(base.getParentFile(), base.getName() + "." + fmt), fmt);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    private static void writeUnchecked(BufferedImage img, File dest, List<String> formats) {
+        try {
+            if (formats.size() == 1) {
+                ImageFileService.write(img, dest, formats.get(0));
+            } else {
+                ImageEncoder.encodeAll(img, dest, formats, ImageFileService.getEncodeOptions());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * Imagen binaria empaquetada: 64 pixeles por long, fila a fila. El pixel x de la fila y es el bit
+ * (x & 63) de la palabra y * wordsPerRow + (x >> 6); 1 = primer plano (blanco), 0 = fondo (negro).
+ * Los bits de relleno tras el último pixel de cada fila se mantienen a cero.
+ *
+ * Es la representación de trabajo de Morphology: una erosión o dilatación trata 64 pixeles con una
+ * operación de bits. Mutable (set/clear), como un BufferedImage.
+ */
+public final class BinaryImage {
+
+    private final int width, height, wordsPerRow;
+    final long[] bits;
+
+    public BinaryImage(int width, int height) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("Tamaño inválido: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.bits = new long[wordsPerRow * height];
+    }
+
+    /** Primer plano donde la luminancia (bytes crudos en BYTE_GRAY) es >= threshold. */
+    public static BinaryImage of(BufferedImage src, int threshold, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        BinaryImage b = new BinaryImage(w, h);
+        boolean gray = src.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            byte[] g = new byte[w];
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                if (gray) {
+                    src.getRaster().getDataElements(0, y, w, 1, g);
+                } else {
+                    PixelAccess.readRow(src, 0, y, w, row, 0);
+                    for (int x = 0; x < w; x++) {
+                        int p = row[x];
+                        g[x] = (byte) PointOp.luma((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+                    }
+                }
+                int base = y * b.wordsPerRow;
+                for (int x = 0; x < w; x++) {
+                    if ((g[x] & 0xFF) >= threshold) b.bits[base + (x >>> 6)] |= 1L << x;
+                }
+            }
+        });
+        return b;
+    }
+
+    /** true si src es BYTE_BINARY de 1 bit o BYTE_GRAY con solo 0 y 255. */
+    public static boolean isBinary(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_BYTE_BINARY) {
+            return src.getColorModel().getPixelSize() == 1;
+        }
+        if (src.getType() != BufferedImage.TYPE_BYTE_GRAY) return false;
+        int w = src.getWidth();
+        byte[] row = new byte[w];
+        for (int y = 0; y < src.getHeight(); y++) {
+            src.getRaster().getDataElements(0, y, w, 1, row);
+            for (byte v : row) {
+                if (v != 0 && v != (byte) 255) return false;
+            }
+        }
+        return true;
+    }
+
+    /** TYPE_BYTE_GRAY con 255 en el primer plano y 0 en el fondo. */
+    public BufferedImage toImage(TileScheduler exec) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+        exec.forEachBand(0, height, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int base = y * wordsPerRow, o = y * width;
+                for (int x = 0; x < width; x++) {
+                    dst[o + x] = (byte) -(int) ((bits[base + (x >>> 6)] >>> x) & 1L);
+                }
+            }
+        });
+        return out;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getWordsPerRow() { return wordsPerRow; }
+
+    public boolean get(int x, int y) {
+        return ((bits[y * wordsPerRow + (x >>> 6)] >>> x) & 1L) != 0;
+    }
+
+    public void set(int x, int y, boolean v) {
+        int i = y * wordsPerRow + (x >>> 6);
+        if (v) bits[i] |= 1L << x; else bits[i] &= ~(1L << x);
+    }
+
+    /** Número de pixeles de primer plano. */
+    public long count() {
+        long c = 0;
+        for (long v : bits) c += Long.bitCount(v);
+        return c;
+    }
+
+    public BinaryImage copy() {
+        BinaryImage c = new BinaryImage(width, height);
+        System.arraycopy(bits, 0, c.bits, 0, bits.length);
+        return c;
+    }
+
+    /** Complemento (los bits de relleno siguen a cero). */
+    public BinaryImage not() {
+        BinaryImage c = new BinaryImage(width, height);
+        for (int i = 0; i < bits.length; i++) c.bits[i] = ~bits[i];
+        c.clearPadding();
+        return c;
+    }
+
+    /** Máscara de los pixeles válidos de la última palabra de cada fila. */
+    long lastWordMask() {
+        int rem = width & 63;
+        return rem == 0 ? -1L : (1L << rem) - 1;
+    }
+
+    void clearPadding() {
+        long mask = lastWordMask();
+        if (mask == -1L) return;
+        for (int i = wordsPerRow - 1; i < bits.length; i += wordsPerRow) bits[i] &= mask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BinaryImage)) return false;
+        BinaryImage b = (BinaryImage) o;
+        return width == b.width && height == b.height && Arrays.equals(bits, b.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + Arrays.hashCode(bits);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Filtro de media (caja de (2r+1)^2) con sumas corridas separables: coste por pixel constante,
+ * independiente del radio.
+ *
+ * Cada banda de filas recorre la imagen hacia abajo con un anillo de 2r+1 filas de sumas
+ * horizontales y una suma vertical por columna; entrar en una fila suma su suma horizontal y
+ * salir la resta. Los bordes se replican, como en ConvolutionEngine, y el alfa de origen se
+ * conserva. También ofrece un gaussiano aproximado por varias pasadas de caja y la
+ * binarización adaptativa sobre IntegralImage.
+ */
+public class BoxFilter {
+
+    private BoxFilter() {}
+
+    // --- API ---
+
+    public static BufferedImage mean(BufferedImage src, int radius) {
+        return mean(src, radius, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage mean(BufferedImage src, int radius, TileScheduler exec) {
+        if (radius < 0) throw new IllegalArgumentException("Radio negativo: " + radius);
+        ConvolutionEngine.Planes in = ConvolutionEngine.Planes.split(src, exec);
+        ConvolutionEngine.Planes out = new ConvolutionEngine.Planes(in.width, in.height);
+        boxPass(in, out, radius, exec);
+        System.arraycopy(in.a, 0, out.a, 0, in.a.length);
+        return out.toImage(true, exec);
+    }
+
+    /**
+     * Gaussiano aproximado con 'passes' cajas sucesivas (3 da un error pequeño frente al exacto)
+     * cuyo tamaño reproduce la varianza de sigma. Mucho más rápido que gaussianBlur para sigmas
+     * grandes, porque cada pasada cuesta lo mismo con cualquier radio.
+     */
+    public static BufferedImage approximateGaussian(BufferedImage src, float sigma, int passes, TileScheduler exec) {
+        ConvolutionEngine.Planes cur = ConvolutionEngine.Planes.split(src, exec);
+        byte[] alpha = cur.a;
+        ConvolutionEngine.Planes tmp = new ConvolutionEngine.Planes(cur.width, cur.height);
+        for (int radius : gaussianBoxRadii(sigma, passes)) {
+            boxPass(cur, tmp, radius, exec);
+            ConvolutionEngine.Planes t = cur;
+            cur = tmp;
+            tmp = t;
+        }
+        System.arraycopy(alpha, 0, cur.a, 0, alpha.length);
+        return cur.toImage(true, exec);
+    }
+
+    /**
+     * Radios de 'passes' cajas cuya composición tiene la varianza de un gaussiano de sigma
+     * (W. Kovesi, "Fast Almost-Gaussian Filtering"): m cajas de ancho wl y el resto de wl + 2.
+     */
+    public static int[] gaussianBoxRadii(float sigma, int passes) {
+        if (passes < 1) throw new IllegalArgumentException("Se necesita al menos una pasada");
+        double s2 = 12.0 * sigma * sigma;
+        int wl = (int) Math.floor(Math.sqrt(s2 / passes + 1));
+        if (wl % 2 == 0) wl--;
+        wl = Math.max(1, wl);
+        int m = (int) Math.round((s2 - passes * wl * wl - 4.0 * passes * wl - 3.0 * passes) / (-4.0 * wl - 4));
+        int[] radii = new int[passes];
+        for (int i = 0; i < passes; i++) radii[i] = ((i < m ? wl : wl + 2) - 1) / 2;
+        return radii;
+    }
+
+    /**
+     * Binarización adaptativa (Bradley y Roth): blanco si la luminancia supera en más de
+     * 'offset' (0..1, fracción) a la media de su ventana de radio r; negro si no.
+     * Devuelve TYPE_BYTE_GRAY con 0 y 255.
+     */
+    public static BufferedImage adaptiveThreshold(BufferedImage src, int radius, double offset, TileScheduler exec) {
+        IntegralImage sat = IntegralImage.ofLuminance(src, false, exec);
+        int w = src.getWidth(), h = src.getHeight();
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] dst = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+        double factor = 1.0 - offset;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                PixelAccess.readRow(src, 0, y, w, row, 0);
+                for (int x = 0; x < w; x++) {
+                    int p = row[x];
+                    int lum = PointOp.luma((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+                    dst[y * w + x] = lum > sat.mean(x, y, radius) * factor ? (byte) 255 : 0;
+                }
+            }
+        });
+        return out;
+    }
+
+    // --- Pasada de caja sobre planos R, G, B ---
+
+    static void boxPass(ConvolutionEngine.Planes in, ConvolutionEngine.Planes out, int r, TileScheduler exec) {
+        int w = in.width, h = in.height, n = 2 * r + 1;
+        double inv = 1.0 / ((double) n * n);
+        int[] idx = ConvolutionEngine.clampedIndices(w, r);
+        exec.forEachBand(0, h, (y0, y1) -> {
+            // Anillo: el slot (y - y0) % n guarda las sumas horizontales de la fila y - r.
+            int[][] ring = new int[n][3 * w];
+            int[] col = new int[3 * w];
+            for (int j = 0; j < n; j++) {
+                horizontalSums(in, PixelAccess.clampIndex(y0 - r + j, h), r, idx, ring[j]);
+                int[] s = ring[j];
+                for (int i = 0; i < col.length; i++) col[i] += s[i];
+            }
+            for (int y = y0; y < y1; y++) {
+                int off = y * w;
+                for (int x = 0; x < w; x++) {
+                    // Sin empates: 2*suma nunca es múltiplo impar de n^2 (n impar), así que +0.5 redondea exacto.
+                    out.r[off + x] = (byte) (int) (col[x] * inv + 0.5);
+                    out.g[off + x] = (byte) (int) (col[w + x] * inv + 0.5);
+                    out.b[off + x] = (byte) (int) (col[2 * w + x] * inv + 0.5);
+                }
+                if (y + 1 < y1) {
+                    int[] s = ring[(y - y0) % n];
+                    for (int i = 0; i < col.length; i++) col[i] -= s[i];
+                    horizontalSums(in, PixelAccess.clampIndex(y + r + 1, h), r, idx, s);
+                    for (int i = 0; i < col.length; i++) col[i] += s[i];
+                }
+            }
+        });
+    }
+
+    // Sumas de ventana 2r+1 en la fila y, para R, G y B: sums[c * w + x].
+    private static void horizontalSums(ConvolutionEngine.Planes p, int y, int r, int[] idx, int[] sums) {
+        int w = p.width, off = y * w;
+        horizontalSums(p.r, off, w, r, idx, sums, 0);
+        horizontalSums(p.g, off, w, r, idx, sums, w);
+        horizontalSums(p.b, off, w, r, idx, sums, 2 * w);
+    }
+
+    private static void horizontalSums(byte[] plane, int off, int w, int r, int[] idx, int[] sums, int dst) {
+        int s = 0, n = 2 * r + 1;
+        for (int i = 0; i < n; i++) s += plane[off + idx[i]] & 0xFF;
+        for (int x = 0; x < w - 1; x++) {
+            sums[dst + x] = s;
+            s += (plane[off + idx[x + n]] & 0xFF) - (plane[off + idx[x]] & 0xFF);
+        }
+        sums[dst + w - 1] = s;
+    }
+}
\ No newline at end of file
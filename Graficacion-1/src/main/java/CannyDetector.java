@@ -0,0 +1,272 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Detector de bordes de Canny.
+ *
+ * Etapas, todas por bandas de filas en el TileScheduler:
+ *   1. luminancia (bytes crudos en BYTE_GRAY) y gaussiano separable en un plano float;
+ *   2. gradiente Sobel: magnitud (L2) y dirección cuantizada a 0°, 45°, 90° o 135°;
+ *   3. supresión de no máximos: queda un plano de estados (nada, débil, fuerte);
+ *   4. histéresis con union-find sobre un int[] plano: cada banda une sus pixeles candidatos
+ *      8-conexos, después se cosen las fronteras entre bandas y cada componente con algún pixel
+ *      fuerte pasa entera a borde. Sin recursión ni pila, con cualquier tamaño de imagen.
+ *
+ * Los umbrales se expresan como fracción (0..1) de la magnitud máxima de la imagen. Con AUTO se
+ * toman del histograma de magnitudes: el alto deja por debajo el NON_EDGE_FRACTION de los pixeles
+ * y el bajo es LOW_RATIO veces el alto.
+ */
+public class CannyDetector {
+
+    /** Umbral calculado a partir del histograma de magnitudes. */
+    public static final double AUTO = -1;
+
+    public static final float DEFAULT_SIGMA = 1.4f;
+
+    /** Fracción de pixeles que se suponen sin borde al elegir el umbral alto automático. */
+    public static final double NON_EDGE_FRACTION = 0.7;
+
+    /** Umbral bajo automático respecto al alto. */
+    public static final double LOW_RATIO = 0.4;
+
+    private static final int HISTOGRAM_BINS = 1024;
+
+    // Estados de la supresión de no máximos (bit 4: componente con algún pixel fuerte).
+    private static final byte WEAK = 1, STRONG = 2, CONNECTED = 4;
+
+    private CannyDetector() {}
+
+    // --- API ---
+
+    public static BufferedImage detect(BufferedImage src) {
+        return detect(src, DEFAULT_SIGMA, AUTO, AUTO, TileScheduler.SEQUENTIAL);
+    }
+
+    /**
+     * Bordes de src en TYPE_BYTE_GRAY (255 borde, 0 fondo). low y high son fracciones de la magnitud
+     * máxima con low <= high; cualquiera de los dos puede ser AUTO (si solo se da high, low = LOW_RATIO * high).
+     */
+    public static BufferedImage detect(BufferedImage src, float sigma, double low, double high, TileScheduler exec) {
+        if (low != AUTO && high != AUTO && low > high) {
+            throw new IllegalArgumentException("Umbral bajo mayor que el alto: " + low + " > " + high);
+        }
+        int w = src.getWidth(), h = src.getHeight();
+        float[] buf = new float[w * h];
+        float[] smooth = smooth(src, sigma, buf, exec);
+        // El plano intermedio del gaussiano ya no hace falta: guarda la magnitud.
+        float[] mag = buf;
+        byte[] dir = new byte[w * h];
+        float maxMag = gradient(smooth, w, h, mag, dir, exec);
+
+        byte[] out = new byte[w * h];
+        if (maxMag > 0) {
+            double hi = high != AUTO ? high : autoHigh(mag, w, h, maxMag, exec);
+            double lo = low != AUTO ? low : LOW_RATIO * hi;
+            byte[] state = suppress(mag, dir, w, h, (float) (lo * maxMag), (float) (hi * maxMag), exec);
+            hysteresis(state, w, h, out, exec);
+        }
+        BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] store = ImageOperations.grayStoreTable();
+        byte[] data = PixelAccess.byteData(dst);
+        byte edge = store[255], none = store[0];
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int i = y0 * w; i < y1 * w; i++) data[i] = out[i] != 0 ? edge : none;
+        });
+        return dst;
+    }
+
+    // --- 1. Luminancia y gaussiano separable ---
+
+    // Devuelve el plano suavizado; tmp recibe la pasada horizontal.
+    private static float[] smooth(BufferedImage src, float sigma, float[] tmp, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        float[] k = sigma > 0 ? ImageOperations.gaussianKernel1D(sigma) : new float[]{1f};
+        int r = k.length / 2;
+        int[] idx = ConvolutionEngine.clampedIndices(w, r);
+        boolean gray = src.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] argb = new int[w];
+            byte[] g = new byte[w];
+            float[] lum = new float[w + 2 * r];
+            for (int y = y0; y < y1; y++) {
+                if (gray) {
+                    src.getRaster().getDataElements(0, y, w, 1, g);
+                    for (int i = 0; i < lum.length; i++) lum[i] = g[idx[i]] & 0xFF;
+                } else {
+                    PixelAccess.readRow(src, 0, y, w, argb, 0);
+                    for (int i = 0; i < lum.length; i++) {
+                        int p = argb[idx[i]];
+                        lum[i] = PointOp.luma((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+                    }
+                }
+                int o = y * w;
+                for (int x = 0; x < w; x++) {
+                    float s = 0f;
+                    for (int j = 0; j < k.length; j++) s += k[j] * lum[x + j];
+                    tmp[o + x] = s;
+                }
+            }
+        });
+        float[] out = new float[w * h];
+        exec.forEachBand(0, h, (y0, y1) -> {
+            float[] acc = new float[w];
+            for (int y = y0; y < y1; y++) {
+                Arrays.fill(acc, 0f);
+                for (int j = 0; j < k.length; j++) {
+                    int o = PixelAccess.clampIndex(y + j - r, h) * w;
+                    float kj = k[j];
+                    for (int x = 0; x < w; x++) acc[x] += kj * tmp[o + x];
+                }
+                System.arraycopy(acc, 0, out, y * w, w);
+            }
+        });
+        return out;
+    }
+
+    // --- 2. Gradiente ---
+
+    // Magnitud L2 y dirección (0: horizontal, 1: 45°, 2: vertical, 3: 135°); bordes replicados.
+    private static float gradient(float[] s, int w, int h, float[] mag, byte[] dir, TileScheduler exec) {
+        float[] max = new float[1];
+        Object lock = new Object();
+        // tan(22.5°) y tan(67.5°) para cuantizar la dirección sin atan2.
+        final float t1 = 0.41421356f, t2 = 2.41421356f;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            float localMax = 0f;
+            for (int y = y0; y < y1; y++) {
+                int a = PixelAccess.clampIndex(y - 1, h) * w, r = y * w, b = PixelAccess.clampIndex(y + 1, h) * w;
+                for (int x = 0; x < w; x++) {
+                    int xl = x > 0 ? x - 1 : 0, xr = x < w - 1 ? x + 1 : w - 1;
+                    float gx = (s[a + xr] - s[a + xl]) + 2 * (s[r + xr] - s[r + xl]) + (s[b + xr] - s[b + xl]);
+                    float gy = (s[b + xl] - s[a + xl]) + 2 * (s[b + x] - s[a + x]) + (s[b + xr] - s[a + xr]);
+                    float m = (float) Math.sqrt(gx * gx + gy * gy);
+                    float ax = Math.abs(gx), ay = Math.abs(gy);
+                    byte d;
+                    if (ay <= t1 * ax) d = 0;
+                    else if (ay >= t2 * ax) d = 2;
+                    else d = (gx > 0) == (gy > 0) ? (byte) 1 : (byte) 3;
+                    mag[r + x] = m;
+                    dir[r + x] = d;
+                    if (m > localMax) localMax = m;
+                }
+            }
+            synchronized (lock) {
+                if (localMax > max[0]) max[0] = localMax;
+            }
+        });
+        return max[0];
+    }
+
+    // --- Umbral automático ---
+
+    private static double autoHigh(float[] mag, int w, int h, float maxMag, TileScheduler exec) {
+        long[] hist = new long[HISTOGRAM_BINS];
+        float scale = (HISTOGRAM_BINS - 1) / maxMag;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] local = new int[HISTOGRAM_BINS];
+            for (int i = y0 * w; i < y1 * w; i++) local[(int) (mag[i] * scale)]++;
+            synchronized (hist) {
+                for (int i = 0; i < HISTOGRAM_BINS; i++) hist[i] += local[i];
+            }
+        });
+        long target = (long) Math.ceil(NON_EDGE_FRACTION * mag.length), acc = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            acc += hist[i];
+            if (acc >= target) return (double) (i + 1) / HISTOGRAM_BINS;
+        }
+        return 1.0;
+    }
+
+    // --- 3. Supresión de no máximos ---
+
+    private static byte[] suppress(float[] mag, byte[] dir, int w, int h, float low, float high, TileScheduler exec) {
+        byte[] state = new byte[w * h];
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int y = Math.max(1, y0); y < Math.min(h - 1, y1); y++) {
+                for (int x = 1, i = y * w + 1; x < w - 1; x++, i++) {
+                    float m = mag[i];
+                    if (m < low) continue;
+                    int off;
+                    switch (dir[i]) {
+                        case 0: off = 1; break;
+                        case 1: off = w + 1; break;
+                        case 2: off = w; break;
+                        default: off = w - 1; break;
+                    }
+                    // Desempate asimétrico: en una meseta solo queda un pixel del par.
+                    if (m > mag[i - off] && m >= mag[i + off]) state[i] = m >= high ? STRONG : WEAK;
+                }
+            }
+        });
+        return state;
+    }
+
+    // --- 4. Histéresis con union-find ---
+
+    private static void hysteresis(byte[] state, int w, int h, byte[] out, TileScheduler exec) {
+        int[] parent = new int[w * h];
+        boolean[] bandStart = new boolean[h];
+        // Uniones dentro de cada banda: solo tocan índices de la banda, así que no hay carreras.
+        exec.forEachBand(0, h, (y0, y1) -> {
+            bandStart[y0] = true;
+            for (int y = y0; y < y1; y++) {
+                for (int x = 0, i = y * w; x < w; x++, i++) {
+                    if (state[i] == 0) continue;
+                    parent[i] = i;
+                    if (x > 0 && state[i - 1] != 0) union(parent, i, i - 1);
+                    if (y > y0) {
+                        int up = i - w;
+                        if (x > 0 && state[up - 1] != 0) union(parent, i, up - 1);
+                        if (state[up] != 0) union(parent, i, up);
+                        if (x < w - 1 && state[up + 1] != 0) union(parent, i, up + 1);
+                    }
+                }
+            }
+        });
+        // Costuras entre bandas (secuencial: une componentes de bandas distintas).
+        for (int y = 1; y < h; y++) {
+            if (!bandStart[y]) continue;
+            for (int x = 0, i = y * w; x < w; x++, i++) {
+                if (state[i] == 0) continue;
+                int up = i - w;
+                if (x > 0 && state[up - 1] != 0) union(parent, i, up - 1);
+                if (state[up] != 0) union(parent, i, up);
+                if (x < w - 1 && state[up + 1] != 0) union(parent, i, up + 1);
+            }
+        }
+        // Raíces de componentes con algún pixel fuerte (todas las escrituras ponen el mismo bit).
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int i = y0 * w; i < y1 * w; i++) {
+                if (state[i] == STRONG || state[i] == (STRONG | CONNECTED)) {
+                    int root = find(parent, i);
+                    state[root] |= CONNECTED;
+                }
+            }
+        });
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int i = y0 * w; i < y1 * w; i++) {
+                if (state[i] != 0 && (state[find(parent, i)] & CONNECTED) != 0) out[i] = 1;
+            }
+        });
+    }
+
+    // Raíz sin modificar el arreglo (se usa en paralelo).
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) i = parent[i];
+        return i;
+    }
+
+    // Une las componentes de a y b; la raíz es siempre el índice menor y se comprime a medio camino.
+    private static void union(int[] parent, int a, int b) {
+        while (parent[a] != a) {
+            parent[a] = parent[parent[a]];
+            a = parent[a];
+        }
+        while (parent[b] != b) {
+            parent[b] = parent[parent[b]];
+            b = parent[b];
+        }
+        if (a < b) parent[b] = a;
+        else if (b < a) parent[a] = b;
+    }
+}
\ No newline at end of file
@@ -22,7 +22,7 @@ public class ClipboardUtils {
         if (cb.isDataFlavorAvailable(DataFlavor.imageFlavor)) {
             try {
                 Image img = (Image) cb.getData(DataFlavor.imageFlavor);
-                return ImageOperations.toBufferedImage(img);
+                return PixelStore.normalize(ImageOperations.toBufferedImage(img));
             } catch (UnsupportedFlavorException | IOException e) {
                 return null;
             }
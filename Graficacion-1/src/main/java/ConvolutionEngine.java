@@ -0,0 +1,244 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Motor de convolución sobre los arreglos del raster.
+ * Lee cada fila una sola vez (PixelAccess), la desempaqueta en buffers con bordes
+ * replicados y acumula en float; el resultado es TYPE_INT_ARGB con el alfa de origen.
+ * Lo comparten gaussianBlur y el resto de filtros de kernel.
+ */
+public class ConvolutionEngine {
+
+    private ConvolutionEngine() {}
+
+    /** Planos A, R, G, B de 8 bits (stride == ancho) usados entre pasadas. */
+    static final class Planes {
+        final int width, height;
+        final byte[] a, r, g, b;
+
+        Planes(int width, int height) {
+            this.width = width;
+            this.height = height;
+            int n = width * height;
+            a = new byte[n];
+            r = new byte[n];
+            g = new byte[n];
+            b = new byte[n];
+        }
+
+        /** Desempaqueta src (ARGB por PixelAccess) en planos, por bandas de filas. */
+        static Planes split(BufferedImage src, TileScheduler exec) {
+            int w = src.getWidth();
+            Planes p = new Planes(w, src.getHeight());
+            exec.forEachBand(0, p.height, (y0, y1) -> {
+                int[] row = new int[w];
+                for (int y = y0; y < y1; y++) {
+                    PixelAccess.readRow(src, 0, y, w, row, 0);
+                    int o = y * w;
+                    for (int x = 0; x < w; x++) {
+                        int v = row[x];
+                        p.a[o + x] = (byte) (v >>> 24);
+                        p.r[o + x] = (byte) (v >> 16);
+                        p.g[o + x] = (byte) (v >> 8);
+                        p.b[o + x] = (byte) v;
+                    }
+                }
+            });
+            return p;
+        }
+
+        /** Empaqueta los planos en TYPE_INT_ARGB; con alpha en false el resultado es opaco. */
+        BufferedImage toImage(boolean alpha, TileScheduler exec) {
+            BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] dst = PixelAccess.argbData(out);
+            exec.forEachBand(0, height, (y0, y1) -> {
+                for (int i = y0 * width; i < y1 * width; i++) {
+                    int av = alpha ? (a[i] & 0xFF) << 24 : 0xFF000000;
+                    dst[i] = av | (r[i] & 0xFF) << 16 | (g[i] & 0xFF) << 8 | (b[i] & 0xFF);
+                }
+            });
+            return out;
+        }
+    }
+
+    // --- API ---
+
+    /** Convolución separable: kx en horizontal y después ky en vertical, bordes replicados. */
+    public static BufferedImage convolveSeparable(BufferedImage src, float[] kx, float[] ky) {
+        return convolveSeparable(src, kx, ky, TileScheduler.SEQUENTIAL);
+    }
+
+    /** Igual que convolveSeparable, con cada pasada repartida en bandas de filas sobre exec. */
+    public static BufferedImage convolveSeparable(BufferedImage src, float[] kx, float[] ky, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        Planes tmp = new Planes(w, h);
+        exec.forEachBand(0, h, (y0, y1) -> horizontalPass(src, kx, tmp, y0, y1));
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = PixelAccess.argbData(out);
+        // La pasada vertical lee el halo de filas vecinas de tmp, ya completo tras la barrera.
+        exec.forEachBand(0, h, (y0, y1) -> verticalPass(tmp, ky, dst, y0, y1));
+        return out;
+    }
+
+    /** Convolución 2D general con un kernel kw x kh (row-major, dimensiones impares). */
+    public static BufferedImage convolve(BufferedImage src, float[] kernel, int kw, int kh) {
+        return convolve(src, kernel, kw, kh, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage convolve(BufferedImage src, float[] kernel, int kw, int kh, TileScheduler exec) {
+        if (kw % 2 == 0 || kh % 2 == 0 || kernel.length != kw * kh) {
+            throw new IllegalArgumentException("Kernel inválido: " + kw + "x" + kh);
+        }
+        int w = src.getWidth(), h = src.getHeight();
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = PixelAccess.argbData(out);
+        exec.forEachBand(0, h, (y0, y1) -> convolveRows(src, kernel, kw, kh, dst, y0, y1));
+        return out;
+    }
+
+    // --- Pasadas (por rango de filas [y0, y1)) ---
+
+    static void horizontalPass(BufferedImage src, float[] k, Planes dst, int y0, int y1) {
+        int w = dst.width;
+        int radius = k.length / 2;
+        int padded = w + 2 * radius;
+        int[] row = new int[w];
+        float[] pr = new float[padded], pg = new float[padded], pb = new float[padded];
+        float[] ar = new float[w], ag = new float[w], ab = new float[w];
+        int[] idx = clampedIndices(w, radius);
+
+        for (int y = y0; y < y1; y++) {
+            PixelAccess.readRow(src, 0, y, w, row, 0);
+            for (int i = 0; i < padded; i++) {
+                int p = row[idx[i]];
+                pr[i] = (p >> 16) & 0xFF;
+                pg[i] = (p >> 8) & 0xFF;
+                pb[i] = p & 0xFF;
+            }
+            // Acumula tap por tap sobre toda la fila (bucle vectorizable, mismo orden de suma por pixel).
+            Arrays.fill(ar, 0f);
+            Arrays.fill(ag, 0f);
+            Arrays.fill(ab, 0f);
+            for (int j = 0; j < k.length; j++) {
+                float wgt = k[j];
+                for (int x = 0; x < w; x++) {
+                    ar[x] += pr[x + j] * wgt;
+                    ag[x] += pg[x + j] * wgt;
+                    ab[x] += pb[x + j] * wgt;
+                }
+            }
+            int off = y * w;
+            for (int x = 0; x < w; x++) {
+                dst.a[off + x] = (byte) (row[x] >>> 24);
+                dst.r[off + x] = (byte) clamp(Math.round(ar[x]));
+                dst.g[off + x] = (byte) clamp(Math.round(ag[x]));
+                dst.b[off + x] = (byte) clamp(Math.round(ab[x]));
+            }
+        }
+    }
+
+    static void verticalPass(Planes src, float[] k, int[] dst, int y0, int y1) {
+        int w = src.width, h = src.height;
+        int kl = k.length, radius = kl / 2;
+        float[] ar = new float[w], ag = new float[w], ab = new float[w];
+
+        // Ventana deslizante de kl filas ya convertidas a float; tag = fila de origen de cada slot.
+        float[][] wr = new float[kl][w], wg = new float[kl][w], wb = new float[kl][w];
+        int[] tag = new int[kl];
+        Arrays.fill(tag, -1);
+
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(ar, 0f);
+            Arrays.fill(ag, 0f);
+            Arrays.fill(ab, 0f);
+            for (int j = 0; j < kl; j++) {
+                int sy = PixelAccess.clampIndex(y - radius + j, h);
+                int slot = sy % kl;
+                float[] fr = wr[slot], fg = wg[slot], fb = wb[slot];
+                if (tag[slot] != sy) {
+                    int off = sy * w;
+                    for (int x = 0; x < w; x++) {
+                        fr[x] = src.r[off + x] & 0xFF;
+                        fg[x] = src.g[off + x] & 0xFF;
+                        fb[x] = src.b[off + x] & 0xFF;
+                    }
+                    tag[slot] = sy;
+                }
+                float wgt = k[j];
+                for (int x = 0; x < w; x++) {
+                    ar[x] += fr[x] * wgt;
+                    ag[x] += fg[x] * wgt;
+                    ab[x] += fb[x] * wgt;
+                }
+            }
+            int off = y * w;
+            for (int x = 0; x < w; x++) {
+                dst[off + x] = ((src.a[off + x] & 0xFF) << 24) | (clamp(Math.round(ar[x])) << 16)
+                        | (clamp(Math.round(ag[x])) << 8) | clamp(Math.round(ab[x]));
+            }
+        }
+    }
+
+    static void convolveRows(BufferedImage src, float[] kernel, int kw, int kh, int[] dst, int y0, int y1) {
+        int w = src.getWidth(), h = src.getHeight();
+        int rx = kw / 2, ry = kh / 2;
+        int padded = w + 2 * rx;
+        int[] idx = clampedIndices(w, rx);
+        int[] row = new int[w];
+
+        // Buffer circular de kh filas desempaquetadas; tag = fila de origen que contiene.
+        int[][] cr = new int[kh][padded], cg = new int[kh][padded], cb = new int[kh][padded];
+        int[] alpha = new int[w];
+        int[] tag = new int[kh];
+        Arrays.fill(tag, -1);
+
+        for (int y = y0; y < y1; y++) {
+            for (int j = 0; j < kh; j++) {
+                int sy = PixelAccess.clampIndex(y - ry + j, h);
+                int slot = sy % kh;
+                if (tag[slot] == sy) continue;
+                PixelAccess.readRow(src, 0, sy, w, row, 0);
+                int[] r = cr[slot], g = cg[slot], b = cb[slot];
+                for (int i = 0; i < padded; i++) {
+                    int p = row[idx[i]];
+                    r[i] = (p >> 16) & 0xFF;
+                    g[i] = (p >> 8) & 0xFF;
+                    b[i] = p & 0xFF;
+                }
+                tag[slot] = sy;
+            }
+            PixelAccess.readRow(src, 0, y, w, alpha, 0);
+
+            int off = y * w;
+            for (int x = 0; x < w; x++) {
+                float r = 0, g = 0, b = 0;
+                for (int j = 0; j < kh; j++) {
+                    int slot = PixelAccess.clampIndex(y - ry + j, h) % kh;
+                    int[] rr = cr[slot], rg = cg[slot], rb = cb[slot];
+                    int kOff = j * kw;
+                    for (int i = 0; i < kw; i++) {
+                        float wgt = kernel[kOff + i];
+                        r += rr[x + i] * wgt;
+                        g += rg[x + i] * wgt;
+                        b += rb[x + i] * wgt;
+                    }
+                }
+                dst[off + x] = (alpha[x] & 0xFF000000) | (clamp(Math.round(r)) << 16)
+                        | (clamp(Math.round(g)) << 8) | clamp(Math.round(b));
+            }
+        }
+    }
+
+    // --- Helpers ---
+
+    /** Índices con borde replicado para un buffer de fila con 'radius' pixeles de relleno a cada lado. */
+    static int[] clampedIndices(int w, int radius) {
+        int[] idx = new int[w + 2 * radius];
+        for (int i = 0; i < idx.length; i++) idx[i] = PixelAccess.clampIndex(i - radius, w);
+        return idx;
+    }
+
+    static int clamp(int v) {
+        return (v < 0) ? 0 : (v > 255 ? 255 : v);
+    }
+}
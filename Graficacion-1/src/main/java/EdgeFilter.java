@@ -0,0 +1,73 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Detectores de bordes de Prewitt, Roberts y Laplaciano sobre la luminancia.
+ *
+ * Cada operador es un SobelEngine.RowKernel: el recorrido por anillo de tres filas, la luminancia,
+ * la normalización por el máximo de la imagen (dos recorridos) y la codificación de la salida son
+ * las de Sobel, así que los cuatro detectores producen imágenes comparables. La salida es
+ * TYPE_BYTE_GRAY con las filas y columnas del borde en negro.
+ */
+public class EdgeFilter {
+
+    /** Operador de bordes. */
+    public enum Operator {
+        /** Gradiente 3x3 de pesos uniformes; sqrt(gx² + gy²). */
+        PREWITT(EdgeFilter::prewitt, true),
+        /** Diferencias cruzadas 2x2; sqrt(gx² + gy²). */
+        ROBERTS(EdgeFilter::roberts, true),
+        /** Laplaciano de 8 vecinos; valor absoluto de la respuesta. */
+        LAPLACIAN(EdgeFilter::laplacian, false);
+
+        final SobelEngine.RowKernel kernel;
+        final boolean squared; // claves al cuadrado (se escala su raíz)
+
+        Operator(SobelEngine.RowKernel kernel, boolean squared) {
+            this.kernel = kernel;
+            this.squared = squared;
+        }
+    }
+
+    private EdgeFilter() {}
+
+    public static BufferedImage apply(BufferedImage src, Operator op, TileScheduler exec) {
+        return SobelEngine.apply(src, null, op.kernel, op.squared, -1, exec);
+    }
+
+    // --- Respuestas por fila (columnas 1..w-2; a es la fila de arriba y b la de abajo) ---
+
+    private static int prewitt(int[] a, int[] r, int[] b, int[] out) {
+        int n = r.length - 1, max = 0;
+        for (int x = 1; x < n; x++) {
+            int gx = (a[x + 1] - a[x - 1]) + (r[x + 1] - r[x - 1]) + (b[x + 1] - b[x - 1]);
+            int gy = (b[x - 1] - a[x - 1]) + (b[x] - a[x]) + (b[x + 1] - a[x + 1]);
+            int k = gx * gx + gy * gy;
+            out[x] = k;
+            max = Math.max(max, k);
+        }
+        return max;
+    }
+
+    private static int roberts(int[] a, int[] r, int[] b, int[] out) {
+        int n = r.length - 1, max = 0;
+        for (int x = 1; x < n; x++) {
+            int gx = r[x] - b[x + 1];
+            int gy = r[x + 1] - b[x];
+            int k = gx * gx + gy * gy;
+            out[x] = k;
+            max = Math.max(max, k);
+        }
+        return max;
+    }
+
+    private static int laplacian(int[] a, int[] r, int[] b, int[] out) {
+        int n = r.length - 1, max = 0;
+        for (int x = 1; x < n; x++) {
+            int sum = a[x - 1] + a[x] + a[x + 1] + r[x - 1] + r[x + 1] + b[x - 1] + b[x] + b[x + 1];
+            int k = Math.abs(sum - 8 * r[x]);
+            out[x] = k;
+            max = Math.max(max, k);
+        }
+        return max;
+    }
+}
\ No newline at end of file
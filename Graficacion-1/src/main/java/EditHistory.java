@@ -0,0 +1,296 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Historial de deshacer/rehacer basado en comandos.
+ *
+ * Cada paso guarda la operación (reproducible) y, solo si la operación fue costosa, una instantánea
+ * del resultado. Un estado sin instantánea se reconstruye desde la instantánea anterior más cercana
+ * volviendo a aplicar los comandos. Las instantáneas cuentan contra un presupuesto de bytes: al
+ * superarlo se comprimen (Deflater, en segundo plano) empezando por las más antiguas y, si no basta,
+ * se descartan. La del estado inicial nunca se descarta, así que todo estado sigue siendo alcanzable.
+ *
+ * Las imágenes que entran o salen del historial se tratan como inmutables: no deben modificarse
+ * en sitio, porque pueden compartirse con una instantánea.
+ */
+public class EditHistory {
+
+    /** Operaciones que tardan más que esto dejan instantánea (reproducirlas sería lento). */
+    private static final long SNAPSHOT_MIN_NANOS = 15_000_000L;
+    /** Como mucho estos pasos seguidos sin instantánea. */
+    private static final int MAX_REPLAY_STEPS = 8;
+    private static final int CHUNK = 1 << 20;
+
+    private static final class Step {
+        final String label;
+        final UnaryOperator<BufferedImage> op;
+        Snapshot snapshot;
+
+        Step(String label, UnaryOperator<BufferedImage> op) {
+            this.label = label;
+            this.op = op;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+    private final long budgetBytes;
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "historial-compresion");
+        t.setDaemon(true);
+        return t;
+    });
+    private int cursor = -1;
+    private BufferedImage current;
+
+    public EditHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** Una cuarta parte del heap máximo. */
+    public static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    // --- API ---
+
+    public synchronized void reset(BufferedImage initial) {
+        steps.clear();
+        Step base = new Step("Original", null);
+        base.snapshot = new Snapshot(initial);
+        steps.add(base);
+        cursor = 0;
+        current = initial;
+        enforceBudget();
+    }
+
+    /** Aplica op al estado actual, la registra (descartando lo que hubiera para rehacer) y devuelve el resultado. */
+    public synchronized BufferedImage apply(String label, UnaryOperator<BufferedImage> op) {
+        if (cursor < 0) throw new IllegalStateException("Historial sin imagen inicial");
+        long t0 = System.nanoTime();
+        BufferedImage result = op.apply(current);
+        record(label, op, current, result, System.nanoTime() - t0);
+        return result;
+    }
+
+    /**
+     * Registra un resultado calculado fuera del historial (p. ej. en segundo plano) aplicando op a
+     * base. Devuelve false sin registrar nada si base ya no es el estado actual (hubo deshacer u otra
+     * operación entretanto). op debe reproducir el resultado para poder rehacerlo.
+     */
+    public synchronized boolean record(String label, UnaryOperator<BufferedImage> op, BufferedImage base,
+                                       BufferedImage result, long elapsed) {
+        if (cursor < 0 || base != current) return false;
+        while (steps.size() > cursor + 1) steps.remove(steps.size() - 1);
+        Step step = new Step(label, op);
+        if (elapsed >= SNAPSHOT_MIN_NANOS || stepsSinceSnapshot(cursor) >= MAX_REPLAY_STEPS) {
+            step.snapshot = new Snapshot(result);
+        }
+        steps.add(step);
+        cursor++;
+        current = result;
+        enforceBudget();
+        return true;
+    }
+
+    public synchronized BufferedImage undo() {
+        if (!canUndo()) return null;
+        cursor--;
+        current = rebuild(cursor);
+        return current;
+    }
+
+    public synchronized BufferedImage redo() {
+        if (!canRedo()) return null;
+        Step next = steps.get(cursor + 1);
+        current = next.snapshot != null ? next.snapshot.restore() : next.op.apply(current);
+        cursor++;
+        return current;
+    }
+
+    /** Estado inicial (el de reset), reconstruido desde su instantánea. */
+    public synchronized BufferedImage original() {
+        return cursor < 0 ? null : steps.get(0).snapshot.restore();
+    }
+
+    public synchronized boolean canUndo() { return cursor > 0; }
+    public synchronized boolean canRedo() { return cursor >= 0 && cursor < steps.size() - 1; }
+    public synchronized String getUndoLabel() { return canUndo() ? steps.get(cursor).label : null; }
+    public synchronized String getRedoLabel() { return canRedo() ? steps.get(cursor + 1).label : null; }
+
+    /** Bytes ocupados por las instantáneas (sin comprimir o comprimidas). */
+    public synchronized long getSnapshotBytes() {
+        long total = 0;
+        for (Step s : steps) {
+            if (s.snapshot != null) total += s.snapshot.bytes();
+        }
+        return total;
+    }
+
+    // --- Reconstrucción ---
+
+    private BufferedImage rebuild(int index) {
+        int from = index;
+        while (steps.get(from).snapshot == null) from--;
+        BufferedImage img = steps.get(from).snapshot.restore();
+        for (int i = from + 1; i <= index; i++) img = steps.get(i).op.apply(img);
+        return img;
+    }
+
+    private int stepsSinceSnapshot(int index) {
+        int n = 0;
+        while (index > 0 && steps.get(index).snapshot == null) {
+            index--;
+            n++;
+        }
+        return n;
+    }
+
+    // --- Presupuesto ---
+
+    // Primero comprime las instantáneas más antiguas (no la del estado actual); luego las descarta (no la base).
+    private void enforceBudget() {
+        long total = getSnapshotBytes();
+        for (int i = 0; i < steps.size() && total > budgetBytes; i++) {
+            Snapshot s = steps.get(i).snapshot;
+            if (s == null || i == cursor || !s.markForCompression()) continue;
+            long before = s.bytes();
+            compressor.execute(() -> {
+                s.compress();
+                synchronized (EditHistory.this) {
+                    enforceBudget();
+                }
+            });
+            total -= before - before / 3; // estimación hasta que termine la compresión
+        }
+        for (int i = 1; i < steps.size() && total > budgetBytes; i++) {
+            Step step = steps.get(i);
+            if (step.snapshot == null || i == cursor) continue;
+            total -= step.snapshot.bytes();
+            step.snapshot = null;
+        }
+    }
+
+    // --- Instantánea: la imagen tal cual o sus bytes comprimidos ---
+
+    private static final class Snapshot {
+        private volatile BufferedImage image;
+        private volatile byte[] packed;
+        private final int width, height, type;
+        private final long rawBytes;
+        private boolean compressing;
+
+        Snapshot(BufferedImage img) {
+            image = img;
+            width = img.getWidth();
+            height = img.getHeight();
+            type = img.getType();
+            DataBuffer db = img.getRaster().getDataBuffer();
+            rawBytes = (long) db.getSize() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+        }
+
+        long bytes() {
+            byte[] p = packed;
+            return p != null ? p.length : rawBytes;
+        }
+
+        /** Reserva la instantánea para comprimirla; false si ya está (o va a estar) comprimida o no se puede. */
+        synchronized boolean markForCompression() {
+            if (compressing || packed != null || image == null) return false;
+            if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB
+                    && type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR
+                    && type != BufferedImage.TYPE_BYTE_GRAY) return false;
+            DataBuffer db = image.getRaster().getDataBuffer();
+            compressing = db.getOffset() == 0 && image.getRaster().getParent() == null
+                    && (long) db.getSize() == (long) width * height * (db instanceof DataBufferInt ? 1 : image.getRaster().getNumBands());
+            return compressing;
+        }
+
+        BufferedImage restore() {
+            BufferedImage img = image;
+            if (img != null) return img;
+            return inflate(packed);
+        }
+
+        void compress() {
+            DataBuffer db = image.getRaster().getDataBuffer();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(rawBytes / 4, Integer.MAX_VALUE - 8));
+            byte[] buf = new byte[CHUNK];
+            byte[] outBuf = new byte[CHUNK];
+            if (db instanceof DataBufferInt) {
+                int[] data = ((DataBufferInt) db).getData();
+                ByteBuffer bb = ByteBuffer.wrap(buf);
+                for (int off = 0; off < data.length; off += CHUNK / 4) {
+                    int n = Math.min(CHUNK / 4, data.length - off);
+                    bb.clear();
+                    bb.asIntBuffer().put(data, off, n);
+                    deflater.setInput(buf, 0, n * 4);
+                    drain(deflater, outBuf, out);
+                }
+            } else {
+                byte[] data = ((DataBufferByte) db).getData();
+                deflater.setInput(data);
+                drain(deflater, outBuf, out);
+            }
+            deflater.finish();
+            while (!deflater.finished()) out.write(outBuf, 0, deflater.deflate(outBuf));
+            deflater.end();
+            packed = out.toByteArray();
+            image = null;
+        }
+
+        private static void drain(Deflater d, byte[] outBuf, ByteArrayOutputStream out) {
+            while (!d.needsInput()) out.write(outBuf, 0, d.deflate(outBuf));
+        }
+
+        private BufferedImage inflate(byte[] data) {
+            BufferedImage img = new BufferedImage(width, height, type);
+            DataBuffer db = img.getRaster().getDataBuffer();
+            Inflater inflater = new Inflater();
+            inflater.setInput(data);
+            try {
+                if (db instanceof DataBufferInt) {
+                    int[] dst = ((DataBufferInt) db).getData();
+                    byte[] buf = new byte[CHUNK];
+                    ByteBuffer bb = ByteBuffer.wrap(buf);
+                    int pos = 0, pending = 0;
+                    while (pos < dst.length) {
+                        int n = inflater.inflate(buf, pending, buf.length - pending);
+                        if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                        int avail = pending + n, ints = avail / 4;
+                        bb.clear();
+                        bb.asIntBuffer().get(dst, pos, ints);
+                        pos += ints;
+                        pending = avail - ints * 4;
+                        System.arraycopy(buf, ints * 4, buf, 0, pending);
+                    }
+                } else {
+                    byte[] dst = ((DataBufferByte) db).getData();
+                    int pos = 0;
+                    while (pos < dst.length) {
+                        int n = inflater.inflate(dst, pos, dst.length - pos);
+                        if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                        pos += n;
+                    }
+                }
+            } catch (DataFormatException ex) {
+                throw new IllegalStateException("Instantánea del historial corrupta", ex);
+            } finally {
+                inflater.end();
+            }
+            return img;
+        }
+    }
+}
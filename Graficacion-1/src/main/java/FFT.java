@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transformada rápida de Fourier compleja sobre buffers float[] intercalados (re, im, re, im...).
+ *
+ * Tamaños de la forma 2^a 3^b 5^c: Cooley-Tukey de base mixta (etapas de base 4, 2, 3 y 5) en
+ * forma Stockham, que alterna entre el buffer y el espacio de trabajo sin permutación de bits y
+ * recorre posiciones contiguas en el bucle interno. Cualquier otro tamaño: Bluestein (chirp-z), que
+ * reduce la transformada a una convolución circular con una FFT de potencia de dos >= 2n - 1.
+ *
+ * Los planes (factores y tabla de giros) se cachean por tamaño y son inmutables, así que se
+ * comparten entre hilos; el espacio de trabajo lo aporta el llamador (newScratch()), uno por hilo.
+ * La inversa incluye el factor 1/n: inverse(forward(x)) == x salvo redondeo.
+ */
+public final class FFT {
+
+    private static final ConcurrentHashMap<Integer, FFT> PLANS = new ConcurrentHashMap<>();
+
+    // Columnas que se copian juntas en la pasada vertical (una línea de caché de complejos).
+    private static final int COLUMN_BLOCK = 8;
+
+    private static final float SIN_60 = (float) Math.sin(Math.PI / 3);
+    private static final float C1 = (float) Math.cos(2 * Math.PI / 5), C2 = (float) Math.cos(4 * Math.PI / 5);
+    private static final float S1 = (float) Math.sin(2 * Math.PI / 5), S2 = (float) Math.sin(4 * Math.PI / 5);
+
+    private final int n;
+    // Base mixta: factores en orden de aplicación y cos/sin de 2*pi*j/n.
+    private final int[] factors;
+    private final float[] cos, sin;
+    // Bluestein: chirp w_k = e^(-i*pi*k^2/n) y FFT de la secuencia conj(w) circular de tamaño inner.n.
+    private final FFT inner;
+    private final float[] chirp, chirpSpectrum;
+
+    private FFT(int n) {
+        this.n = n;
+        this.inner = null;
+        this.chirp = this.chirpSpectrum = null;
+        this.factors = factorize(n);
+        cos = new float[n];
+        sin = new float[n];
+        for (int j = 0; j < n; j++) {
+            double a = 2 * Math.PI * j / n;
+            cos[j] = (float) Math.cos(a);
+            sin[j] = (float) Math.sin(a);
+        }
+    }
+
+    private FFT(int n, FFT inner) {
+        this.n = n;
+        this.inner = inner;
+        this.factors = null;
+        this.cos = this.sin = null;
+        int m = inner.n;
+        chirp = new float[2 * n];
+        for (int k = 0; k < n; k++) {
+            // k^2 mod 2n evita perder precisión en el ángulo con n grandes.
+            double a = Math.PI * (((long) k * k) % (2L * n)) / n;
+            chirp[2 * k] = (float) Math.cos(a);
+            chirp[2 * k + 1] = (float) -Math.sin(a);
+        }
+        chirpSpectrum = new float[2 * m];
+        for (int k = 0; k < n; k++) {
+            chirpSpectrum[2 * k] = chirp[2 * k];
+            chirpSpectrum[2 * k + 1] = -chirp[2 * k + 1];
+            if (k > 0) {
+                chirpSpectrum[2 * (m - k)] = chirp[2 * k];
+                chirpSpectrum[2 * (m - k) + 1] = -chirp[2 * k + 1];
+            }
+        }
+        inner.mixedRadix(chirpSpectrum, 0, new float[2 * m], 0);
+    }
+
+    /** Plan para n puntos (cacheado). */
+    public static FFT of(int n) {
+        if (n < 1) throw new IllegalArgumentException("Tamaño de FFT inválido: " + n);
+        FFT plan = PLANS.get(n);
+        if (plan != null) return plan;
+        if (goodSize(n) == n) return PLANS.computeIfAbsent(n, FFT::new);
+        FFT inner = of(nextPowerOfTwo(2 * n - 1)); // fuera de computeIfAbsent: no se puede anidar
+        return PLANS.computeIfAbsent(n, k -> new FFT(k, inner));
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Espacio de trabajo para transform(), de un solo hilo. */
+    public float[] newScratch() {
+        return new float[inner == null ? 2 * n : 4 * inner.n];
+    }
+
+    /** Transforma en sitio los n complejos de a[off..off + 2n). */
+    public void transform(float[] a, int off, boolean inverse, float[] scratch) {
+        // La inversa es la directa con la entrada y la salida conjugadas.
+        if (inverse) conjugate(a, off, n, 1f);
+        if (inner == null) {
+            mixedRadix(a, off, scratch, 0);
+        } else {
+            bluestein(a, off, scratch);
+        }
+        if (inverse) conjugate(a, off, n, 1f / n);
+    }
+
+    /**
+     * FFT 2-D en sitio de una matriz w x h de complejos intercalados (fila a fila): filas y después
+     * columnas, repartidas en bandas sobre exec. Cada línea es independiente, así que el resultado
+     * no depende del paralelismo.
+     */
+    public static void transform2D(float[] data, int w, int h, boolean inverse, TileScheduler exec) {
+        rows(data, w, 0, h, inverse, exec);
+        columns(data, w, h, inverse, exec);
+    }
+
+    /** Transforma las filas [y0, y1) de una matriz de ancho w. */
+    static void rows(float[] data, int w, int y0, int y1, boolean inverse, TileScheduler exec) {
+        FFT plan = of(w);
+        exec.forEachBand(y0, y1, (from, to) -> {
+            float[] scratch = plan.newScratch();
+            for (int y = from; y < to; y++) plan.transform(data, 2 * y * w, inverse, scratch);
+        });
+    }
+
+    /** Transforma todas las columnas, copiadas por bloques de COLUMN_BLOCK a un buffer contiguo. */
+    static void columns(float[] data, int w, int h, boolean inverse, TileScheduler exec) {
+        FFT plan = of(h);
+        int blocks = (w + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+        exec.forEachBand(0, blocks, (b0, b1) -> {
+            float[] col = new float[2 * h * COLUMN_BLOCK];
+            float[] scratch = plan.newScratch();
+            for (int b = b0; b < b1; b++) {
+                int x0 = b * COLUMN_BLOCK, nc = Math.min(COLUMN_BLOCK, w - x0);
+                for (int y = 0; y < h; y++) {
+                    int s = 2 * (y * w + x0);
+                    for (int c = 0; c < nc; c++) {
+                        col[c * 2 * h + 2 * y] = data[s + 2 * c];
+                        col[c * 2 * h + 2 * y + 1] = data[s + 2 * c + 1];
+                    }
+                }
+                for (int c = 0; c < nc; c++) plan.transform(col, c * 2 * h, inverse, scratch);
+                for (int y = 0; y < h; y++) {
+                    int s = 2 * (y * w + x0);
+                    for (int c = 0; c < nc; c++) {
+                        data[s + 2 * c] = col[c * 2 * h + 2 * y];
+                        data[s + 2 * c + 1] = col[c * 2 * h + 2 * y + 1];
+                    }
+                }
+            }
+        });
+    }
+
+    /** Menor tamaño >= n de la forma 2^a 3^b 5^c (rápido sin recurrir a Bluestein). */
+    public static int goodSize(int n) {
+        for (int m = Math.max(1, n); ; m++) {
+            int r = m;
+            for (int p = 2; p <= 5; p++) {
+                while (r % p == 0) r /= p;
+            }
+            if (r == 1) return m;
+        }
+    }
+
+    public static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // --- Base mixta (Stockham) ---
+
+    // Factores 4 primero (menos pasadas), luego 2, 3 y 5.
+    private static int[] factorize(int n) {
+        int[] f = new int[32];
+        int k = 0;
+        while (n % 4 == 0) { f[k++] = 4; n /= 4; }
+        while (n % 2 == 0) { f[k++] = 2; n /= 2; }
+        while (n % 3 == 0) { f[k++] = 3; n /= 3; }
+        while (n % 5 == 0) { f[k++] = 5; n /= 5; }
+        return Arrays.copyOf(f, k);
+    }
+
+    // Tras la etapa con DFTs de longitud L, la DFT del residuo k (mod r = n / L) en la frecuencia f
+    // está en [f * r + k]. Cada etapa de base p combina p residuos: lee [f * r + u * r' + k] y
+    // escribe [(f + L * v) * r' + k], con r' = r / p; el bucle interno recorre k contiguo.
+    private void mixedRadix(float[] a, int off, float[] work, int workOff) {
+        float[] in = a, out = work;
+        int inOff = off, outOff = workOff;
+        int l = 1;
+        for (int p : factors) {
+            int r1 = n / (l * p);
+            switch (p) {
+                case 4: stage4(in, inOff, out, outOff, l, r1); break;
+                case 2: stage2(in, inOff, out, outOff, l, r1); break;
+                case 3: stage3(in, inOff, out, outOff, l, r1); break;
+                default: stage5(in, inOff, out, outOff, l, r1); break;
+            }
+            float[] t = in; in = out; out = t;
+            int o = inOff; inOff = outOff; outOff = o;
+            l *= p;
+        }
+        if (in != a || inOff != off) System.arraycopy(in, inOff, a, off, 2 * n);
+    }
+
+    private void stage2(float[] in, int io, float[] out, int oo, int l, int r1) {
+        int r = 2 * r1;
+        for (int f = 0; f < l; f++) {
+            int t = f * r1;
+            float wr = cos[t], wi = -sin[t];
+            int i0 = io + 2 * f * r, o0 = oo + 2 * f * r1, o1 = oo + 2 * (f + l) * r1;
+            for (int k = 0; k < 2 * r1; k += 2) {
+                float ar = in[i0 + k], ai = in[i0 + k + 1];
+                float xr = in[i0 + 2 * r1 + k], xi = in[i0 + 2 * r1 + k + 1];
+                float br = xr * wr - xi * wi, bi = xr * wi + xi * wr;
+                out[o0 + k] = ar + br;
+                out[o0 + k + 1] = ai + bi;
+                out[o1 + k] = ar - br;
+                out[o1 + k + 1] = ai - bi;
+            }
+        }
+    }
+
+    private void stage4(float[] in, int io, float[] out, int oo, int l, int r1) {
+        int r = 4 * r1, q = 2 * r1;
+        for (int f = 0; f < l; f++) {
+            int t = f * r1;
+            float w1r = cos[t], w1i = -sin[t], w2r = cos[2 * t], w2i = -sin[2 * t], w3r = cos[3 * t], w3i = -sin[3 * t];
+            int i0 = io + 2 * f * r, o0 = oo + 2 * f * r1, os = 2 * l * r1;
+            for (int k = 0; k < q; k += 2) {
+                int i = i0 + k;
+                float a0r = in[i], a0i = in[i + 1];
+                float xr = in[i + q], xi = in[i + q + 1];
+                float a1r = xr * w1r - xi * w1i, a1i = xr * w1i + xi * w1r;
+                xr = in[i + 2 * q];
+                xi = in[i + 2 * q + 1];
+                float a2r = xr * w2r - xi * w2i, a2i = xr * w2i + xi * w2r;
+                xr = in[i + 3 * q];
+                xi = in[i + 3 * q + 1];
+                float a3r = xr * w3r - xi * w3i, a3i = xr * w3i + xi * w3r;
+                float t0r = a0r + a2r, t0i = a0i + a2i, t1r = a0r - a2r, t1i = a0i - a2i;
+                float t2r = a1r + a3r, t2i = a1i + a3i, t3r = a1r - a3r, t3i = a1i - a3i;
+                int o = o0 + k;
+                out[o] = t0r + t2r;
+                out[o + 1] = t0i + t2i;
+                out[o + os] = t1r + t3i;
+                out[o + os + 1] = t1i - t3r;
+                out[o + 2 * os] = t0r - t2r;
+                out[o + 2 * os + 1] = t0i - t2i;
+                out[o + 3 * os] = t1r - t3i;
+                out[o + 3 * os + 1] = t1i + t3r;
+            }
+        }
+    }
+
+    private void stage3(float[] in, int io, float[] out, int oo, int l, int r1) {
+        int r = 3 * r1, q = 2 * r1;
+        for (int f = 0; f < l; f++) {
+            int t = f * r1;
+            float w1r = cos[t], w1i = -sin[t], w2r = cos[2 * t], w2i = -sin[2 * t];
+            int i0 = io + 2 * f * r, o0 = oo + 2 * f * r1, os = 2 * l * r1;
+            for (int k = 0; k < q; k += 2) {
+                int i = i0 + k;
+                float a0r = in[i], a0i = in[i + 1];
+                float xr = in[i + q], xi = in[i + q + 1];
+                float a1r = xr * w1r - xi * w1i, a1i = xr * w1i + xi * w1r;
+                xr = in[i + 2 * q];
+                xi = in[i + 2 * q + 1];
+                float a2r = xr * w2r - xi * w2i, a2i = xr * w2i + xi * w2r;
+                float sr = a1r + a2r, si = a1i + a2i;
+                float mr = a0r - 0.5f * sr, mi = a0i - 0.5f * si;
+                // -i * sin(60) * (a1 - a2)
+                float nr = SIN_60 * (a1i - a2i), ni = -SIN_60 * (a1r - a2r);
+                int o = o0 + k;
+                out[o] = a0r + sr;
+                out[o + 1] = a0i + si;
+                out[o + os] = mr + nr;
+                out[o + os + 1] = mi + ni;
+                out[o + 2 * os] = mr - nr;
+                out[o + 2 * os + 1] = mi - ni;
+            }
+        }
+    }
+
+    private void stage5(float[] in, int io, float[] out, int oo, int l, int r1) {
+        int r = 5 * r1, q = 2 * r1;
+        float[] wr = new float[5], wi = new float[5], ar = new float[5], ai = new float[5];
+        for (int f = 0; f < l; f++) {
+            int t = f * r1;
+            for (int u = 1; u < 5; u++) {
+                wr[u] = cos[u * t];
+                wi[u] = -sin[u * t];
+            }
+            int i0 = io + 2 * f * r, o0 = oo + 2 * f * r1, os = 2 * l * r1;
+            for (int k = 0; k < q; k += 2) {
+                int i = i0 + k;
+                ar[0] = in[i];
+                ai[0] = in[i + 1];
+                for (int u = 1; u < 5; u++) {
+                    float xr = in[i + u * q], xi = in[i + u * q + 1];
+                    ar[u] = xr * wr[u] - xi * wi[u];
+                    ai[u] = xr * wi[u] + xi * wr[u];
+                }
+                float t1r = ar[1] + ar[4], t1i = ai[1] + ai[4], d1r = ar[1] - ar[4], d1i = ai[1] - ai[4];
+                float t2r = ar[2] + ar[3], t2i = ai[2] + ai[3], d2r = ar[2] - ar[3], d2i = ai[2] - ai[3];
+                float m1r = ar[0] + C1 * t1r + C2 * t2r, m1i = ai[0] + C1 * t1i + C2 * t2i;
+                float m2r = ar[0] + C2 * t1r + C1 * t2r, m2i = ai[0] + C2 * t1i + C1 * t2i;
+                // -i * (S1 d1 + S2 d2) y -i * (S2 d1 - S1 d2)
+                float n1r = S1 * d1i + S2 * d2i, n1i = -(S1 * d1r + S2 * d2r);
+                float n2r = S2 * d1i - S1 * d2i, n2i = -(S2 * d1r - S1 * d2r);
+                int o = o0 + k;
+                out[o] = ar[0] + t1r + t2r;
+                out[o + 1] = ai[0] + t1i + t2i;
+                out[o + os] = m1r + n1r;
+                out[o + os + 1] = m1i + n1i;
+                out[o + 2 * os] = m2r + n2r;
+                out[o + 2 * os + 1] = m2i + n2i;
+                out[o + 3 * os] = m2r - n2r;
+                out[o + 3 * os + 1] = m2i - n2i;
+                out[o + 4 * os] = m1r - n1r;
+                out[o + 4 * os + 1] = m1i - n1i;
+            }
+        }
+    }
+
+    // --- Bluestein ---
+
+    // X_k = w_k * sum_j (x_j w_j) conj(w_(k-j)); la convolución se hace con la FFT interna.
+    // scratch: [0, 2m) datos, [2m, 4m) trabajo de la FFT interna.
+    private void bluestein(float[] a, int off, float[] scratch) {
+        int m = inner.n, w2 = 2 * m;
+        for (int k = 0; k < n; k++) {
+            float xr = a[off + 2 * k], xi = a[off + 2 * k + 1];
+            float cr = chirp[2 * k], ci = chirp[2 * k + 1];
+            scratch[2 * k] = xr * cr - xi * ci;
+            scratch[2 * k + 1] = xr * ci + xi * cr;
+        }
+        Arrays.fill(scratch, 2 * n, w2, 0f);
+        inner.mixedRadix(scratch, 0, scratch, w2);
+        for (int k = 0; k < m; k++) {
+            float xr = scratch[2 * k], xi = scratch[2 * k + 1];
+            float hr = chirpSpectrum[2 * k], hi = chirpSpectrum[2 * k + 1];
+            // Conjugado: la FFT inversa se hace como directa de la entrada conjugada.
+            scratch[2 * k] = xr * hr - xi * hi;
+            scratch[2 * k + 1] = -(xr * hi + xi * hr);
+        }
+        inner.mixedRadix(scratch, 0, scratch, w2);
+        float s = 1f / m;
+        for (int k = 0; k < n; k++) {
+            float xr = scratch[2 * k] * s, xi = -scratch[2 * k + 1] * s;
+            float cr = chirp[2 * k], ci = chirp[2 * k + 1];
+            a[off + 2 * k] = xr * cr - xi * ci;
+            a[off + 2 * k + 1] = xr * ci + xi * cr;
+        }
+    }
+
+    private static void conjugate(float[] a, int off, int n, float scale) {
+        for (int i = off; i < off + 2 * n; i += 2) {
+            a[i] *= scale;
+            a[i + 1] *= -scale;
+        }
+    }
+}
\ No newline at end of file
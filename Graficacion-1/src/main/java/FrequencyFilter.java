@@ -0,0 +1,195 @@
+import java.awt.image.BufferedImage;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Filtros en el dominio de la frecuencia sobre FFT: pasa bajas, pasa altas y pasa banda (ideal,
+ * Butterworth y gaussiano), y convolución separable por FFT para kernels grandes.
+ *
+ * La imagen se rellena con borde replicado hasta tamaños 2^a 3^b 5^c (FFT.goodSize) con al menos
+ * 'margin' pixeles de relleno por lado, de modo que la convolución circular no mezcla bordes opuestos. Como todas
+ * las funciones de transferencia son reales y pares, dos canales viajan juntos en una sola FFT
+ * compleja (uno en la parte real y otro en la imaginaria): R+iG y B se filtran con dos
+ * transformadas en lugar de tres, y BYTE_GRAY con una. El alfa de origen se conserva.
+ */
+public class FrequencyFilter {
+
+    public enum Shape { IDEAL, BUTTERWORTH, GAUSSIAN }
+
+    /** Relleno por lado para los filtros radiales, cuya respuesta espacial no tiene soporte finito. */
+    static final int RADIAL_MARGIN = 32;
+
+    /** Valores de H en una rejilla pw x ph con el origen de frecuencias en (0, 0); debe ser real y par. */
+    interface Transfer {
+        void fill(float[] h, int pw, int ph);
+    }
+
+    private FrequencyFilter() {}
+
+    // --- API ---
+
+    /** Pasa bajas con frecuencia de corte 'cutoff' en fracción de Nyquist (0..1]; 'order' solo afecta a Butterworth. */
+    public static BufferedImage lowPass(BufferedImage src, Shape shape, double cutoff, int order, TileScheduler exec) {
+        checkCutoff(cutoff);
+        return apply(src, RADIAL_MARGIN, radial(d -> low(shape, d, cutoff, order)), exec);
+    }
+
+    public static BufferedImage highPass(BufferedImage src, Shape shape, double cutoff, int order, TileScheduler exec) {
+        checkCutoff(cutoff);
+        return apply(src, RADIAL_MARGIN, radial(d -> 1 - low(shape, d, cutoff, order)), exec);
+    }
+
+    /** Deja pasar las frecuencias entre low y high (fracciones de Nyquist, low < high). */
+    public static BufferedImage bandPass(BufferedImage src, Shape shape, double low, double high, int order,
+                                         TileScheduler exec) {
+        checkCutoff(low);
+        checkCutoff(high);
+        if (low >= high) throw new IllegalArgumentException("Banda vacía: " + low + " >= " + high);
+        return apply(src, RADIAL_MARGIN, radial(d -> shape == Shape.IDEAL
+                ? (d >= low && d <= high ? 1 : 0)
+                : low(shape, d, high, order) * (1 - low(shape, d, low, order))), exec);
+    }
+
+    /**
+     * Convolución separable (kx en horizontal, ky en vertical, simétricos) como producto en
+     * frecuencia. Da el mismo resultado que ConvolutionEngine.convolveSeparable salvo redondeo (±1),
+     * pero su coste no depende del tamaño del kernel.
+     */
+    public static BufferedImage convolveSeparable(BufferedImage src, float[] kx, float[] ky, TileScheduler exec) {
+        checkSymmetric(kx);
+        checkSymmetric(ky);
+        int margin = Math.max(kx.length, ky.length) / 2;
+        return apply(src, margin, (h, pw, ph) -> {
+            float[] hx = kernelSpectrum(kx, pw), hy = kernelSpectrum(ky, ph);
+            for (int v = 0; v < ph; v++) {
+                for (int u = 0; u < pw; u++) h[v * pw + u] = hx[u] * hy[v];
+            }
+        }, exec);
+    }
+
+    // --- Núcleo ---
+
+    static BufferedImage apply(BufferedImage src, int margin, Transfer tf, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        int pw = FFT.goodSize(w + 2 * margin), ph = FFT.goodSize(h + 2 * margin);
+        float[] transfer = new float[pw * ph];
+        tf.fill(transfer, pw, ph);
+
+        ConvolutionEngine.Planes in = ConvolutionEngine.Planes.split(src, exec);
+        ConvolutionEngine.Planes out = new ConvolutionEngine.Planes(w, h);
+        if (src.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            filterPair(in.r, null, out.r, null, w, h, pw, ph, transfer, exec);
+            System.arraycopy(out.r, 0, out.g, 0, out.r.length);
+            System.arraycopy(out.r, 0, out.b, 0, out.r.length);
+        } else {
+            filterPair(in.r, in.g, out.r, out.g, w, h, pw, ph, transfer, exec);
+            filterPair(in.b, null, out.b, null, w, h, pw, ph, transfer, exec);
+        }
+        System.arraycopy(in.a, 0, out.a, 0, in.a.length);
+        return out.toImage(true, exec);
+    }
+
+    // Filtra re (y opcionalmente im) con una FFT compleja; H real y par mantiene separados ambos canales.
+    private static void filterPair(byte[] re, byte[] im, byte[] outRe, byte[] outIm, int w, int h, int pw, int ph,
+                                   float[] transfer, TileScheduler exec) {
+        float[] buf = new float[2 * pw * ph];
+        int[] xs = paddedIndices(w, pw), ys = paddedIndices(h, ph);
+        // Las filas de relleno repiten la primera o la última: solo se transforman las h filas reales
+        // y su espectro se copia al relleno. A la vuelta basta con invertir esas h filas.
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int row = y * w, o = 2 * y * pw;
+                for (int x = 0; x < pw; x++) {
+                    buf[o + 2 * x] = re[row + xs[x]] & 0xFF;
+                    if (im != null) buf[o + 2 * x + 1] = im[row + xs[x]] & 0xFF;
+                }
+            }
+        });
+        FFT.rows(buf, pw, 0, h, false, exec);
+        exec.forEachBand(h, ph, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) System.arraycopy(buf, 2 * ys[y] * pw, buf, 2 * y * pw, 2 * pw);
+        });
+        FFT.columns(buf, pw, ph, false, exec);
+        exec.forEachBand(0, ph, (y0, y1) -> {
+            for (int i = y0 * pw; i < y1 * pw; i++) {
+                buf[2 * i] *= transfer[i];
+                buf[2 * i + 1] *= transfer[i];
+            }
+        });
+        FFT.columns(buf, pw, ph, true, exec);
+        FFT.rows(buf, pw, 0, h, true, exec);
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int o = 2 * y * pw;
+                for (int x = 0; x < w; x++) {
+                    outRe[y * w + x] = (byte) ConvolutionEngine.clamp(Math.round(buf[o + 2 * x]));
+                    if (outIm != null) outIm[y * w + x] = (byte) ConvolutionEngine.clamp(Math.round(buf[o + 2 * x + 1]));
+                }
+            }
+        });
+    }
+
+    // La imagen ocupa [0, n) del buffer periódico de tamaño p; la primera mitad del hueco replica el
+    // borde final y la segunda el inicial, así cada borde tiene al menos (p - n) / 2 de relleno.
+    private static int[] paddedIndices(int n, int p) {
+        int[] idx = new int[p];
+        for (int i = 0; i < p; i++) {
+            int c = i < n + (p - n) / 2 ? i : i - p;
+            idx[i] = PixelAccess.clampIndex(c, n);
+        }
+        return idx;
+    }
+
+    // --- Funciones de transferencia ---
+
+    // d = distancia al origen en fracciones de Nyquist (1 = 0.5 ciclos/pixel en cada eje).
+    private static Transfer radial(DoubleUnaryOperator f) {
+        return (h, pw, ph) -> {
+            for (int v = 0; v < ph; v++) {
+                double fy = frequency(v, ph);
+                for (int u = 0; u < pw; u++) {
+                    double fx = frequency(u, pw);
+                    h[v * pw + u] = (float) f.applyAsDouble(2 * Math.sqrt(fx * fx + fy * fy));
+                }
+            }
+        };
+    }
+
+    private static double low(Shape shape, double d, double d0, int order) {
+        switch (shape) {
+            case IDEAL:
+                return d <= d0 ? 1 : 0;
+            case BUTTERWORTH:
+                return 1 / (1 + Math.pow(d / d0, 2 * Math.max(1, order)));
+            default:
+                return Math.exp(-(d * d) / (2 * d0 * d0));
+        }
+    }
+
+    // Ciclos por pixel de la muestra i en una FFT de tamaño p (negativas en la segunda mitad).
+    private static double frequency(int i, int p) {
+        return (i <= p / 2 ? i : i - p) / (double) p;
+    }
+
+    // DFT de k centrado en 0; es real porque k es simétrico.
+    private static float[] kernelSpectrum(float[] k, int p) {
+        int r = k.length / 2;
+        float[] s = new float[p];
+        for (int u = 0; u < p; u++) {
+            double acc = k[r];
+            for (int i = 1; i <= r; i++) acc += 2 * k[r + i] * Math.cos(2 * Math.PI * (((long) u * i) % p) / p);
+            s[u] = (float) acc;
+        }
+        return s;
+    }
+
+    private static void checkSymmetric(float[] k) {
+        if (k.length % 2 == 0) throw new IllegalArgumentException("El kernel debe tener longitud impar");
+        for (int i = 0; i < k.length / 2; i++) {
+            if (k[i] != k[k.length - 1 - i]) throw new IllegalArgumentException("El kernel debe ser simétrico");
+        }
+    }
+
+    private static void checkCutoff(double c) {
+        if (!(c > 0 && c <= 1)) throw new IllegalArgumentException("Corte fuera de (0, 1]: " + c);
+    }
+}
\ No newline at end of file
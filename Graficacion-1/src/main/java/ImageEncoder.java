@@ -0,0 +1,333 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Codificación de imágenes a archivo con escritores reutilizados.
+ *
+ * Cada hilo guarda un ImageWriter por formato (buscarlo con ImageIO recorre el registro de
+ * plugins) y una imagen INT_RGB de trabajo para aplanar el alfa en los formatos que no lo admiten,
+ * que se reutiliza mientras el tamaño no cambie. Los ajustes de compresión van en Options.
+ *
+ * encodeAll escribe varios formatos de la misma imagen en paralelo en el pool "codificadores";
+ * cada escritura devuelve su Result (bytes y tiempo) y se acumula en las métricas por formato.
+ */
+public class ImageEncoder {
+
+    /** Ajustes de compresión; inmutable, se modifican con los métodos with*. */
+    public static final class Options {
+        /** Calidad JPEG 0.9 sin progresivo, deflate 6 en PNG y LZW en TIFF. */
+        public static final Options DEFAULT = new Options(0.9f, false, 6, "LZW");
+
+        public final float jpegQuality;
+        public final boolean jpegProgressive;
+        /** Nivel de deflate 0 (sin compresión) a 9. */
+        public final int pngLevel;
+        /** Tipo de compresión TIFF del escritor (LZW, Deflate, PackBits, JPEG...) o null para ninguna. */
+        public final String tiffCompression;
+
+        private Options(float jpegQuality, boolean jpegProgressive, int pngLevel, String tiffCompression) {
+            if (!(jpegQuality >= 0f && jpegQuality <= 1f)) {
+                throw new IllegalArgumentException("Calidad JPEG fuera de 0..1: " + jpegQuality);
+            }
+            if (pngLevel < 0 || pngLevel > 9) throw new IllegalArgumentException("Nivel PNG fuera de 0..9: " + pngLevel);
+            this.jpegQuality = jpegQuality;
+            this.jpegProgressive = jpegProgressive;
+            this.pngLevel = pngLevel;
+            this.tiffCompression = tiffCompression;
+        }
+
+        public Options withJpegQuality(float q) {
+            return new Options(q, jpegProgressive, pngLevel, tiffCompression);
+        }
+
+        public Options withJpegProgressive(boolean p) {
+            return new Options(jpegQuality, p, pngLevel, tiffCompression);
+        }
+
+        public Options withPngLevel(int level) {
+            return new Options(jpegQuality, jpegProgressive, level, tiffCompression);
+        }
+
+        public Options withTiffCompression(String type) {
+            return new Options(jpegQuality, jpegProgressive, pngLevel, type);
+        }
+
+        /**
+         * Ajustes sobre DEFAULT a partir de "jpg=0.85,progressive,png=9,tiff=deflate"
+         * (tiff=none quita la compresión).
+         */
+        public static Options parse(String spec) {
+            Options o = DEFAULT;
+            if (spec == null || spec.trim().isEmpty()) return o;
+            for (String token : spec.split(",")) {
+                String t = token.trim().toLowerCase(Locale.ROOT);
+                int eq = t.indexOf('=');
+                String key = eq < 0 ? t : t.substring(0, eq), val = eq < 0 ? null : t.substring(eq + 1);
+                switch (key) {
+                    case "jpg":
+                    case "jpeg": o = o.withJpegQuality(Float.parseFloat(required(key, val))); break;
+                    case "progressive": o = o.withJpegProgressive(true); break;
+                    case "png": o = o.withPngLevel(Integer.parseInt(required(key, val))); break;
+                    case "tiff":
+                    case "tif": {
+                        String v = required(key, val);
+                        o = o.withTiffCompression(v.equals("none") ? null : tiffType(v));
+                        break;
+                    }
+                    default: throw new IllegalArgumentException("Ajuste de compresión desconocido: " + token);
+                }
+            }
+            return o;
+        }
+
+        private static String required(String key, String val) {
+            if (val == null || val.isEmpty()) throw new IllegalArgumentException(key + " requiere un valor");
+            return val;
+        }
+
+        // Nombre exacto del escritor TIFF para un tipo escrito sin distinguir mayúsculas.
+        private static String tiffType(String name) {
+            for (String t : new String[]{"LZW", "Deflate", "ZLib", "PackBits", "JPEG"}) {
+                if (t.equalsIgnoreCase(name)) return t;
+            }
+            throw new IllegalArgumentException("Compresión TIFF desconocida: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "jpg=%.2f%s, png=%d, tiff=%s", jpegQuality,
+                    jpegProgressive ? " progresivo" : "", pngLevel, tiffCompression == null ? "none" : tiffCompression);
+        }
+    }
+
+    /** Resultado de una escritura. */
+    public static final class Result {
+        public final String format;
+        public final File file;
+        public final long bytes, elapsedNanos;
+
+        Result(String format, File file, long bytes, long elapsedNanos) {
+            this.format = format;
+            this.file = file;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %s, %d KB en %.1f ms", format, file.getName(), bytes >> 10,
+                    elapsedNanos / 1e6);
+        }
+    }
+
+    /** Métricas acumuladas de un formato. */
+    public static final class Metrics {
+        private final LongAdder count = new LongAdder(), bytes = new LongAdder(), nanos = new LongAdder();
+
+        public long getCount() { return count.sum(); }
+        public long getBytes() { return bytes.sum(); }
+        public long getElapsedNanos() { return nanos.sum(); }
+
+        @Override
+        public String toString() {
+            long n = getCount();
+            return String.format(Locale.ROOT, "%d imágenes, %.1f MB, %.1f ms de media", n, getBytes() / 1e6,
+                    n == 0 ? 0 : getElapsedNanos() / 1e6 / n);
+        }
+    }
+
+    /** Imágenes de trabajo mayores no se conservan entre escrituras. */
+    static final long MAX_SCRATCH_PIXELS = 16L << 20;
+
+    private static final Map<String, Metrics> METRICS = new ConcurrentHashMap<>();
+
+    // Escritores por formato e imagen de trabajo, por hilo.
+    private static final ThreadLocal<Map<String, ImageWriter>> WRITERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<BufferedImage[]> SCRATCH = ThreadLocal.withInitial(() -> new BufferedImage[1]);
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "codificadores-" + THREADS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private ImageEncoder() {}
+
+    // --- API ---
+
+    public static boolean canWrite(String format) {
+        return ImageIO.getImageWritersByFormatName(canonical(format)).hasNext();
+    }
+
+    /** Escribe img en dest (el archivo se sobrescribe tal cual, sin añadir extensión). */
+    public static Result write(BufferedImage img, File dest, String format, Options opt) throws IOException {
+        String fmt = canonical(format);
+        long t0 = System.nanoTime();
+        ImageWriter writer = writer(fmt);
+        BufferedImage toWrite = prepare(img, fmt);
+        ImageWriteParam param = param(writer, fmt, opt);
+        Files.deleteIfExists(dest.toPath()); // ImageIO no trunca un archivo más largo
+        long bytes;
+        boolean ok = false;
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(dest)) {
+            if (ios == null) throw new IOException("No se pudo abrir " + dest);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(toWrite, null, null), param);
+            ios.flush();
+            bytes = ios.getStreamPosition();
+            ok = true;
+        } catch (RuntimeException ex) {
+            throw new IOException("No se pudo escribir el formato " + fmt + ": " + ex.getMessage(), ex);
+        } finally {
+            if (ok) {
+                writer.reset();
+            } else {
+                // Un escritor que falla a medias puede quedar en mal estado: se descarta.
+                WRITERS.get().remove(fmt);
+                writer.dispose();
+            }
+        }
+        Result r = new Result(fmt, dest, bytes, System.nanoTime() - t0);
+        Metrics m = METRICS.computeIfAbsent(fmt, k -> new Metrics());
+        m.count.increment();
+        m.bytes.add(r.bytes);
+        m.nanos.add(r.elapsedNanos);
+        return r;
+    }
+
+    /**
+     * Escribe img en cada formato en paralelo, como base + "." + formato. Si alguno falla se
+     * esperan los demás y se lanza la primera excepción.
+     */
+    public static List<Result> encodeAll(BufferedImage img, File base, List<String> formats, Options opt)
+            throws IOException {
+        List<Future<Result>> futures = new ArrayList<>(formats.size());
+        for (String f : formats) {
+            String fmt = canonical(f);
+            File dest = new File(base.getParentFile(), base.getName() + "." + fmt);
+            futures.add(POOL.submit(() -> write(img, dest, fmt, opt)));
+        }
+        List<Result> results = new ArrayList<>(formats.size());
+        IOException error = null;
+        for (Future<Result> fut : futures) {
+            try {
+                results.add(fut.get());
+            } catch (ExecutionException ex) {
+                Throwable c = ex.getCause();
+                if (error == null) error = c instanceof IOException ? (IOException) c : new IOException(c.getMessage(), c);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrumpido", ex);
+            }
+        }
+        if (error != null) throw error;
+        return results;
+    }
+
+    /** Métricas acumuladas por formato desde el arranque (o desde resetMetrics). */
+    public static Map<String, Metrics> metrics() {
+        return METRICS;
+    }
+
+    public static void resetMetrics() {
+        METRICS.clear();
+    }
+
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        METRICS.forEach((f, m) -> sb.append(f).append(": ").append(m).append(System.lineSeparator()));
+        return sb.toString().trim();
+    }
+
+    // --- Helpers ---
+
+    static String canonical(String format) {
+        String f = format.toLowerCase(Locale.ROOT);
+        if (f.equals("jpeg")) return "jpg";
+        if (f.equals("tif")) return "tiff";
+        return f;
+    }
+
+    private static ImageWriter writer(String fmt) throws IOException {
+        Map<String, ImageWriter> map = WRITERS.get();
+        ImageWriter w = map.get(fmt);
+        if (w == null) {
+            Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName(fmt);
+            if (!it.hasNext()) throw new IOException("El formato '" + fmt + "' no es escribible.");
+            w = it.next();
+            map.put(fmt, w);
+        }
+        return w;
+    }
+
+    static ImageWriteParam param(ImageWriter writer, String fmt, Options opt) {
+        ImageWriteParam p = writer.getDefaultWriteParam();
+        switch (fmt) {
+            case "jpg":
+                p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                p.setCompressionQuality(opt.jpegQuality);
+                if (opt.jpegProgressive) p.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                break;
+            case "png":
+                // El escritor de PNG usa el nivel 9 - round(9 * calidad).
+                p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                p.setCompressionQuality((9 - opt.pngLevel) / 9f);
+                break;
+            case "tiff":
+                if (opt.tiffCompression == null) {
+                    p.setCompressionMode(ImageWriteParam.MODE_DISABLED);
+                } else {
+                    p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    p.setCompressionType(opt.tiffCompression);
+                }
+                break;
+            default:
+                break;
+        }
+        return p;
+    }
+
+    // La imagen tal cual si el escritor la acepta; si no, aplanada sobre blanco en la imagen de
+    // trabajo del hilo (JPEG y BMP no admiten alfa) o normalizada por PixelStore.
+    private static BufferedImage prepare(BufferedImage img, String fmt) {
+        boolean opaqueOnly = fmt.equals("jpg") || fmt.equals("bmp");
+        if (!opaqueOnly || !img.getColorModel().hasAlpha()) return PixelStore.forWriter(img, fmt);
+        PixelStore.record(PixelStore.Conversion.SAVE);
+        BufferedImage[] slot = SCRATCH.get();
+        BufferedImage rgb = slot[0];
+        if (rgb == null || rgb.getWidth() != img.getWidth() || rgb.getHeight() != img.getHeight()) {
+            rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+            slot[0] = (long) img.getWidth() * img.getHeight() <= MAX_SCRATCH_PIXELS ? rgb : null;
+        }
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, img.getWidth(), img.getHeight());
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+}
\ No newline at end of file
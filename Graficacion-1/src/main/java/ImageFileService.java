@@ -1,13 +1,9 @@
 import java.awt.Component;
-import java.awt.Graphics2D;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Locale;
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -15,6 +11,10 @@ import java.awt.image.BufferedImage;
 
 public class ImageFileService {
 
+    public static final String[] READABLE_EXTENSIONS = {"png", "jpg", "jpeg", "bmp", "gif", "wbmp", "tif", "tiff"};
+
+    private static volatile ImageEncoder.Options encodeOptions = ImageEncoder.Options.DEFAULT;
+
     private ImageFileService() {}
 
     public static class OpenResult {
@@ -28,20 +28,10 @@ public class ImageFileService {
 
     // Abrir con JFileChooser
     public static OpenResult openWithChooser(Component parent) {
-        JFileChooser chooser = new JFileChooser();
-        chooser.setDialogTitle("Abrir imagen");
-        FileNameExtensionFilter filter = new FileNameExtensionFilter(
-                "Imágenes (png, jpg, jpeg, bmp, gif, wbmp, tif, tiff)",
-                "png", "jpg", "jpeg", "bmp", "gif", "wbmp", "tif", "tiff");
-        chooser.addChoosableFileFilter(filter);
-        chooser.setFileFilter(filter);
-        chooser.setAcceptAllFileFilterUsed(true);
-
-        int result = chooser.showOpenDialog(parent);
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File file = chooser.getSelectedFile();
+        File file = chooseImageFile(parent);
+        if (file != null) {
             try {
-                BufferedImage img = ImageIO.read(file);
+                BufferedImage img = load(file);
                 if (img == null) {
                     JOptionPane.showMessageDialog(parent,
                             "Formato de imagen no soportado o archivo inválido.",
@@ -60,6 +50,26 @@ public class ImageFileService {
         return null;
     }
 
+    // Solo elegir el archivo, sin decodificarlo (null si se cancela)
+    public static File chooseImageFile(Component parent) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Abrir imagen");
+        FileNameExtensionFilter filter = new FileNameExtensionFilter(
+                "Imágenes (png, jpg, jpeg, bmp, gif, wbmp, tif, tiff)",
+                READABLE_EXTENSIONS);
+        chooser.addChoosableFileFilter(filter);
+        chooser.setFileFilter(filter);
+        chooser.setAcceptAllFileFilterUsed(true);
+        return chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
+
+    public static File chooseDirectory(Component parent, String title) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(title);
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        return chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
+
     // Guardar en el archivo dado (usa extensión para formato)
     public static void save(BufferedImage image, File file) throws IOException {
         String ext = getExtension(file);
@@ -140,6 +150,38 @@ public class ImageFileService {
         return null;
     }
 
+    /** Exporta la imagen a varios formatos a la vez (mismo nombre base); null si se cancela o falla. */
+    public static List<ImageEncoder.Result> exportAllWithChooser(Component parent, BufferedImage image,
+                                                                 List<String> formats, File suggestedFile) {
+        for (String f : formats) {
+            if (!isWritable(f)) {
+                JOptionPane.showMessageDialog(parent,
+                        "No hay escritor para el formato '" + f + "'.",
+                        "Formato no soportado",
+                        JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Exportar como " + String.join(", ", formats).toUpperCase(Locale.ROOT));
+        if (suggestedFile != null) chooser.setSelectedFile(suggestedFile);
+
+        int result = chooser.showSaveDialog(parent);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File selected = chooser.getSelectedFile();
+            File base = new File(selected.getParentFile(), stripExtension(selected.getName()));
+            try {
+                return OperationMetrics.time("writeAll", image, () -> ImageEncoder.encodeAll(image, base, formats, encodeOptions));
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(parent,
+                        "Error al exportar:\n" + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        return null;
+    }
+
     public static File sugerirNombreExport(File currentFile, String formato) {
         String base = "imagen";
         if (currentFile != null) base = stripExtension(currentFile.getName());
@@ -147,44 +189,70 @@ public class ImageFileService {
         return new File(dir, base + "." + formato.toLowerCase(Locale.ROOT));
     }
 
-    // --- Implementación de escritura ---
+    // --- E/S sin diálogos (modo por lotes / headless) ---
 
-    private static boolean isWritable(String fmt) {
-        return ImageIO.getImageWritersByFormatName(fmt).hasNext();
+    public static BufferedImage read(File file) throws IOException {
+        BufferedImage img = load(file);
+        if (img == null) {
+            throw new IOException("Formato de imagen no soportado o archivo inválido: " + file.getName());
+        }
+        return img;
     }
 
-    private static void writeWithFormat(BufferedImage img, File destino, String formato) throws IOException {
-        String fmt = formato.toLowerCase(Locale.ROOT);
-        BufferedImage toWrite = img;
-
-        if (fmt.equals("jpg") || fmt.equals("jpeg")) {
-            if (img.getType() != BufferedImage.TYPE_INT_RGB) {
-                BufferedImage rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
-                Graphics2D g = rgb.createGraphics();
-                g.setColor(java.awt.Color.WHITE);
-                g.fillRect(0, 0, img.getWidth(), img.getHeight());
-                g.drawImage(img, 0, 0, null);
-                g.dispose();
-                toWrite = rgb;
-            }
-            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-            ImageWriteParam param = writer.getDefaultWriteParam();
-            if (param.canWriteCompressed()) {
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                param.setCompressionQuality(0.9f); // 90% calidad
-            }
-            try (ImageOutputStream ios = ImageIO.createImageOutputStream(destino)) {
-                writer.setOutput(ios);
-                writer.write(null, new IIOImage(toWrite, null, null), param);
-            } finally {
-                writer.dispose();
-            }
-            return;
+    // Decodificación directa, sin caché (null si ImageIO no reconoce el formato). La imagen sale ya
+    // en formato canónico (PixelStore): es la única conversión de color que hace falta.
+    static BufferedImage decode(File file) throws IOException {
+        return PixelStore.normalize(ImageIO.read(file));
+    }
+
+    // Consulta la caché de rasters (RasterCache) si está activa. Se mide como "read" (OperationMetrics).
+    private static BufferedImage load(File file) throws IOException {
+        RasterCache cache = RasterCache.getDefault();
+        return OperationMetrics.time("read", null, () -> cache != null ? cache.read(file) : decode(file));
+    }
+
+    // Escribe en el formato dado, añadiendo la extensión si falta; devuelve el archivo escrito.
+    public static File write(BufferedImage image, File file, String format) throws IOException {
+        String fmt = format.toLowerCase(Locale.ROOT);
+        if (!isWritable(fmt)) {
+            throw new IOException("El formato '" + fmt + "' no es escribible.");
         }
+        File destino = ensureExtension(file, fmt);
+        writeWithFormat(image, destino, fmt);
+        return destino;
+    }
 
-        if (!ImageIO.write(toWrite, fmt, destino)) {
-            throw new IOException("No se pudo escribir el formato: " + fmt);
+    public static boolean hasReadableExtension(File f) {
+        String ext = getExtension(f);
+        if (ext == null) return false;
+        for (String e : READABLE_EXTENSIONS) {
+            if (e.equals(ext)) return true;
         }
+        return false;
+    }
+
+    public static String baseName(File f) {
+        return stripExtension(f.getName());
+    }
+
+    // --- Implementación de escritura ---
+
+    private static boolean isWritable(String fmt) {
+        return ImageEncoder.canWrite(fmt);
+    }
+
+    /** Ajustes de compresión de todas las escrituras (guardar, exportar y lotes). */
+    public static ImageEncoder.Options getEncodeOptions() {
+        return encodeOptions;
+    }
+
+    public static void setEncodeOptions(ImageEncoder.Options options) {
+        encodeOptions = options != null ? options : ImageEncoder.Options.DEFAULT;
+    }
+
+    // Escritores reutilizados por hilo y formato (ImageEncoder).
+    private static void writeWithFormat(BufferedImage img, File destino, String formato) throws IOException {
+        OperationMetrics.time("write:" + ImageEncoder.canonical(formato), img, () -> ImageEncoder.write(img, destino, formato, encodeOptions));
     }
 
     // --- Utilidades de nombres/formatos ---
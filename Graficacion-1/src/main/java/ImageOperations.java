@@ -1,23 +1,33 @@
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
-import java.awt.geom.AffineTransform;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 
 public class ImageOperations {
 
+    /** A partir de este sigma el gaussiano se calcula por FFT: su coste ya no crece con el kernel. */
+    public static final float FFT_SIGMA_THRESHOLD = 15f;
+
+    /** Orden de los filtros Butterworth de las entradas sin parámetros. */
+    public static final int BUTTERWORTH_ORDER = 2;
+
+    /** Filtro de las entradas de redimensionado sin parámetros. */
+    public static final Resampler.Filter RESIZE_FILTER = Resampler.Filter.LANCZOS3;
+
+    private static volatile byte[] GRAY_STORE;
+
     private ImageOperations() {}
 
     // --- Copias, conversiones y transformaciones básicas ---
 
     public static BufferedImage deepCopy(BufferedImage src) {
         if (src == null) return null;
-        BufferedImage copy = new BufferedImage(src.getWidth(), src.getHeight(),
-                src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = copy.createGraphics();
-        g.drawImage(src, 0, 0, null);
-        g.dispose();
-        return copy;
+        return OperationMetrics.time("deepCopy", src, () -> PixelStore.copy(src));
     }
 
     public static BufferedImage toBufferedImage(Image img) {
@@ -30,152 +40,359 @@ public class ImageOperations {
     }
 
     public static BufferedImage flipHorizontal(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage out = new BufferedImage(w, h, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        AffineTransform at = new AffineTransform();
-        at.scale(-1, 1);
-        at.translate(-w, 0);
-        g.drawImage(src, at, null);
-        g.dispose();
-        return out;
+        return flipHorizontal(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage flipHorizontal(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("flipHorizontal", src, () -> OrthogonalTransform.FLIP_HORIZONTAL.apply(src, exec));
     }
 
     public static BufferedImage flipVertical(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage out = new BufferedImage(w, h, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        AffineTransform at = new AffineTransform();
-        at.scale(1, -1);
-        at.translate(0, -h);
-        g.drawImage(src, at, null);
-        g.dispose();
-        return out;
+        return flipVertical(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage flipVertical(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("flipVertical", src, () -> OrthogonalTransform.FLIP_VERTICAL.apply(src, exec));
     }
 
     public static BufferedImage rotate90CW(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage out = new BufferedImage(h, w, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        AffineTransform at = new AffineTransform();
-        at.translate(h, 0);
-        at.rotate(Math.toRadians(90));
-        g.drawImage(src, at, null);
-        g.dispose();
-        return out;
+        return rotate90CW(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage rotate90CW(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("rotate90CW", src, () -> OrthogonalTransform.ROTATE_90_CW.apply(src, exec));
     }
 
     public static BufferedImage rotate90CCW(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage out = new BufferedImage(h, w, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        AffineTransform at = new AffineTransform();
-        at.translate(0, w);
-        at.rotate(Math.toRadians(-90));
-        g.drawImage(src, at, null);
-        g.dispose();
-        return out;
+        return rotate90CCW(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage rotate90CCW(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("rotate90CCW", src, () -> OrthogonalTransform.ROTATE_90_CCW.apply(src, exec));
     }
 
     public static BufferedImage rotate180(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        BufferedImage out = new BufferedImage(w, h, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        AffineTransform at = new AffineTransform();
-        at.translate(w, h);
-        at.rotate(Math.toRadians(180));
-        g.drawImage(src, at, null);
-        g.dispose();
-        return out;
+        return rotate180(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage rotate180(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("rotate180", src, () -> OrthogonalTransform.ROTATE_180.apply(src, exec));
+    }
+
+    // Variantes en sitio (sin reservar memoria): modifican src.
+
+    public static void flipHorizontalInPlace(BufferedImage img) {
+        OperationMetrics.time("flipHorizontalInPlace", img, () -> {
+            OrthogonalTransform.FLIP_HORIZONTAL.applyInPlace(img);
+            return img;
+        });
+    }
+
+    public static void flipVerticalInPlace(BufferedImage img) {
+        OperationMetrics.time("flipVerticalInPlace", img, () -> {
+            OrthogonalTransform.FLIP_VERTICAL.applyInPlace(img);
+            return img;
+        });
+    }
+
+    public static void rotate180InPlace(BufferedImage img) {
+        OperationMetrics.time("rotate180InPlace", img, () -> {
+            OrthogonalTransform.ROTATE_180.applyInPlace(img);
+            return img;
+        });
     }
 
     public static BufferedImage resize(BufferedImage src, int newW, int newH) {
-        BufferedImage out = new BufferedImage(newW, newH, src.getType() == 0 ? BufferedImage.TYPE_INT_ARGB : src.getType());
-        Graphics2D g = out.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g.drawImage(src, 0, 0, newW, newH, null);
-        g.dispose();
-        return out;
+        return resize(src, newW, newH, RESIZE_FILTER, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage resize(BufferedImage src, int newW, int newH, Resampler.Filter filter,
+                                       TileScheduler exec) {
+        return OperationMetrics.time("resize", src, () -> Resampler.resize(src, newW, newH, filter, exec));
+    }
+
+    /** Escala por porcentaje (100 = sin cambio), con un mínimo de 1x1. */
+    public static BufferedImage resizePercent(BufferedImage src, double percent, Resampler.Filter filter,
+                                              TileScheduler exec) {
+        int w = Math.max(1, (int) Math.round(src.getWidth() * percent / 100));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * percent / 100));
+        return resize(src, w, h, filter, exec);
+    }
+
+    public static BufferedImage thumbnail(BufferedImage src, int maxSize) {
+        return OperationMetrics.time("thumbnail", src, () -> Resampler.thumbnail(src, maxSize, RESIZE_FILTER, TileScheduler.SEQUENTIAL));
     }
 
     // --- Procesamiento: Filtros y análisis (Existentes) ---
 
     public static BufferedImage gaussianBlur(BufferedImage src, float sigma) {
-        if (sigma <= 0f) return deepCopy(src);
-        float[] kernel = gaussianKernel1D(sigma);
-        BufferedImage tmp = convolveHorizontal(src, kernel);
-        return convolveVertical(tmp, kernel);
+        return gaussianBlur(src, sigma, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage gaussianBlur(BufferedImage src, float sigma, TileScheduler exec) {
+        return OperationMetrics.time("gaussianBlur", src, () -> {
+            if (sigma <= 0f) return deepCopy(src);
+            float[] kernel = gaussianKernel1D(sigma);
+            if (sigma >= FFT_SIGMA_THRESHOLD) return keepGray(src, FrequencyFilter.convolveSeparable(src, kernel, kernel, exec), exec);
+            return keepGray(src, ConvolutionEngine.convolveSeparable(src, kernel, kernel, exec), exec);
+        });
     }
     
     public static BufferedImage sobelEdges(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        int[][] gray = toGrayscaleArray(src); // 0..255
-        double maxMag = 0.0;
-        double[][] mag = new double[h][w];
-
-        for (int y = 1; y < h - 1; y++) {
-            for (int x = 1; x < w - 1; x++) {
-                int g00 = gray[y - 1][x - 1], g01 = gray[y - 1][x], g02 = gray[y - 1][x + 1];
-                int g10 = gray[y][x - 1],     g11 = gray[y][x],     g12 = gray[y][x + 1];
-                int g20 = gray[y + 1][x - 1], g21 = gray[y + 1][x], g22 = gray[y + 1][x + 1];
-
-                int gx = (-g00 + g02) + (-2 * g10 + 2 * g12) + (-g20 + g22);
-                int gy = (-g00 - 2 * g01 - g02) + (g20 + 2 * g21 + g22);
-                double m = Math.hypot(gx, gy);
-                mag[y][x] = m;
-                if (m > maxMag) maxMag = m;
-            }
-        }
+        return sobelEdges(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage sobelEdges(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("sobelEdges", src, () -> SobelEngine.apply(src, null, SobelEngine.Magnitude.L2,
+                SobelEngine.Normalization.TWO_PASS, exec));
+    }
+    
+    /** Canny con umbrales en fracción de la magnitud máxima (CannyDetector.AUTO: del histograma). */
+    public static BufferedImage cannyFilter(BufferedImage src, float sigma, double low, double high, TileScheduler exec) {
+        return OperationMetrics.time("cannyFilter", src, () -> CannyDetector.detect(src, sigma, low, high, exec));
+    }
+
+    /** Media en ventanas de (2*radius+1)^2 con sumas corridas; tiempo por pixel independiente del radio. */
+    public static BufferedImage meanFilter(BufferedImage src, int radius) {
+        return meanFilter(src, radius, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage meanFilter(BufferedImage src, int radius, TileScheduler exec) {
+        return OperationMetrics.time("meanFilter", src, () -> keepGray(src, BoxFilter.mean(src, radius, exec), exec));
+    }
+
+    /**
+     * Gaussiano aproximado con tres pasadas de caja: mucho más rápido que gaussianBlur con sigma grande.
+     * Con sigma < 2 las cajas son demasiado toscas y se usa el gaussiano exacto.
+     */
+    public static BufferedImage gaussianBlurApprox(BufferedImage src, float sigma) {
+        return gaussianBlurApprox(src, sigma, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage gaussianBlurApprox(BufferedImage src, float sigma, TileScheduler exec) {
+        return OperationMetrics.time("gaussianBlurApprox", src, () -> {
+            if (sigma < 2f) return gaussianBlur(src, sigma, exec);
+            return BoxFilter.approximateGaussian(src, sigma, 3, exec);
+        });
+    }
+
+    /** Mediana en ventanas de (2*radius+1)^2 por canal; tiempo por pixel independiente del radio. */
+    public static BufferedImage medianFilter(BufferedImage src, int radius) {
+        return medianFilter(src, radius, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage medianFilter(BufferedImage src, int radius, TileScheduler exec) {
+        return OperationMetrics.time("medianFilter", src, () -> RankFilter.median(src, radius, exec));
+    }
+
+    // --- Operaciones puntuales (tablas de consulta, ver PointOp) ---
+
+    public static BufferedImage adjustBrightness(BufferedImage src, int delta) {
+        return OperationMetrics.time("adjustBrightness", src, () -> applyPointOp(src, PointOp.brightness(delta)));
+    }
+
+    public static BufferedImage adjustContrast(BufferedImage src, double factor) {
+        return OperationMetrics.time("adjustContrast", src, () -> applyPointOp(src, PointOp.contrast(factor)));
+    }
+
+    public static BufferedImage gammaCorrection(BufferedImage src, double gamma) {
+        return OperationMetrics.time("gammaCorrection", src, () -> applyPointOp(src, PointOp.gamma(gamma)));
+    }
 
-        if (maxMag == 0) maxMag = 1;
-        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int v = (int) Math.round(255.0 * mag[y][x] / maxMag);
-                int rgb = (v << 16) | (v << 8) | v;
-                out.setRGB(x, y, 0xFF000000 | rgb);
+    /** Umbral global sobre la luminancia: blanco si es >= threshold. */
+    public static BufferedImage binarize(BufferedImage src, int threshold) {
+        return OperationMetrics.time("binarize", src, () -> applyPointOp(src, PointOp.threshold(threshold)));
+    }
+
+    public static BufferedImage applyPointOp(BufferedImage src, PointOp op) {
+        return OperationMetrics.time("applyPointOp", src, () -> op.applyTo(src, false, TileScheduler.SEQUENTIAL));
+    }
+
+    /** Con inPlace = true escribe sobre src cuando su tipo lo permite (y devuelve src). */
+    public static BufferedImage applyPointOp(BufferedImage src, PointOp op, boolean inPlace, TileScheduler exec) {
+        return OperationMetrics.time("applyPointOp", src, () -> op.applyTo(src, inPlace, exec));
+    }
+
+    // --- Umbrales, detectores de bordes y versiones con parámetros por defecto ---
+
+    public static BufferedImage adjustBrightness(BufferedImage src) { return adjustBrightness(src, 32); }
+    public static BufferedImage adjustContrast(BufferedImage src) { return adjustContrast(src, 1.5); }
+    public static BufferedImage toGrayscale(BufferedImage src) {
+        return OperationMetrics.time("toGrayscale", src, () -> applyPointOp(src, PointOp.grayscale()));
+    }
+    public static BufferedImage binarize(BufferedImage src) {
+        return binarize(src, TileScheduler.SEQUENTIAL);
+    }
+
+    /** Umbral adaptativo: media local en ventanas de 1/16 del lado mayor, menos un 15%. */
+    public static BufferedImage binarize(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("binarize", src, () -> BoxFilter.adaptiveThreshold(src,
+                Math.max(1, Math.max(src.getWidth(), src.getHeight()) / 16), 0.15, exec));
+    }
+    public static BufferedImage invert(BufferedImage src) {
+        return OperationMetrics.time("invert", src, () -> applyPointOp(src, PointOp.invert()));
+    }
+    public static BufferedImage showHistogram(BufferedImage src) {
+        return OperationMetrics.time("showHistogram", src, () -> histogramChart(StatisticsCache.shared().get(src, TileScheduler.SEQUENTIAL), 512, 200));
+    }
+    public static BufferedImage meanFilter(BufferedImage src) { return meanFilter(src, 1); }
+    public static BufferedImage medianFilter(BufferedImage src) { return medianFilter(src, 1); }
+    public static BufferedImage laplacianFilter(BufferedImage src) { return laplacianFilter(src, TileScheduler.SEQUENTIAL); }
+    public static BufferedImage prewittFilter(BufferedImage src) { return prewittFilter(src, TileScheduler.SEQUENTIAL); }
+    public static BufferedImage robertsFilter(BufferedImage src) { return robertsFilter(src, TileScheduler.SEQUENTIAL); }
+
+    /** Bordes por EdgeFilter (BYTE_GRAY normalizado al máximo de la imagen). */
+    public static BufferedImage laplacianFilter(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("laplacianFilter", src, () -> EdgeFilter.apply(src, EdgeFilter.Operator.LAPLACIAN, exec));
+    }
+
+    public static BufferedImage prewittFilter(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("prewittFilter", src, () -> EdgeFilter.apply(src, EdgeFilter.Operator.PREWITT, exec));
+    }
+
+    public static BufferedImage robertsFilter(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("robertsFilter", src, () -> EdgeFilter.apply(src, EdgeFilter.Operator.ROBERTS, exec));
+    }
+    public static BufferedImage cannyFilter(BufferedImage src) {
+        return cannyFilter(src, CannyDetector.DEFAULT_SIGMA, CannyDetector.AUTO, CannyDetector.AUTO, TileScheduler.SEQUENTIAL);
+    }
+
+    /** Gráfica de los histogramas R, G, B y luminancia (en blanco), escalados al máximo de los cuatro. */
+    public static BufferedImage histogramChart(ImageStatistics stats, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, width, height);
+        long peak = 1;
+        for (int c = 0; c < 4; c++) {
+            for (long v : stats.histogram(c)) peak = Math.max(peak, v);
+        }
+        Color[] colors = {new Color(255, 80, 80), new Color(80, 255, 80), new Color(80, 140, 255), Color.WHITE};
+        for (int c = 0; c < 4; c++) {
+            long[] hist = stats.histogram(c);
+            Path2D.Float path = new Path2D.Float();
+            for (int v = 0; v < 256; v++) {
+                float x = v * (width - 1) / 255f;
+                float y = (height - 1) * (1 - hist[v] / (float) peak);
+                if (v == 0) path.moveTo(x, y); else path.lineTo(x, y);
             }
+            g.setColor(colors[c]);
+            g.draw(path);
         }
+        g.dispose();
         return out;
     }
-    
-    // --- NUEVOS MÉTODOS (STUBS/PLANTILLAS) ---
-    // Implementar la lógica para cada uno
-
-    public static BufferedImage adjustBrightness(BufferedImage src) { System.out.println("Llamado a adjustBrightness: No implementado"); return deepCopy(src); }
-    public static BufferedImage adjustContrast(BufferedImage src) { System.out.println("Llamado a adjustContrast: No implementado"); return deepCopy(src); }
-    public static BufferedImage toGrayscale(BufferedImage src) { System.out.println("Llamado a toGrayscale: No implementado"); return deepCopy(src); }
-    public static BufferedImage binarize(BufferedImage src) { System.out.println("Llamado a binarize: No implementado"); return deepCopy(src); }
-    public static BufferedImage invert(BufferedImage src) { System.out.println("Llamado a invert: No implementado"); return deepCopy(src); }
-    public static BufferedImage showHistogram(BufferedImage src) { System.out.println("Llamado a showHistogram: No implementado"); return deepCopy(src); }
-    public static BufferedImage meanFilter(BufferedImage src) { System.out.println("Llamado a meanFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage medianFilter(BufferedImage src) { System.out.println("Llamado a medianFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage laplacianFilter(BufferedImage src) { System.out.println("Llamado a laplacianFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage prewittFilter(BufferedImage src) { System.out.println("Llamado a prewittFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage robertsFilter(BufferedImage src) { System.out.println("Llamado a robertsFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage cannyFilter(BufferedImage src) { System.out.println("Llamado a cannyFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage erosion(BufferedImage src) { System.out.println("Llamado a erosion: No implementado"); return deepCopy(src); }
-    public static BufferedImage dilation(BufferedImage src) { System.out.println("Llamado a dilation: No implementado"); return deepCopy(src); }
-    public static BufferedImage opening(BufferedImage src) { System.out.println("Llamado a opening: No implementado"); return deepCopy(src); }
-    public static BufferedImage closing(BufferedImage src) { System.out.println("Llamado a closing: No implementado"); return deepCopy(src); }
-    public static BufferedImage skeletonization(BufferedImage src) { System.out.println("Llamado a skeletonization: No implementado"); return deepCopy(src); }
-    public static BufferedImage lowPassFilter(BufferedImage src) { System.out.println("Llamado a lowPassFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage highPassFilter(BufferedImage src) { System.out.println("Llamado a highPassFilter: No implementado"); return deepCopy(src); }
-    public static BufferedImage bandPassFilter(BufferedImage src) { System.out.println("Llamado a bandPassFilter: No implementado"); return deepCopy(src); }
 
+    // --- Morfología (cuadrado de lado 2*radius+1; las imágenes binarias van por la ruta empaquetada) ---
+
+    public static BufferedImage erosion(BufferedImage src) { return erosion(src, 1); }
+    public static BufferedImage dilation(BufferedImage src) { return dilation(src, 1); }
+    public static BufferedImage opening(BufferedImage src) { return opening(src, 1); }
+    public static BufferedImage closing(BufferedImage src) { return closing(src, 1); }
+
+    public static BufferedImage erosion(BufferedImage src, int radius) {
+        return OperationMetrics.time("erosion", src, () -> Morphology.erode(src, radius, radius, TileScheduler.SEQUENTIAL));
+    }
+
+    public static BufferedImage dilation(BufferedImage src, int radius) {
+        return OperationMetrics.time("dilation", src, () -> Morphology.dilate(src, radius, radius, TileScheduler.SEQUENTIAL));
+    }
+
+    public static BufferedImage opening(BufferedImage src, int radius) {
+        return OperationMetrics.time("opening", src, () -> Morphology.open(src, radius, radius, TileScheduler.SEQUENTIAL));
+    }
+
+    public static BufferedImage closing(BufferedImage src, int radius) {
+        return OperationMetrics.time("closing", src, () -> Morphology.close(src, radius, radius, TileScheduler.SEQUENTIAL));
+    }
+
+    /** Esqueleto de la imagen umbralizada en 128 (primer plano = claro); devuelve BYTE_GRAY 0/255. */
+    public static BufferedImage skeletonization(BufferedImage src) {
+        return skeletonization(src, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage skeletonization(BufferedImage src, TileScheduler exec) {
+        return OperationMetrics.time("skeletonization", src, () -> {
+            BinaryImage b = BinaryImage.of(src, 128, exec);
+            return Morphology.skeletonize(b, exec).toImage(exec);
+        });
+    }
+
+    // --- Filtros en frecuencia (cortes en fracción de Nyquist) ---
+
+    public static BufferedImage lowPassFilter(BufferedImage src) {
+        return lowPassFilter(src, FrequencyFilter.Shape.BUTTERWORTH, 0.25, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage lowPassFilter(BufferedImage src, FrequencyFilter.Shape shape, double cutoff,
+                                              TileScheduler exec) {
+        return OperationMetrics.time("lowPassFilter", src, () -> FrequencyFilter.lowPass(src, shape, cutoff, BUTTERWORTH_ORDER, exec));
+    }
+
+    public static BufferedImage highPassFilter(BufferedImage src) {
+        return highPassFilter(src, FrequencyFilter.Shape.BUTTERWORTH, 0.1, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage highPassFilter(BufferedImage src, FrequencyFilter.Shape shape, double cutoff,
+                                               TileScheduler exec) {
+        return OperationMetrics.time("highPassFilter", src, () -> FrequencyFilter.highPass(src, shape, cutoff, BUTTERWORTH_ORDER, exec));
+    }
+
+    public static BufferedImage bandPassFilter(BufferedImage src) {
+        return bandPassFilter(src, FrequencyFilter.Shape.BUTTERWORTH, 0.1, 0.4, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage bandPassFilter(BufferedImage src, FrequencyFilter.Shape shape, double low, double high,
+                                               TileScheduler exec) {
+        return OperationMetrics.time("bandPassFilter", src, () -> FrequencyFilter.bandPass(src, shape, low, high, BUTTERWORTH_ORDER, exec));
+    }
+
+
+    // --- Regiones (RegionProcessor): modifican img en sitio solo dentro de roi; mask puede ser null ---
+    // Leen la región más el radio del kernel y el resultado dentro de ella es el de la imagen completa.
+
+    public static BufferedImage gaussianBlur(BufferedImage img, float sigma, Rectangle roi, Shape mask,
+                                             TileScheduler exec) {
+        int halo = sigma <= 0f ? 0 : gaussianKernel1D(sigma).length / 2;
+        return RegionProcessor.apply(img, roi, mask, halo, (v, e) -> gaussianBlur(v, sigma, e), exec);
+    }
+
+    public static BufferedImage meanFilter(BufferedImage img, int radius, Rectangle roi, Shape mask,
+                                           TileScheduler exec) {
+        return RegionProcessor.apply(img, roi, mask, radius, (v, e) -> meanFilter(v, radius, e), exec);
+    }
+
+    public static BufferedImage medianFilter(BufferedImage img, int radius, Rectangle roi, Shape mask,
+                                             TileScheduler exec) {
+        return RegionProcessor.apply(img, roi, mask, radius, (v, e) -> medianFilter(v, radius, e), exec);
+    }
+
+    /** Sin máscara escribe directamente sobre los pixeles de la región, sin imagen intermedia. */
+    public static BufferedImage applyPointOp(BufferedImage img, PointOp op, Rectangle roi, Shape mask,
+                                             TileScheduler exec) {
+        return RegionProcessor.applyPointOp(img, roi, mask, op, exec);
+    }
 
     // --- Helpers internos ---
 
-    private static int clamp(int v) {
-        return (v < 0) ? 0 : (v > 255 ? 255 : v);
+    // Un filtro por canales sobre BYTE_GRAY da R = G = B: el resultado vuelve a BYTE_GRAY (la
+    // luminancia de un gris es el mismo gris), como en la mediana y la morfología.
+    private static BufferedImage keepGray(BufferedImage src, BufferedImage out, TileScheduler exec) {
+        if (src.getType() != BufferedImage.TYPE_BYTE_GRAY || out.getType() == BufferedImage.TYPE_BYTE_GRAY) return out;
+        int w = out.getWidth();
+        BufferedImage gray = new BufferedImage(w, out.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+        exec.forEachBand(0, out.getHeight(), (y0, y1) -> {
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                PixelAccess.readRow(out, 0, y, w, row, 0);
+                PixelAccess.writeRow(gray, 0, y, w, row, 0);
+            }
+        });
+        return gray;
     }
 
-    private static float[] gaussianKernel1D(float sigma) {
+    static float[] gaussianKernel1D(float sigma) {
         int radius = Math.max(1, (int) Math.ceil(3 * sigma));
         int size = radius * 2 + 1;
         float[] k = new float[size];
@@ -190,64 +407,14 @@ public class ImageOperations {
         return k;
     }
     
-    private static BufferedImage convolveHorizontal(BufferedImage src, float[] kernel) {
-        int w = src.getWidth(), h = src.getHeight();
-        int radius = kernel.length / 2;
-        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float r = 0, g = 0, b = 0;
-                int a = (src.getRGB(x, y) >>> 24) & 0xFF; 
-                for (int k = -radius; k <= radius; k++) {
-                    int xx = Math.max(0, Math.min(w - 1, x + k)); // Edge clamping
-                    int p = src.getRGB(xx, y);
-                    float wgt = kernel[k + radius];
-                    r += ((p >> 16) & 0xFF) * wgt;
-                    g += ((p >> 8) & 0xFF) * wgt;
-                    b += (p & 0xFF) * wgt;
-                }
-                out.setRGB(x, y, (a << 24) | (clamp(Math.round(r)) << 16) | (clamp(Math.round(g)) << 8) | clamp(Math.round(b)));
-            }
-        }
-        return out;
-    }
-
-    private static BufferedImage convolveVertical(BufferedImage src, float[] kernel) {
-        int w = src.getWidth(), h = src.getHeight();
-        int radius = kernel.length / 2;
-        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                float r = 0, g = 0, b = 0;
-                int a = (src.getRGB(x, y) >>> 24) & 0xFF;
-                for (int k = -radius; k <= radius; k++) {
-                    int yy = Math.max(0, Math.min(h - 1, y + k)); // Edge clamping
-                    int p = src.getRGB(x, yy);
-                    float wgt = kernel[k + radius];
-                    r += ((p >> 16) & 0xFF) * wgt;
-                    g += ((p >> 8) & 0xFF) * wgt;
-                    b += (p & 0xFF) * wgt;
-                }
-                out.setRGB(x, y, (a << 24) | (clamp(Math.round(r)) << 16) | (clamp(Math.round(g)) << 8) | clamp(Math.round(b)));
-            }
-        }
-        return out;
-    }
-
-    private static int[][] toGrayscaleArray(BufferedImage src) {
-        int w = src.getWidth(), h = src.getHeight();
-        int[][] g = new int[h][w];
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int p = src.getRGB(x, y);
-                int r = (p >> 16) & 0xFF;
-                int gr = (p >> 8) & 0xFF;
-                int b = p & 0xFF;
-                g[y][x] = clamp(Math.round(0.2126f * r + 0.7152f * gr + 0.0722f * b));
-            }
-        }
-        return g;
+    // Byte que setRGB(v,v,v) guarda en un TYPE_BYTE_GRAY (incluye la conversión sRGB -> gris lineal).
+    static byte[] grayStoreTable() {
+        byte[] t = GRAY_STORE;
+        if (t != null) return t;
+        BufferedImage probe = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        for (int v = 0; v < 256; v++) probe.setRGB(v, 0, 0xFF000000 | (v << 16) | (v << 8) | v);
+        t = ((DataBufferByte) probe.getRaster().getDataBuffer()).getData().clone();
+        GRAY_STORE = t;
+        return t;
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cadena de operaciones sobre una imagen con fusión de operaciones puntuales.
+ *
+ * Las operaciones puntuales consecutivas (brillo, contraste, gris, invertir, umbral, tablas) se
+ * componen en un único PointOp y se aplican en una sola pasada: una lectura y una escritura por
+ * pixel, sin imágenes intermedias. Las operaciones de vecindad (gaussiano, Sobel, rotaciones...)
+ * materializan su resultado porque el kernel necesita leer vecinos; una pasada puntual posterior
+ * escribe en sitio sobre ese resultado, que es propiedad del pipeline.
+ *
+ * Las rotaciones y espejos consecutivos se componen igual en una sola OrthogonalTransform: una
+ * permutación de pixeles en lugar de una por paso, en sitio si el resultado conserva las dimensiones
+ * y la imagen ya es del pipeline; si la composición es la identidad el paso desaparece.
+ *
+ * Es inmutable: cada método devuelve un pipeline nuevo. plan() describe cómo se ejecutará.
+ * Un pipeline de una sola etapa gaussiana o Sobel puede ejecutarse además de archivo a archivo por
+ * franjas (streamed()), para imágenes que no caben en memoria.
+ */
+public final class ImagePipeline implements UnaryOperator<BufferedImage> {
+
+    /** Operación que necesita la imagen completa (o vecinos); devuelve una imagen nueva o la misma que recibe. */
+    public interface Stage {
+        BufferedImage apply(BufferedImage src, TileScheduler exec);
+    }
+
+    /** La misma operación leyendo y escribiendo archivos por franjas (StreamingProcessor). */
+    public interface Streamed {
+        void run(File in, File out, String format) throws IOException;
+    }
+
+    // Cada paso es un PointOp ya fusionado, una OrthogonalTransform ya compuesta o una etapa
+    // materializada con su nombre.
+    private static final class Step {
+        final String name;
+        final PointOp point;
+        final OrthogonalTransform transform;
+        final Stage stage;
+        final Streamed streamed;
+
+        Step(String name, PointOp point, OrthogonalTransform transform, Stage stage, Streamed streamed) {
+            this.name = name;
+            this.point = point;
+            this.transform = transform;
+            this.stage = stage;
+            this.streamed = streamed;
+        }
+    }
+
+    public static final ImagePipeline EMPTY = new ImagePipeline(Collections.emptyList());
+
+    private final List<Step> steps;
+
+    private ImagePipeline(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    // --- Construcción ---
+
+    public ImagePipeline then(PointOp op) {
+        if (op.isIdentity() && op.getNames().isEmpty()) return this;
+        List<Step> s = new ArrayList<>(steps);
+        Step last = s.isEmpty() ? null : s.get(s.size() - 1);
+        if (last != null && last.point != null) {
+            s.set(s.size() - 1, new Step(null, last.point.then(op), null, null, null));
+        } else {
+            s.add(new Step(null, op, null, null, null));
+        }
+        return new ImagePipeline(Collections.unmodifiableList(s));
+    }
+
+    /** Rotación o espejo; se compone con la transformación del paso anterior si la hay. */
+    public ImagePipeline transform(String name, OrthogonalTransform t) {
+        List<Step> s = new ArrayList<>(steps);
+        Step last = s.isEmpty() ? null : s.get(s.size() - 1);
+        if (last != null && last.transform != null) {
+            s.remove(s.size() - 1);
+            t = last.transform.then(t);
+            name = last.name + "+" + name;
+        }
+        if (!t.isIdentity()) s.add(new Step(name, null, t, null, null));
+        return new ImagePipeline(Collections.unmodifiableList(s));
+    }
+
+    public ImagePipeline thenStage(String name, Stage stage) {
+        return thenStage(name, stage, null);
+    }
+
+    private ImagePipeline thenStage(String name, Stage stage, Streamed streamed) {
+        List<Step> s = new ArrayList<>(steps);
+        s.add(new Step(name, null, null, stage, streamed));
+        return new ImagePipeline(Collections.unmodifiableList(s));
+    }
+
+    public ImagePipeline then(String name, UnaryOperator<BufferedImage> op) {
+        return thenStage(name, (img, exec) -> op.apply(img));
+    }
+
+    public ImagePipeline then(ImagePipeline next) {
+        ImagePipeline p = this;
+        for (Step st : next.steps) {
+            if (st.point != null) p = p.then(st.point);
+            else if (st.transform != null) p = p.transform(st.name, st.transform);
+            else p = p.thenStage(st.name, st.stage, st.streamed);
+        }
+        return p;
+    }
+
+    public ImagePipeline brightness(int delta) { return then(PointOp.brightness(delta)); }
+    public ImagePipeline contrast(double factor) { return then(PointOp.contrast(factor)); }
+    public ImagePipeline grayscale() { return then(PointOp.grayscale()); }
+    public ImagePipeline gamma(double gamma) { return then(PointOp.gamma(gamma)); }
+    public ImagePipeline invert() { return then(PointOp.invert()); }
+    public ImagePipeline threshold(int t) { return then(PointOp.threshold(t)); }
+
+    public ImagePipeline rotate90CW() { return transform("rotate90cw", OrthogonalTransform.ROTATE_90_CW); }
+    public ImagePipeline rotate90CCW() { return transform("rotate90ccw", OrthogonalTransform.ROTATE_90_CCW); }
+    public ImagePipeline rotate180() { return transform("rotate180", OrthogonalTransform.ROTATE_180); }
+    public ImagePipeline flipHorizontal() { return transform("fliph", OrthogonalTransform.FLIP_HORIZONTAL); }
+    public ImagePipeline flipVertical() { return transform("flipv", OrthogonalTransform.FLIP_VERTICAL); }
+
+    public ImagePipeline gaussian(float sigma) {
+        return thenStage("gaussiano(" + sigma + ")", (img, exec) -> ImageOperations.gaussianBlur(img, sigma, exec),
+                (in, out, format) -> StreamingProcessor.gaussianBlur(in, out, format, sigma,
+                        StreamingProcessor.DEFAULT_STRIP_ROWS));
+    }
+
+    public ImagePipeline sobel() {
+        return thenStage("sobel", ImageOperations::sobelEdges,
+                (in, out, format) -> StreamingProcessor.sobelEdges(in, out, format, StreamingProcessor.DEFAULT_STRIP_ROWS));
+    }
+
+    public ImagePipeline canny(float sigma) {
+        return thenStage("canny(" + sigma + ")", (img, exec) -> ImageOperations.cannyFilter(img, sigma,
+                CannyDetector.AUTO, CannyDetector.AUTO, exec));
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /** La versión por franjas si el pipeline es una sola etapa que la tiene; si no, null. */
+    public Streamed streamed() {
+        return steps.size() == 1 ? steps.get(0).streamed : null;
+    }
+
+    // --- Ejecución ---
+
+    @Override
+    public BufferedImage apply(BufferedImage src) {
+        return apply(src, TileScheduler.SEQUENTIAL);
+    }
+
+    /** Ejecuta la cadena. src nunca se modifica; el resultado puede ser src si el pipeline está vacío. */
+    public BufferedImage apply(BufferedImage src, TileScheduler exec) {
+        BufferedImage img = src;
+        boolean owned = false; // true si img la creó el pipeline y se puede escribir en sitio
+        for (Step st : steps) {
+            if (st.stage != null) {
+                BufferedImage out = st.stage.apply(img, exec);
+                if (out != img) owned = out != src;
+                img = out;
+            } else if (st.transform != null) {
+                BufferedImage in = img;
+                if (owned && st.transform.isInPlaceCapable()) {
+                    OperationMetrics.time(st.name, in, () -> {
+                        st.transform.applyInPlace(in);
+                        return in;
+                    });
+                } else {
+                    img = OperationMetrics.time(st.name, in, () -> st.transform.apply(in, exec));
+                    owned = true;
+                }
+            } else if (!st.point.isIdentity()) {
+                img = st.point.applyTo(img, owned, exec); // en sitio invalida las estadísticas en caché
+                owned = true;
+            }
+        }
+        return img;
+    }
+
+    /** Descripción de la ejecución: una línea por pasada, indicando fusiones y materializaciones. */
+    public List<String> plan() {
+        List<String> lines = new ArrayList<>();
+        boolean owned = false;
+        int n = 1;
+        for (Step st : steps) {
+            if (st.stage != null) {
+                lines.add(n++ + ". vecindad " + st.name + ": materializa una imagen nueva");
+                owned = true;
+            } else if (st.transform != null) {
+                int ops = st.name.split("\\+").length;
+                lines.add(n++ + ". permutación " + st.name + (ops > 1 ? " (" + ops + " operaciones compuestas)" : "")
+                        + (owned && st.transform.isInPlaceCapable() ? ": en sitio" : ": materializa una imagen nueva"));
+                owned = true;
+            } else {
+                int ops = st.point.getNames().size();
+                lines.add(n++ + ". puntual " + st.point + (ops > 1 ? " (" + ops + " operaciones fusionadas)" : "")
+                        + ": 1 lectura + 1 escritura por pixel" + (owned ? ", en sitio si el tipo lo permite" : ""));
+                owned = true;
+            }
+        }
+        if (lines.isEmpty()) lines.add("(vacío)");
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", plan());
+    }
+}
\ No newline at end of file
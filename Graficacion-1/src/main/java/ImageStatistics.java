@@ -0,0 +1,188 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Histogramas de R, G, B y luminancia (Rec. 709, la de PointOp) de una imagen o región, con las
+ * estadísticas que se derivan de ellos: mínimo, máximo, media, varianza, percentiles y umbral de Otsu.
+ *
+ * Se calcula en una sola pasada por bandas de filas (TileScheduler); cada banda llena sus propios
+ * histogramas y se suman al final, así que el resultado no depende del paralelismo. Las instancias
+ * son inmutables; plus/minus permiten actualizar el total cuando solo cambia una región.
+ * El alfa no se tiene en cuenta. En BYTE_GRAY los cuatro canales son el byte crudo.
+ */
+public final class ImageStatistics {
+
+    public static final int RED = 0, GREEN = 1, BLUE = 2, LUMA = 3;
+
+    private final long[][] hist; // [canal][valor]
+    private final long count;
+
+    private ImageStatistics(long[][] hist) {
+        this.hist = hist;
+        long c = 0;
+        for (long v : hist[0]) c += v;
+        this.count = c;
+    }
+
+    public static ImageStatistics of(BufferedImage src, TileScheduler exec) {
+        return of(src, new Rectangle(0, 0, src.getWidth(), src.getHeight()), exec);
+    }
+
+    /** Estadísticas de la región (recortada a la imagen). */
+    public static ImageStatistics of(BufferedImage src, Rectangle region, TileScheduler exec) {
+        Rectangle r = region.intersection(new Rectangle(0, 0, src.getWidth(), src.getHeight()));
+        long[][] total = new long[4][256];
+        if (r.isEmpty()) return new ImageStatistics(total);
+        boolean gray = src.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        exec.forEachBand(r.y, r.y + r.height, (y0, y1) -> {
+            // Contadores long: con SEQUENTIAL toda la región es una sola banda y puede superar 2^31 pixeles.
+            long[] hr = new long[256], hg = new long[256], hb = new long[256], hl = new long[256];
+            int[] row = new int[r.width];
+            byte[] g = gray ? new byte[r.width] : null;
+            for (int y = y0; y < y1; y++) {
+                if (gray) {
+                    src.getRaster().getDataElements(r.x, y, r.width, 1, g);
+                    for (int x = 0; x < r.width; x++) hl[g[x] & 0xFF]++;
+                    continue;
+                }
+                PixelAccess.readRow(src, r.x, y, r.width, row, 0);
+                for (int x = 0; x < r.width; x++) {
+                    int p = row[x], cr = (p >> 16) & 0xFF, cg = (p >> 8) & 0xFF, cb = p & 0xFF;
+                    hr[cr]++;
+                    hg[cg]++;
+                    hb[cb]++;
+                    hl[PointOp.luma(cr, cg, cb)]++;
+                }
+            }
+            if (gray) {
+                hr = hg = hb = hl;
+            }
+            synchronized (total) {
+                for (int v = 0; v < 256; v++) {
+                    total[RED][v] += hr[v];
+                    total[GREEN][v] += hg[v];
+                    total[BLUE][v] += hb[v];
+                    total[LUMA][v] += hl[v];
+                }
+            }
+        });
+        return new ImageStatistics(total);
+    }
+
+    // --- Combinación ---
+
+    public ImageStatistics plus(ImageStatistics o) {
+        return combine(o, 1);
+    }
+
+    /** Quita los pixeles de o (que deben estar incluidos en this). */
+    public ImageStatistics minus(ImageStatistics o) {
+        return combine(o, -1);
+    }
+
+    private ImageStatistics combine(ImageStatistics o, int sign) {
+        long[][] h = new long[4][256];
+        for (int c = 0; c < 4; c++) {
+            for (int v = 0; v < 256; v++) {
+                h[c][v] = hist[c][v] + sign * o.hist[c][v];
+                if (h[c][v] < 0) throw new IllegalArgumentException("Histograma negativo: la región no estaba incluida");
+            }
+        }
+        return new ImageStatistics(h);
+    }
+
+    // --- Consultas ---
+
+    public long getPixelCount() {
+        return count;
+    }
+
+    /** Copia del histograma de 256 valores del canal. */
+    public long[] histogram(int channel) {
+        return hist[channel].clone();
+    }
+
+    public int min(int channel) {
+        long[] h = hist[channel];
+        for (int v = 0; v < 256; v++) {
+            if (h[v] != 0) return v;
+        }
+        return 0;
+    }
+
+    public int max(int channel) {
+        long[] h = hist[channel];
+        for (int v = 255; v >= 0; v--) {
+            if (h[v] != 0) return v;
+        }
+        return 0;
+    }
+
+    public double mean(int channel) {
+        if (count == 0) return 0;
+        long[] h = hist[channel];
+        double s = 0;
+        for (int v = 0; v < 256; v++) s += (double) v * h[v];
+        return s / count;
+    }
+
+    public double variance(int channel) {
+        if (count == 0) return 0;
+        long[] h = hist[channel];
+        double m = mean(channel), s = 0;
+        for (int v = 0; v < 256; v++) s += (v - m) * (v - m) * h[v];
+        return s / count;
+    }
+
+    public double stdDev(int channel) {
+        return Math.sqrt(variance(channel));
+    }
+
+    /** Menor valor v tal que al menos la fracción p (0..1) de los pixeles es <= v. */
+    public int percentile(int channel, double p) {
+        if (p < 0 || p > 1) throw new IllegalArgumentException("Percentil fuera de [0, 1]: " + p);
+        if (count == 0) return 0;
+        long[] h = hist[channel];
+        long target = Math.max(1, (long) Math.ceil(p * count)), acc = 0;
+        for (int v = 0; v < 256; v++) {
+            acc += h[v];
+            if (acc >= target) return v;
+        }
+        return 255;
+    }
+
+    /** Umbral de Otsu: maximiza la varianza entre clases (fondo <= t < objeto). */
+    public int otsuThreshold(int channel) {
+        long[] h = hist[channel];
+        double sumAll = 0;
+        for (int v = 0; v < 256; v++) sumAll += (double) v * h[v];
+        double sumB = 0, best = -1;
+        long wB = 0;
+        int t = 0;
+        for (int v = 0; v < 256; v++) {
+            wB += h[v];
+            if (wB == 0) continue;
+            long wF = count - wB;
+            if (wF == 0) break;
+            sumB += (double) v * h[v];
+            double mB = sumB / wB, mF = (sumAll - sumB) / wF;
+            double between = (double) wB * wF * (mB - mF) * (mB - mF);
+            if (between > best) {
+                best = between;
+                t = v;
+            }
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        String[] names = {"R", "G", "B", "L"};
+        StringBuilder sb = new StringBuilder(count + " pixeles");
+        for (int c = 0; c < 4; c++) {
+            sb.append(String.format("%n%s: min %d, max %d, media %.2f, desv. %.2f, mediana %d",
+                    names[c], min(c), max(c), mean(c), stdDev(c), percentile(c, 0.5)));
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -1,39 +1,449 @@
+import java.awt.BasicStroke;
 import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.EventQueue;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
+/**
+ * Visor con zoom y desplazamiento para imágenes de cualquier tamaño.
+ *
+ * En lugar de pasar el raster entero a Java2D en cada repintado, la imagen se sirve desde una
+ * pirámide de resoluciones (cada nivel es la mitad del anterior, construidos en segundo plano) y
+ * solo se dibujan los mosaicos de TILE x TILE del nivel adecuado que caen en la zona visible. Los
+ * mosaicos se convierten a imágenes compatibles con la pantalla (las que Java2D acelera) y se
+ * guardan en una caché LRU limitada a MAX_TILE_BYTES.
+ *
+ * Ctrl + rueda acerca o aleja alrededor del cursor; arrastrar con el ratón desplaza la vista y
+ * Mayús + arrastrar marca una selección rectangular (en pixeles de la imagen), que se avisa con la
+ * propiedad SELECTION_PROPERTY.
+ */
 public class ImageViewerPanel extends JPanel {
 
     private static final long serialVersionUID = 1L;
 
-    private final JLabel imageLabel;
+    /** Lado de los mosaicos, en pixeles del nivel. */
+    static final int TILE = 256;
+    /** Memoria máxima de la caché de mosaicos. */
+    static final long MAX_TILE_BYTES = 128L << 20;
+
+    public static final double MIN_ZOOM = 1 / 64.0, MAX_ZOOM = 32;
+    public static final String SELECTION_PROPERTY = "selection";
+    private static final double ZOOM_STEP = 1.25;
+
+    // Construye los niveles de todas las pirámides, uno tras otro.
+    private static final ExecutorService BUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "visor-piramide");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Niveles de resolución de una imagen; el 0 es la imagen y se construyen en segundo plano. */
+    private static final class Pyramid {
+        final AtomicReferenceArray<BufferedImage> levels;
+        final int width, height;
+        final double baseScale; // tamaño lógico / tamaño del nivel 0 (vista previa ampliada)
+        volatile boolean discarded;
+
+        Pyramid(BufferedImage img, double baseScale) {
+            int n = 1;
+            for (int s = Math.max(img.getWidth(), img.getHeight()); s > TILE; s = (s + 1) / 2) n++;
+            levels = new AtomicReferenceArray<>(n);
+            levels.set(0, img);
+            width = img.getWidth();
+            height = img.getHeight();
+            this.baseScale = baseScale;
+        }
+
+        void build(Runnable onLevel) {
+            for (int l = 1; l < levels.length() && !discarded; l++) {
+                BufferedImage prev = levels.get(l - 1);
+                levels.set(l, Resampler.resize(prev, (prev.getWidth() + 1) / 2, (prev.getHeight() + 1) / 2,
+                        Resampler.Filter.BOX, TileScheduler.SEQUENTIAL));
+                onLevel.run();
+            }
+        }
+
+        // Nivel más reducido que no baja de la escala de pantalla z; si aún no está, el más fino listo.
+        int levelFor(double z) {
+            int l = 0;
+            while (l + 1 < levels.length() && z <= 0.5 / (1 << l)) l++;
+            while (levels.get(l) == null) l--;
+            return l;
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
     private final JScrollPane scrollPane;
+    // Caché LRU de mosaicos (clave: nivel, fila, columna); solo se usa en el EDT.
+    private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > MAX_TILE_BYTES / (4L * TILE * TILE);
+        }
+    };
+
+    private Pyramid pyramid;
+    private String placeholder = "No hay imagen abierta";
+    private double zoom = 1;
+    private Rectangle selection; // en pixeles de la imagen completa; null si no hay
 
     public ImageViewerPanel() {
         super(new BorderLayout());
-        imageLabel = new JLabel("No hay imagen abierta", JLabel.CENTER);
-        scrollPane = new JScrollPane(imageLabel);
+        scrollPane = new JScrollPane(canvas);
+        scrollPane.getViewport().setScrollMode(JViewport.BLIT_SCROLL_MODE);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(32);
+        scrollPane.getHorizontalScrollBar().setUnitIncrement(32);
         add(scrollPane, BorderLayout.CENTER);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            private Point dragStart;
+            private Point viewStart;
+            private Point selectStart; // en pixeles de la imagen, mientras se selecciona
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (e.isShiftDown() && pyramid != null) {
+                    selectStart = toImage(e.getPoint());
+                    dragStart = null;
+                    return;
+                }
+                selectStart = null;
+                dragStart = e.getLocationOnScreen();
+                viewStart = scrollPane.getViewport().getViewPosition();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (selectStart != null) {
+                    Point p = toImage(e.getPoint());
+                    Rectangle r = new Rectangle(selectStart);
+                    r.add(p);
+                    updateSelection(r);
+                    return;
+                }
+                if (dragStart == null) return;
+                Point p = e.getLocationOnScreen();
+                scrollTo(viewStart.x - (p.x - dragStart.x), viewStart.y - (p.y - dragStart.y));
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                selectStart = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (!e.isControlDown()) {
+                    scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(canvas, e, scrollPane));
+                    return;
+                }
+                double f = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+                zoomAround(zoom * f, e.getPoint());
+            }
+        };
+        canvas.addMouseListener(mouse);
+        canvas.addMouseMotionListener(mouse);
+        canvas.addMouseWheelListener(mouse);
     }
 
+    // --- API ---
+
+    /**
+     * Muestra img. Si ya es la imagen mostrada (mismo objeto, no una vista previa) no hace nada: la
+     * pirámide y los mosaicos siguen valiendo porque las operaciones devuelven imágenes nuevas.
+     */
     public void setImage(BufferedImage img) {
         if (img == null) {
             setPlaceholder("No hay imagen abierta");
             return;
         }
-        imageLabel.setIcon(new ImageIcon(img));
-        imageLabel.setText(null);
-        imageLabel.revalidate();
-        imageLabel.repaint();
+        if (pyramid != null && pyramid.baseScale == 1 && pyramid.levels.get(0) == img) return;
+        show(img, 1);
+    }
+
+    /** Muestra una vista previa reducida ampliada por scale, ocupando lo mismo que la imagen completa. */
+    public void setPreview(BufferedImage preview, double scale) {
+        show(preview, scale);
     }
 
     public void setPlaceholder(String text) {
-        imageLabel.setIcon(null);
-        imageLabel.setText(text != null ? text : "");
-        imageLabel.revalidate();
-        imageLabel.repaint();
+        discardPyramid();
+        clearSelection();
+        placeholder = text != null ? text : "";
+        canvas.revalidate();
+        canvas.repaint();
+    }
+
+    /** Selección actual en pixeles de la imagen, o null. */
+    public Rectangle getSelection() {
+        return selection != null ? new Rectangle(selection) : null;
+    }
+
+    /** Fija la selección (recortada a la imagen); null o vacía la quita. */
+    public void setSelection(Rectangle r) {
+        updateSelection(r);
+    }
+
+    public void clearSelection() {
+        updateSelection(null);
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /** Cambia el zoom manteniendo el centro de la vista. */
+    public void setZoom(double z) {
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        zoomAround(z, new Point(view.x + view.width / 2, view.y + view.height / 2));
+    }
+
+    public void zoomIn() {
+        setZoom(zoom * ZOOM_STEP);
+    }
+
+    public void zoomOut() {
+        setZoom(zoom / ZOOM_STEP);
+    }
+
+    /** Zoom que hace caber la imagen entera en la vista (sin ampliar por encima de 1). */
+    public void zoomToFit() {
+        if (pyramid == null) return;
+        Dimension v = scrollPane.getViewport().getExtentSize();
+        double lw = pyramid.width * pyramid.baseScale, lh = pyramid.height * pyramid.baseScale;
+        setZoom(Math.min(1, Math.min(v.width / lw, v.height / lh)));
+    }
+
+    // --- Estado ---
+
+    private void show(BufferedImage img, double baseScale) {
+        Pyramid old = pyramid;
+        discardPyramid();
+        Pyramid p = new Pyramid(img, baseScale);
+        pyramid = p;
+        BUILDER.execute(() -> p.build(() -> EventQueue.invokeLater(() -> {
+            if (pyramid == p) canvas.repaint();
+        })));
+        boolean sameSize = old != null && Math.round(old.width * old.baseScale) == Math.round(p.width * baseScale)
+                && Math.round(old.height * old.baseScale) == Math.round(p.height * baseScale);
+        if (!sameSize) {
+            canvas.revalidate();
+            clearSelection();
+        }
+        canvas.repaint();
+    }
+
+    private void discardPyramid() {
+        if (pyramid != null) pyramid.discarded = true;
+        pyramid = null;
+        tiles.clear();
+    }
+
+    private void updateSelection(Rectangle r) {
+        Rectangle old = selection;
+        if (r != null && pyramid != null) {
+            r = r.intersection(new Rectangle(0, 0, (int) Math.round(pyramid.width * pyramid.baseScale),
+                    (int) Math.round(pyramid.height * pyramid.baseScale)));
+        }
+        selection = r == null || r.isEmpty() || pyramid == null ? null : r;
+        if (old == null ? selection == null : old.equals(selection)) return;
+        canvas.repaint();
+        firePropertyChange(SELECTION_PROPERTY, old, getSelection());
+    }
+
+    // Punto del lienzo a pixel de la imagen completa.
+    private Point toImage(Point p) {
+        Point o = canvas.origin();
+        return new Point((int) Math.floor((p.x - o.x) / zoom), (int) Math.floor((p.y - o.y) / zoom));
+    }
+
+    private void zoomAround(double z, Point anchor) {
+        z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, z));
+        if (pyramid == null || z == zoom) {
+            zoom = z;
+            return;
+        }
+        JViewport vp = scrollPane.getViewport();
+        Point view = vp.getViewPosition();
+        Point o = canvas.origin();
+        // El punto de la imagen bajo el ancla sigue bajo el ancla tras el zoom.
+        double ix = (anchor.x - o.x) / zoom, iy = (anchor.y - o.y) / zoom;
+        zoom = z;
+        canvas.revalidate();
+        scrollPane.validate();
+        Point o2 = canvas.origin();
+        scrollTo((int) Math.round(ix * z + o2.x - (anchor.x - view.x)),
+                (int) Math.round(iy * z + o2.y - (anchor.y - view.y)));
+        canvas.repaint();
+    }
+
+    private void scrollTo(int x, int y) {
+        JViewport vp = scrollPane.getViewport();
+        Dimension view = canvas.getSize(), extent = vp.getExtentSize();
+        x = Math.max(0, Math.min(x, view.width - extent.width));
+        y = Math.max(0, Math.min(y, view.height - extent.height));
+        vp.setViewPosition(new Point(x, y));
+    }
+
+    // --- Mosaicos ---
+
+    private BufferedImage tile(Pyramid p, int level, int tx, int ty) {
+        long key = (long) level << 48 | (long) ty << 24 | tx;
+        BufferedImage t = tiles.get(key);
+        if (t != null) return t;
+        BufferedImage src = p.levels.get(level);
+        int w = Math.min(TILE, src.getWidth() - tx * TILE), h = Math.min(TILE, src.getHeight() - ty * TILE);
+        GraphicsConfiguration gc = canvas.getGraphicsConfiguration();
+        boolean alpha = src.getColorModel().hasAlpha();
+        t = gc != null
+                ? gc.createCompatibleImage(w, h, alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE)
+                : new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        PixelStore.record(PixelStore.Conversion.DISPLAY);
+        Graphics2D g = t.createGraphics();
+        g.drawImage(src, -tx * TILE, -ty * TILE, null);
+        g.dispose();
+        tiles.put(key, t);
+        return t;
+    }
+
+    /** Lienzo del tamaño de la imagen con zoom; se estira a la vista cuando es menor y la centra. */
+    private final class Canvas extends JComponent implements Scrollable {
+        private static final long serialVersionUID = 1L;
+
+        Canvas() {
+            setOpaque(true);
+            setBackground(Color.GRAY);
+        }
+
+        Dimension displaySize() {
+            if (pyramid == null) return new Dimension(0, 0);
+            return new Dimension((int) Math.max(1, Math.round(pyramid.width * pyramid.baseScale * zoom)),
+                    (int) Math.max(1, Math.round(pyramid.height * pyramid.baseScale * zoom)));
+        }
+
+        Point origin() {
+            Dimension d = displaySize();
+            return new Point(Math.max(0, (getWidth() - d.width) / 2), Math.max(0, (getHeight() - d.height) / 2));
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return displaySize();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g0) {
+            Graphics2D g = (Graphics2D) g0;
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            Pyramid p = pyramid;
+            if (p == null) {
+                paintPlaceholder(g);
+                return;
+            }
+            double z = zoom * p.baseScale; // pixeles de pantalla por pixel del nivel 0
+            int level = p.levelFor(z);
+            BufferedImage src = p.levels.get(level);
+            Dimension d = displaySize();
+            Point o = origin();
+            double fx = (double) d.width / src.getWidth(), fy = (double) d.height / src.getHeight();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, fx >= 2
+                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+            Rectangle vis = clip.intersection(new Rectangle(o.x, o.y, d.width, d.height));
+            if (vis.isEmpty()) return;
+            int tx0 = (int) ((vis.x - o.x) / fx) / TILE, tx1 = (int) ((vis.x + vis.width - o.x - 1) / fx) / TILE;
+            int ty0 = (int) ((vis.y - o.y) / fy) / TILE, ty1 = (int) ((vis.y + vis.height - o.y - 1) / fy) / TILE;
+            int ntx = (src.getWidth() - 1) / TILE, nty = (src.getHeight() - 1) / TILE;
+            for (int ty = ty0; ty <= Math.min(ty1, nty); ty++) {
+                // Bordes redondeados igual para mosaicos vecinos: sin huecos entre ellos.
+                int dy0 = o.y + (int) Math.round(ty * TILE * fy);
+                int dy1 = o.y + (int) Math.round(Math.min((ty + 1) * TILE, src.getHeight()) * fy);
+                for (int tx = tx0; tx <= Math.min(tx1, ntx); tx++) {
+                    int dx0 = o.x + (int) Math.round(tx * TILE * fx);
+                    int dx1 = o.x + (int) Math.round(Math.min((tx + 1) * TILE, src.getWidth()) * fx);
+                    BufferedImage t = tile(p, level, tx, ty);
+                    g.drawImage(t, dx0, dy0, dx1, dy1, 0, 0, t.getWidth(), t.getHeight(), null);
+                }
+            }
+            if (selection != null) paintSelection(g, o);
+        }
+
+        // Contorno negro con trazos blancos encima: visible sobre cualquier fondo.
+        private void paintSelection(Graphics2D g, Point o) {
+            int x0 = o.x + (int) Math.round(selection.x * zoom), y0 = o.y + (int) Math.round(selection.y * zoom);
+            int x1 = o.x + (int) Math.round((selection.x + selection.width) * zoom);
+            int y1 = o.y + (int) Math.round((selection.y + selection.height) * zoom);
+            g.setStroke(new BasicStroke(1));
+            g.setColor(Color.BLACK);
+            g.drawRect(x0, y0, x1 - x0 - 1, y1 - y0 - 1);
+            g.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10, new float[]{4, 4}, 0));
+            g.setColor(Color.WHITE);
+            g.drawRect(x0, y0, x1 - x0 - 1, y1 - y0 - 1);
+        }
+
+        private void paintPlaceholder(Graphics2D g) {
+            Rectangle v = getVisibleRect();
+            g.setColor(getForeground() != null ? getForeground() : Color.BLACK);
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString(placeholder, v.x + (v.width - fm.stringWidth(placeholder)) / 2,
+                    v.y + (v.height + fm.getAscent()) / 2);
+        }
+
+        // --- Scrollable: el lienzo llena la vista cuando la imagen es más pequeña ---
+
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            return getPreferredSize();
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visible, int orientation, int direction) {
+            return 32;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visible, int orientation, int direction) {
+            return orientation == SwingConstants.VERTICAL ? visible.height : visible.width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Tabla de sumas acumuladas (summed-area table) de un plano de 8 bits: la suma de cualquier
+ * rectángulo cuesta cuatro accesos, sin importar su tamaño.
+ *
+ * Las sumas se guardan en int con aritmética modular: la diferencia de cuatro esquinas es exacta
+ * mientras la suma real del rectángulo quepa en 32 bits (cualquier ventana de hasta 16 MP).
+ * La tabla de cuadrados, opcional, usa long y permite varianzas locales (umbral de Sauvola, etc.).
+ * Es inmutable una vez construida y se puede compartir entre hilos y consumidores.
+ */
+public final class IntegralImage {
+
+    private final int width, height;
+    private final int[] sum;      // (width + 1) x (height + 1), fila y columna 0 a cero
+    private final long[] sumSq;   // igual, o null
+
+    private IntegralImage(int width, int height, int[] sum, long[] sumSq) {
+        this.width = width;
+        this.height = height;
+        this.sum = sum;
+        this.sumSq = sumSq;
+    }
+
+    /** Tabla de la luminancia (Rec. 709, la misma de PointOp) de src. */
+    public static IntegralImage ofLuminance(BufferedImage src, boolean squares, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        byte[] lum = new byte[w * h];
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                PixelAccess.readRow(src, 0, y, w, row, 0);
+                for (int x = 0; x < w; x++) {
+                    int p = row[x];
+                    lum[y * w + x] = (byte) PointOp.luma((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+                }
+            }
+        });
+        return of(lum, w, h, squares, exec);
+    }
+
+    /**
+     * Tabla de un plano w x h (stride w). Primero acumula cada fila (por bandas de filas) y después
+     * cada columna (por bandas de columnas); ambas pasadas son paralelizables.
+     */
+    public static IntegralImage of(byte[] plane, int w, int h, boolean squares, TileScheduler exec) {
+        int stride = w + 1;
+        int[] sum = new int[stride * (h + 1)];
+        long[] sq = squares ? new long[stride * (h + 1)] : null;
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int s = 0, in = y * w, out = (y + 1) * stride + 1;
+                long q = 0;
+                for (int x = 0; x < w; x++) {
+                    int v = plane[in + x] & 0xFF;
+                    s += v;
+                    sum[out + x] = s;
+                    if (sq != null) {
+                        q += v * v;
+                        sq[out + x] = q;
+                    }
+                }
+            }
+        });
+        exec.forEachBand(1, stride, (x0, x1) -> {
+            for (int y = 2; y <= h; y++) {
+                int row = y * stride, prev = row - stride;
+                for (int x = x0; x < x1; x++) sum[row + x] += sum[prev + x];
+                if (sq != null) {
+                    for (int x = x0; x < x1; x++) sq[row + x] += sq[prev + x];
+                }
+            }
+        });
+        return new IntegralImage(w, h, sum, sq);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public boolean hasSquares() { return sumSq != null; }
+
+    /** Suma del rectángulo [x0, x1) x [y0, y1), recortado a la imagen. */
+    public long sum(int x0, int y0, int x1, int y1) {
+        x0 = clip(x0, width);
+        x1 = clip(x1, width);
+        y0 = clip(y0, height);
+        y1 = clip(y1, height);
+        int s = width + 1;
+        // Con desbordamiento modular la diferencia sigue siendo exacta; se reinterpreta sin signo.
+        return (sum[y1 * s + x1] - sum[y0 * s + x1] - sum[y1 * s + x0] + sum[y0 * s + x0]) & 0xFFFFFFFFL;
+    }
+
+    public long sumOfSquares(int x0, int y0, int x1, int y1) {
+        if (sumSq == null) throw new IllegalStateException("Tabla construida sin cuadrados");
+        x0 = clip(x0, width);
+        x1 = clip(x1, width);
+        y0 = clip(y0, height);
+        y1 = clip(y1, height);
+        int s = width + 1;
+        return sumSq[y1 * s + x1] - sumSq[y0 * s + x1] - sumSq[y1 * s + x0] + sumSq[y0 * s + x0];
+    }
+
+    /** Media de la ventana de radio r centrada en (x, y), recortada a la imagen. */
+    public double mean(int x, int y, int r) {
+        int x0 = Math.max(0, x - r), y0 = Math.max(0, y - r);
+        int x1 = Math.min(width, x + r + 1), y1 = Math.min(height, y + r + 1);
+        return (double) sum(x0, y0, x1, y1) / ((long) (x1 - x0) * (y1 - y0));
+    }
+
+    /** Varianza de la ventana de radio r centrada en (x, y); requiere la tabla de cuadrados. */
+    public double variance(int x, int y, int r) {
+        int x0 = Math.max(0, x - r), y0 = Math.max(0, y - r);
+        int x1 = Math.min(width, x + r + 1), y1 = Math.min(height, y + r + 1);
+        double n = (double) (x1 - x0) * (y1 - y0);
+        double m = sum(x0, y0, x1, y1) / n;
+        return Math.max(0.0, sumOfSquares(x0, y0, x1, y1) / n - m * m);
+    }
+
+    private static int clip(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,362 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * Morfología con elementos estructurantes rectangulares de (2rx+1) x (2ry+1) centrados.
+ *
+ * Binaria (BinaryImage): la erosión horizontal combina desplazamientos de la fila completa por
+ * potencias de dos (log2 del ancho en operaciones por cada 64 pixeles) y la vertical aplica van
+ * Herk/Gil-Werman sobre palabras enteras (3 operaciones por palabra con cualquier alto). La
+ * dilatación es la erosión del complemento, porque el rectángulo centrado es simétrico.
+ *
+ * En gris (BufferedImage): mínimo y máximo por canal con van Herk/Gil-Werman en ambas direcciones,
+ * coste constante por pixel; el alfa de origen se conserva. Una imagen que ya es binaria
+ * (BinaryImage.isBinary) pasa por la ruta empaquetada y devuelve BYTE_GRAY, con el mismo resultado.
+ *
+ * Fuera de la imagen se usa el neutro de la operación (equivale a replicar el borde), como en
+ * RankFilter. El esqueleto es Zhang-Suen revisitando solo los vecinos de los pixeles borrados.
+ */
+public class Morphology {
+
+    private Morphology() {}
+
+    // --- Binaria ---
+
+    public static BinaryImage erode(BinaryImage src, int rx, int ry, TileScheduler exec) {
+        checkRadii(rx, ry);
+        BinaryImage tmp = new BinaryImage(src.getWidth(), src.getHeight());
+        erodeRows(src, tmp, rx, exec);
+        BinaryImage out = new BinaryImage(src.getWidth(), src.getHeight());
+        erodeColumns(tmp, out, ry, exec);
+        return out;
+    }
+
+    public static BinaryImage dilate(BinaryImage src, int rx, int ry, TileScheduler exec) {
+        return erode(src.not(), rx, ry, exec).not();
+    }
+
+    public static BinaryImage open(BinaryImage src, int rx, int ry, TileScheduler exec) {
+        return dilate(erode(src, rx, ry, exec), rx, ry, exec);
+    }
+
+    public static BinaryImage close(BinaryImage src, int rx, int ry, TileScheduler exec) {
+        return erode(dilate(src, rx, ry, exec), rx, ry, exec);
+    }
+
+    // --- Gris (o binaria en BYTE_GRAY / BYTE_BINARY) ---
+
+    public static BufferedImage erode(BufferedImage src, int rx, int ry, TileScheduler exec) {
+        if (BinaryImage.isBinary(src)) return erode(BinaryImage.of(src, 128, exec), rx, ry, exec).toImage(exec);
+        return grayFilter(src, rx, ry, false, exec);
+    }
+
+    public static BufferedImage dilate(BufferedImage src, int rx, int ry, TileScheduler exec) {
+        if (BinaryImage.isBinary(src)) return dilate(BinaryImage.of(src, 128, exec), rx, ry, exec).toImage(exec);
+        return grayFilter(src, rx, ry, true, exec);
+    }
+
+    public static BufferedImage open(BufferedImage src, int rx, int ry, TileScheduler exec) {
+        if (BinaryImage.isBinary(src)) return open(BinaryImage.of(src, 128, exec), rx, ry, exec).toImage(exec);
+        return grayFilter(grayFilter(src, rx, ry, false, exec), rx, ry, true, exec);
+    }
+
+    public static BufferedImage close(BufferedImage src, int rx, int ry, TileScheduler exec) {
+        if (BinaryImage.isBinary(src)) return close(BinaryImage.of(src, 128, exec), rx, ry, exec).toImage(exec);
+        return grayFilter(grayFilter(src, rx, ry, true, exec), rx, ry, false, exec);
+    }
+
+    // --- Erosión binaria: filas ---
+
+    // Sobre e[x] = a[x - r], E_p[x] = AND de e[x .. x + p - 1] se duplica con un desplazamiento;
+    // con P la mayor potencia de dos <= L = 2r + 1, la ventana [x - r, x + r] es E_P[x] & E_P[x + L - P].
+    // La fila se extiende con palabras a 1 (neutro) hasta cubrir x + r para todo x de la imagen.
+    private static void erodeRows(BinaryImage src, BinaryImage dst, int r, TileScheduler exec) {
+        int words = src.getWordsPerRow(), ext = (src.getWidth() + r + 63) >>> 6;
+        long mask = src.lastWordMask();
+        int len = 2 * r + 1, p = Integer.highestOneBit(len);
+        exec.forEachBand(0, src.getHeight(), (y0, y1) -> {
+            long[] a = new long[ext], e = new long[ext], t = new long[ext];
+            for (int y = y0; y < y1; y++) {
+                int base = y * words;
+                System.arraycopy(src.bits, base, a, 0, words);
+                a[words - 1] |= ~mask;
+                Arrays.fill(a, words, ext, -1L);
+                shift(a, e, ext, -r);
+                for (int k = 1; k < p; k <<= 1) {
+                    shift(e, t, ext, k);
+                    for (int i = 0; i < ext; i++) e[i] &= t[i];
+                }
+                if (len > p) {
+                    shift(e, t, ext, len - p);
+                    for (int i = 0; i < ext; i++) e[i] &= t[i];
+                }
+                System.arraycopy(e, 0, dst.bits, base, words);
+                dst.bits[base + words - 1] &= mask;
+            }
+        });
+    }
+
+    // out[x] = in[x + k] (k negativo: in[x - |k|]); fuera del rango se lee 1.
+    private static void shift(long[] in, long[] out, int words, int k) {
+        if (k == 0) {
+            System.arraycopy(in, 0, out, 0, words);
+            return;
+        }
+        int ws = Math.abs(k) >>> 6, bs = Math.abs(k) & 63;
+        for (int i = 0; i < words; i++) {
+            if (k > 0) {
+                long lo = word(in, words, i + ws), hi = word(in, words, i + ws + 1);
+                out[i] = bs == 0 ? lo : (lo >>> bs) | (hi << (64 - bs));
+            } else {
+                long hi = word(in, words, i - ws), lo = word(in, words, i - ws - 1);
+                out[i] = bs == 0 ? hi : (hi << bs) | (lo >>> (64 - bs));
+            }
+        }
+    }
+
+    private static long word(long[] a, int words, int i) {
+        return i < 0 || i >= words ? -1L : a[i];
+    }
+
+    // --- Erosión binaria: columnas (van Herk/Gil-Werman sobre palabras) ---
+
+    // Bloques de n = 2r + 1 filas desde el inicio de la banda extendida: g = AND acumulado desde el
+    // inicio del bloque, h = AND hasta el final del bloque; la ventana de y es h[y - r] & g[y + r].
+    private static void erodeColumns(BinaryImage src, BinaryImage dst, int r, TileScheduler exec) {
+        int words = src.getWordsPerRow(), h = src.getHeight(), n = 2 * r + 1;
+        if (r == 0) {
+            System.arraycopy(src.bits, 0, dst.bits, 0, src.bits.length);
+            return;
+        }
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int first = y0 - r, m = y1 - y0 + 2 * r;
+            long[] g = new long[m * words], hs = new long[m * words];
+            for (int j = 0; j < m; j++) {
+                int y = first + j;
+                boolean start = j % n == 0;
+                for (int i = 0; i < words; i++) {
+                    long v = y < 0 || y >= h ? -1L : src.bits[y * words + i];
+                    g[j * words + i] = start ? v : g[(j - 1) * words + i] & v;
+                }
+            }
+            for (int j = m - 1; j >= 0; j--) {
+                int y = first + j;
+                boolean end = j % n == n - 1 || j == m - 1;
+                for (int i = 0; i < words; i++) {
+                    long v = y < 0 || y >= h ? -1L : src.bits[y * words + i];
+                    hs[j * words + i] = end ? v : hs[(j + 1) * words + i] & v;
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                int a = (y - r - first) * words, b = (y + r - first) * words, o = y * words;
+                for (int i = 0; i < words; i++) dst.bits[o + i] = hs[a + i] & g[b + i];
+            }
+        });
+    }
+
+    // --- Gris: mínimo / máximo por canal ---
+
+    // El máximo se calcula como mínimo del complemento (255 - v) para compartir el núcleo.
+    private static BufferedImage grayFilter(BufferedImage src, int rx, int ry, boolean max, TileScheduler exec) {
+        checkRadii(rx, ry);
+        int w = src.getWidth(), h = src.getHeight();
+        if (src.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] plane = new byte[w * h];
+            exec.forEachBand(0, h, (y0, y1) -> {
+                byte[] row = new byte[w];
+                for (int y = y0; y < y1; y++) {
+                    src.getRaster().getDataElements(0, y, w, 1, row);
+                    System.arraycopy(row, 0, plane, y * w, w);
+                }
+            });
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] dst = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+            minPlane(plane, dst, w, h, rx, ry, max, exec);
+            return out;
+        }
+        ConvolutionEngine.Planes in = ConvolutionEngine.Planes.split(src, exec);
+        ConvolutionEngine.Planes out = new ConvolutionEngine.Planes(w, h);
+        minPlane(in.r, out.r, w, h, rx, ry, max, exec);
+        minPlane(in.g, out.g, w, h, rx, ry, max, exec);
+        minPlane(in.b, out.b, w, h, rx, ry, max, exec);
+        System.arraycopy(in.a, 0, out.a, 0, in.a.length);
+        return out.toImage(true, exec);
+    }
+
+    private static void minPlane(byte[] src, byte[] dst, int w, int h, int rx, int ry, boolean max,
+                                 TileScheduler exec) {
+        int flip = max ? 0xFF : 0;
+        byte[] tmp = new byte[w * h];
+        // Filas: van Herk sobre la fila extendida con el neutro (255) a ambos lados.
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int n = 2 * rx + 1, m = w + 2 * rx;
+            int[] line = new int[m], g = new int[m], hs = new int[m];
+            for (int y = y0; y < y1; y++) {
+                int o = y * w;
+                for (int j = 0; j < m; j++) {
+                    int x = j - rx;
+                    line[j] = x < 0 || x >= w ? 0xFF : (src[o + x] & 0xFF) ^ flip;
+                }
+                minLine(line, g, hs, m, n);
+                for (int x = 0; x < w; x++) tmp[o + x] = (byte) (Math.min(hs[x], g[x + 2 * rx]) ^ flip);
+            }
+        });
+        // Columnas: el mismo esquema con filas completas como elementos.
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int n = 2 * ry + 1, first = y0 - ry, m = y1 - y0 + 2 * ry;
+            byte[] g = new byte[m * w], hs = new byte[m * w];
+            byte[] neutral = new byte[w];
+            Arrays.fill(neutral, (byte) (0xFF ^ flip));
+            for (int j = 0; j < m; j++) {
+                int y = first + j;
+                byte[] s = y < 0 || y >= h ? neutral : tmp;
+                int so = y < 0 || y >= h ? 0 : y * w, go = j * w;
+                if (j % n == 0) {
+                    System.arraycopy(s, so, g, go, w);
+                } else {
+                    for (int x = 0; x < w; x++) g[go + x] = pick(g[go - w + x], s[so + x], max);
+                }
+            }
+            for (int j = m - 1; j >= 0; j--) {
+                int y = first + j;
+                byte[] s = y < 0 || y >= h ? neutral : tmp;
+                int so = y < 0 || y >= h ? 0 : y * w, ho = j * w;
+                if (j % n == n - 1 || j == m - 1) {
+                    System.arraycopy(s, so, hs, ho, w);
+                } else {
+                    for (int x = 0; x < w; x++) hs[ho + x] = pick(hs[ho + w + x], s[so + x], max);
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                int a = (y - ry - first) * w, b = (y + ry - first) * w, o = y * w;
+                for (int x = 0; x < w; x++) dst[o + x] = pick(hs[a + x], g[b + x], max);
+            }
+        });
+    }
+
+    // Mínimos de ventana n sobre line[0..m): g = prefijo por bloques, hs = sufijo por bloques;
+    // la ventana que empieza en j es min(hs[j], g[j + n - 1]).
+    private static void minLine(int[] line, int[] g, int[] hs, int m, int n) {
+        for (int j = 0; j < m; j++) g[j] = j % n == 0 ? line[j] : Math.min(g[j - 1], line[j]);
+        for (int j = m - 1; j >= 0; j--) hs[j] = (j % n == n - 1 || j == m - 1) ? line[j] : Math.min(hs[j + 1], line[j]);
+    }
+
+    // Mínimo (o máximo) de dos bytes sin signo.
+    private static byte pick(byte a, byte b, boolean max) {
+        int x = a & 0xFF, y = b & 0xFF;
+        return (byte) (max ? Math.max(x, y) : Math.min(x, y));
+    }
+
+    // --- Esqueleto (Zhang-Suen) ---
+
+    /**
+     * Adelgazamiento de Zhang-Suen hasta un esqueleto de un pixel de ancho. Cada subiteración solo
+     * vuelve a evaluar los pixeles cuyo vecindario cambió desde su última evaluación; el resultado
+     * es el mismo que recorrer la imagen completa en cada pasada.
+     */
+    public static BinaryImage skeletonize(BinaryImage src) {
+        return skeletonize(src, TileScheduler.SEQUENTIAL);
+    }
+
+    /**
+     * Igual, comprobando la cancelación de exec tras cada subiteración; el avance es la fracción del
+     * primer plano ya eliminada (una cota: el esqueleto nunca se elimina).
+     */
+    public static BinaryImage skeletonize(BinaryImage src, TileScheduler exec) {
+        BinaryImage img = src.copy();
+        int foreground = (int) Math.min(Integer.MAX_VALUE, img.count());
+        int removed = 0;
+        int w = img.getWidth(), h = img.getHeight();
+        IntList[] pending = {new IntList(), new IntList()};
+        BinaryImage[] queued = {new BinaryImage(w, h), new BinaryImage(w, h)};
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                if (img.get(x, y) && neighbours(img, x, y) != 0xFF) {
+                    for (int s = 0; s < 2; s++) enqueue(pending[s], queued[s], x, y, w);
+                }
+            }
+        }
+        IntList delete = new IntList();
+        while (pending[0].size > 0 || pending[1].size > 0) {
+            for (int s = 0; s < 2; s++) {
+                IntList list = pending[s];
+                pending[s] = new IntList();
+                delete.size = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int p = list.data[i], x = p % w, y = p / w;
+                    queued[s].set(x, y, false);
+                    if (img.get(x, y) && DELETABLE[s][neighbours(img, x, y)]) delete.add(p);
+                }
+                for (int i = 0; i < delete.size; i++) {
+                    int p = delete.data[i];
+                    img.set(p % w, p / w, false);
+                }
+                removed += delete.size;
+                exec.checkpoint(removed, foreground);
+                for (int i = 0; i < delete.size; i++) {
+                    int p = delete.data[i], px = p % w, py = p / w;
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            int x = px + dx, y = py + dy;
+                            if (x < 0 || y < 0 || x >= w || y >= h || !img.get(x, y)) continue;
+                            for (int t = 0; t < 2; t++) enqueue(pending[t], queued[t], x, y, w);
+                        }
+                    }
+                }
+            }
+        }
+        return img;
+    }
+
+    // Vecinos P2..P9 (norte y en sentido horario) como bits 0..7; fuera de la imagen = fondo.
+    private static int neighbours(BinaryImage img, int x, int y) {
+        int w = img.getWidth(), h = img.getHeight(), m = 0;
+        for (int k = 0; k < 8; k++) {
+            int nx = x + DX[k], ny = y + DY[k];
+            if (nx >= 0 && ny >= 0 && nx < w && ny < h && img.get(nx, ny)) m |= 1 << k;
+        }
+        return m;
+    }
+
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    // Condiciones de Zhang-Suen por configuración de vecinos, para cada subiteración.
+    private static final boolean[][] DELETABLE = new boolean[2][256];
+
+    static {
+        for (int m = 0; m < 256; m++) {
+            int b = Integer.bitCount(m), a = 0;
+            for (int k = 0; k < 8; k++) {
+                if ((m >> k & 1) == 0 && (m >> ((k + 1) & 7) & 1) == 1) a++;
+            }
+            boolean p2 = (m & 1) != 0, p4 = (m & 4) != 0, p6 = (m & 16) != 0, p8 = (m & 64) != 0;
+            boolean base = b >= 2 && b <= 6 && a == 1;
+            DELETABLE[0][m] = base && !(p2 && p4 && p6) && !(p4 && p6 && p8);
+            DELETABLE[1][m] = base && !(p2 && p4 && p8) && !(p2 && p6 && p8);
+        }
+    }
+
+    private static void enqueue(IntList list, BinaryImage queued, int x, int y, int w) {
+        if (queued.get(x, y)) return;
+        queued.set(x, y, true);
+        list.add(y * w + x);
+    }
+
+    private static final class IntList {
+        int[] data = new int[64];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+
+    // --- Helpers ---
+
+    private static void checkRadii(int rx, int ry) {
+        if (rx < 0 || ry < 0) throw new IllegalArgumentException("Radios negativos: " + rx + ", " + ry);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,413 @@
+import java.awt.image.BufferedImage;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Métricas de las operaciones de ImageOperations y de la E/S de ImageFileService.
+ *
+ * Cada llamada envuelta con time() registra en su operación: latencia en un histograma log-lineal
+ * sin bloqueos (64 subcubetas por potencia de 2, error relativo < 1.6 %, como HdrHistogram),
+ * pixeles procesados, bytes reservados por el hilo que llama (ThreadMXBean) y tamaño y tipo de la
+ * imagen de entrada. Las llamadas anidadas en el mismo hilo cuentan solo en la más externa: un
+ * binarize que llama a applyPointOp aparece una vez, como binarize. La memoria que reservan las
+ * bandas en los hilos del TileScheduler no se ve desde el hilo que llama.
+ *
+ * Salidas: summary() (tabla de texto), toJson(), un MBean por operación en el dominio "pdi"
+ * (más pdi:type=Metricas con el resumen y reset) y un volcado periódico a stderr.
+ *
+ * Configuración: -Dpdi.metrics.enabled=false, -Dpdi.metrics.jmx=false,
+ * -Dpdi.metrics.dump=<segundos> y -Dpdi.metrics.format=json|text.
+ */
+public final class OperationMetrics {
+
+    /** Cuerpo de una llamada medida. */
+    public interface Body<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /** Atributos JMX de una operación (tiempos en milisegundos). */
+    public interface StatsMBean {
+        long getCount();
+        long getErrors();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        double getMegapixelsPerSecond();
+        long getAllocatedBytes();
+        String getInputs();
+    }
+
+    /** Atributos JMX globales. */
+    public interface MetricsMBean {
+        boolean isEnabled();
+        void setEnabled(boolean enabled);
+        String getSummary();
+        String getJson();
+        void reset();
+    }
+
+    // --- Histograma ---
+
+    /** Histograma log-lineal de nanosegundos: exacto hasta 63 y con 64 cubetas por potencia de 2. */
+    static final class Histogram {
+        private static final int SUB_BITS = 6, SUB = 1 << SUB_BITS;
+        /** Valores mayores (más de 4.8 h) se cuentan en la última cubeta. */
+        private static final int MAX_EXP = 43;
+        private static final long MAX_VALUE = (1L << (MAX_EXP + 1)) - 1;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((MAX_EXP - SUB_BITS + 2) * SUB);
+        private final LongAdder count = new LongAdder(), sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        void record(long v) {
+            if (v < 0) v = 0;
+            else if (v > MAX_VALUE) v = MAX_VALUE;
+            buckets.incrementAndGet(index(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - SUB_BITS + 1) * SUB + (int) (v >>> (exp - SUB_BITS)) - SUB;
+        }
+
+        // Centro del intervalo de valores de la cubeta i.
+        static long value(int i) {
+            if (i < SUB) return i;
+            int shift = i / SUB - 1;
+            long lo = (long) (SUB + i % SUB) << shift;
+            return lo + ((1L << shift) >> 1);
+        }
+
+        long count() { return count.sum(); }
+        long sum() { return sum.sum(); }
+        long max() { return max.get(); }
+
+        /** Valor por debajo del cual queda la fracción q de las muestras (0 si no hay). */
+        long percentile(double q) {
+            long total = 0;
+            long[] snap = new long[buckets.length()];
+            for (int i = 0; i < snap.length; i++) total += snap[i] = buckets.get(i);
+            if (total == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(q * total)), acc = 0;
+            for (int i = 0; i < snap.length; i++) {
+                acc += snap[i];
+                if (acc >= target) return Math.min(value(i), max());
+            }
+            return max();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    // --- Estadísticas por operación ---
+
+    /** Máximo de combinaciones de tamaño y tipo distintas que se guardan por operación. */
+    static final int MAX_INPUTS = 16;
+    private static final String OTHER_INPUTS = "otras";
+
+    public static final class Stats implements StatsMBean {
+        private final String name;
+        private final Histogram latency = new Histogram();
+        private final LongAdder errors = new LongAdder(), pixels = new LongAdder(), allocated = new LongAdder();
+        private final Map<String, LongAdder> inputs = new ConcurrentHashMap<>();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        void record(long nanos, boolean ok, BufferedImage img, long bytes) {
+            if (!ok) {
+                errors.increment();
+                return;
+            }
+            latency.record(nanos);
+            if (bytes > 0) allocated.add(bytes);
+            if (img != null) {
+                pixels.add((long) img.getWidth() * img.getHeight());
+                String key = img.getWidth() + "x" + img.getHeight() + " " + typeName(img.getType());
+                LongAdder n = inputs.get(key);
+                if (n == null) {
+                    n = inputs.size() < MAX_INPUTS ? inputs.computeIfAbsent(key, k -> new LongAdder())
+                            : inputs.computeIfAbsent(OTHER_INPUTS, k -> new LongAdder());
+                }
+                n.increment();
+            }
+        }
+
+        @Override public long getCount() { return latency.count(); }
+        @Override public long getErrors() { return errors.sum(); }
+        @Override public double getMaxMillis() { return latency.max() / 1e6; }
+        @Override public long getAllocatedBytes() { return allocated.sum(); }
+        @Override public double getP50Millis() { return latency.percentile(0.50) / 1e6; }
+        @Override public double getP90Millis() { return latency.percentile(0.90) / 1e6; }
+        @Override public double getP99Millis() { return latency.percentile(0.99) / 1e6; }
+
+        @Override
+        public double getMeanMillis() {
+            long n = latency.count();
+            return n == 0 ? 0 : latency.sum() / 1e6 / n;
+        }
+
+        /** Pixeles de entrada por segundo de ejecución de la operación. */
+        @Override
+        public double getMegapixelsPerSecond() {
+            long ns = latency.sum();
+            return ns == 0 ? 0 : pixels.sum() * 1e3 / ns;
+        }
+
+        /** "4000x3000 INT_RGB=12, 512x384 BYTE_GRAY=3", de más a menos frecuente. */
+        @Override
+        public String getInputs() {
+            List<Map.Entry<String, LongAdder>> list = new ArrayList<>(inputs.entrySet());
+            list.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, LongAdder> e : list) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(e.getKey()).append('=').append(e.getValue().sum());
+            }
+            return sb.toString();
+        }
+
+        void reset() {
+            latency.reset();
+            errors.reset();
+            pixels.reset();
+            allocated.reset();
+            inputs.clear();
+        }
+    }
+
+    // --- Estado global ---
+
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+    // Profundidad de llamadas medidas en el hilo: solo se registra la más externa.
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+    private static final boolean JMX = Boolean.parseBoolean(System.getProperty("pdi.metrics.jmx", "true"));
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("pdi.metrics.enabled", "true"));
+    private static volatile MBeanServer server;
+    private static ScheduledExecutorService dumper;
+
+    static {
+        long period = Long.getLong("pdi.metrics.dump", 0L);
+        if (period > 0) {
+            startDump(period, "json".equalsIgnoreCase(System.getProperty("pdi.metrics.format")), System.err);
+        }
+    }
+
+    private OperationMetrics() {}
+
+    // --- Medición ---
+
+    /**
+     * Ejecuta body y lo registra en op. in es la imagen de entrada; si es null se toma el resultado
+     * cuando es una imagen (lecturas). Las excepciones se cuentan como errores y se propagan.
+     */
+    public static <T, E extends Exception> T time(String op, BufferedImage in, Body<T, E> body) throws E {
+        if (!enabled) return body.run();
+        int[] depth = DEPTH.get();
+        if (depth[0] > 0) return body.run();
+        depth[0] = 1;
+        long bytes0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        T out = null;
+        boolean ok = false;
+        try {
+            out = body.run();
+            ok = true;
+            return out;
+        } finally {
+            long nanos = System.nanoTime() - t0;
+            depth[0] = 0;
+            BufferedImage shape = in != null ? in : out instanceof BufferedImage ? (BufferedImage) out : null;
+            stats(op).record(nanos, ok, shape, bytes0 < 0 ? 0 : allocatedBytes() - bytes0);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Estadísticas de op (se crean, y se registran en JMX, con la primera llamada). */
+    public static Stats stats(String op) {
+        Stats s = STATS.get(op);
+        if (s != null) return s;
+        s = STATS.computeIfAbsent(op, Stats::new);
+        if (JMX) register(s);
+        return s;
+    }
+
+    /** Operaciones con alguna llamada, por nombre. */
+    public static Map<String, Stats> snapshot() {
+        return new TreeMap<>(STATS);
+    }
+
+    public static void reset() {
+        for (Stats s : STATS.values()) s.reset();
+    }
+
+    // Bytes reservados por el hilo actual desde que arrancó; -1 si la JVM no lo mide.
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            java.lang.management.ThreadMXBean b = ManagementFactory.getThreadMXBean();
+            if (b instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) b;
+                if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) return t;
+            }
+        } catch (RuntimeException | LinkageError ex) {
+            // Sin el módulo jdk.management: no se mide la memoria.
+        }
+        return null;
+    }
+
+    // --- JMX ---
+
+    private static void register(Stats s) {
+        try {
+            MBeanServer mbs = server();
+            ObjectName name = new ObjectName("pdi:type=Operacion,name=" + ObjectName.quote(s.name));
+            if (!mbs.isRegistered(name)) mbs.registerMBean(new StandardMBean(s, StatsMBean.class), name);
+        } catch (JMException | RuntimeException ex) {
+            // Registro doble entre hilos o sin servidor de MBeans: las métricas siguen en memoria.
+        }
+    }
+
+    private static MBeanServer server() throws JMException {
+        MBeanServer mbs = server;
+        if (mbs != null) return mbs;
+        synchronized (OperationMetrics.class) {
+            if (server == null) {
+                mbs = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("pdi:type=Metricas");
+                if (!mbs.isRegistered(name)) mbs.registerMBean(new StandardMBean(new Global(), MetricsMBean.class), name);
+                server = mbs;
+            }
+            return server;
+        }
+    }
+
+    private static final class Global implements MetricsMBean {
+        @Override public boolean isEnabled() { return OperationMetrics.isEnabled(); }
+        @Override public void setEnabled(boolean on) { OperationMetrics.setEnabled(on); }
+        @Override public String getSummary() { return summary(); }
+        @Override public String getJson() { return toJson(); }
+        @Override public void reset() { OperationMetrics.reset(); }
+    }
+
+    // --- Volcado ---
+
+    /** Escribe summary() (o toJson()) en out cada periodSeconds desde un hilo demonio "metricas". */
+    public static synchronized void startDump(long periodSeconds, boolean json, PrintStream out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> out.println(json ? toJson() : summary()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /** Tabla con una fila por operación; tiempos en ms. */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%-24s %8s %6s %9s %9s %9s %9s %9s %8s %9s  %s%n", "operación", "llamadas", "error",
+                "media", "p50", "p90", "p99", "máx", "MP/s", "MB res.", "entradas"));
+        for (Stats s : snapshot().values()) {
+            sb.append(String.format(Locale.ROOT, "%-24s %8d %6d %9.2f %9.2f %9.2f %9.2f %9.2f %8.1f %9.1f  %s%n",
+                    s.name, s.getCount(), s.getErrors(), s.getMeanMillis(), s.getP50Millis(), s.getP90Millis(),
+                    s.getP99Millis(), s.getMaxMillis(), s.getMegapixelsPerSecond(), s.getAllocatedBytes() / 1e6,
+                    s.getInputs()));
+        }
+        return sb.toString();
+    }
+
+    /** {"operaciones":[{"nombre":..., "llamadas":..., "p50Ms":..., ...}]} */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\"operaciones\":[");
+        boolean first = true;
+        for (Stats s : snapshot().values()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(String.format(Locale.ROOT, "{\"nombre\":%s,\"llamadas\":%d,\"errores\":%d,\"mediaMs\":%.3f,"
+                            + "\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f,\"mpPorSegundo\":%.2f,"
+                            + "\"bytesReservados\":%d,\"entradas\":%s}",
+                    quote(s.name), s.getCount(), s.getErrors(), s.getMeanMillis(), s.getP50Millis(),
+                    s.getP90Millis(), s.getP99Millis(), s.getMaxMillis(), s.getMegapixelsPerSecond(),
+                    s.getAllocatedBytes(), quote(s.getInputs())));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    static String typeName(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB: return "INT_RGB";
+            case BufferedImage.TYPE_INT_ARGB: return "INT_ARGB";
+            case BufferedImage.TYPE_INT_ARGB_PRE: return "INT_ARGB_PRE";
+            case BufferedImage.TYPE_INT_BGR: return "INT_BGR";
+            case BufferedImage.TYPE_3BYTE_BGR: return "3BYTE_BGR";
+            case BufferedImage.TYPE_4BYTE_ABGR: return "4BYTE_ABGR";
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE: return "4BYTE_ABGR_PRE";
+            case BufferedImage.TYPE_BYTE_GRAY: return "BYTE_GRAY";
+            case BufferedImage.TYPE_USHORT_GRAY: return "USHORT_GRAY";
+            case BufferedImage.TYPE_BYTE_BINARY: return "BYTE_BINARY";
+            case BufferedImage.TYPE_BYTE_INDEXED: return "BYTE_INDEXED";
+            default: return "tipo " + type;
+        }
+    }
+}
\ No newline at end of file
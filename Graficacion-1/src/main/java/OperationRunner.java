@@ -0,0 +1,160 @@
+import java.awt.EventQueue;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecuta las operaciones de la interfaz fuera del hilo de eventos (EDT).
+ *
+ * Cada envío entrega primero una vista previa (la operación sobre una reducción de la imagen a
+ * PREVIEW_SIZE de lado) y después el resultado completo; todos los avisos al Listener llegan en el
+ * EDT. Un envío nuevo sustituye al anterior: el anterior se cancela de forma cooperativa (su
+ * TileScheduler lanza CancellationException en la siguiente banda) y ya no entrega nada.
+ *
+ * Las operaciones corren en un único hilo coordinador y reparten sus bandas en el pool del
+ * TileScheduler recibido, así que solo hay un trabajo en curso a la vez.
+ */
+public class OperationRunner {
+
+    /** Lado máximo de la imagen sobre la que se calcula la vista previa. */
+    public static final int PREVIEW_SIZE = 512;
+
+    /** Con menos pixeles no se hace vista previa: el resultado completo llega casi igual de rápido. */
+    static final long PREVIEW_MIN_PIXELS = 4L * PREVIEW_SIZE * PREVIEW_SIZE;
+
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;
+
+    /** Avisos de un trabajo; siempre en el EDT y nunca después de cancelarlo. */
+    public interface Listener {
+        /** scale: tamaño de la imagen completa respecto a la reducida (>= 1). */
+        void preview(BufferedImage preview, double scale);
+
+        /** fase: "vista previa" o "resultado"; percent: avance de la pasada en curso (0..100). */
+        void progress(String phase, int percent, long elapsedNanos);
+
+        void done(BufferedImage result, long elapsedNanos);
+
+        void failed(Throwable error);
+
+        /** Solo se avisa si el trabajo se canceló con cancel() y no porque otro lo sustituyera. */
+        void cancelled();
+    }
+
+    /** Un envío. Implementa el Monitor de su TileScheduler. */
+    public final class Job implements TileScheduler.Monitor {
+        private final String name;
+        private final Listener listener;
+        private volatile boolean cancelled, superseded, finished;
+        private boolean notified; // solo en el EDT
+        private volatile String phase = "";
+        private volatile long started, lastProgress;
+
+        private Job(String name, Listener listener) {
+            this.name = name;
+            this.listener = listener;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void progress(int done, int total) {
+            long now = System.nanoTime();
+            if (now - lastProgress < PROGRESS_INTERVAL_NANOS) return;
+            lastProgress = now;
+            int percent = (int) (100L * done / total);
+            String p = phase;
+            deliver(() -> listener.progress(p, percent, now - started));
+        }
+
+        private void run(BufferedImage src, ImagePipeline.Stage op) {
+            started = System.nanoTime();
+            TileScheduler exec = scheduler.withMonitor(this);
+            try {
+                if (cancelled) throw new CancellationException();
+                if ((long) src.getWidth() * src.getHeight() > PREVIEW_MIN_PIXELS) {
+                    phase = "vista previa";
+                    BufferedImage small = Resampler.thumbnail(src, PREVIEW_SIZE, Resampler.Filter.BILINEAR, exec);
+                    BufferedImage preview = op.apply(small, exec);
+                    double scale = (double) src.getWidth() / small.getWidth();
+                    deliver(() -> listener.preview(preview, scale));
+                }
+                phase = "resultado";
+                BufferedImage result = op.apply(src, exec);
+                long elapsed = System.nanoTime() - started;
+                deliver(() -> listener.done(result, elapsed));
+            } catch (CancellationException ex) {
+                deliver(() -> { });
+            } catch (RuntimeException | OutOfMemoryError ex) {
+                deliver(() -> listener.failed(ex));
+            } finally {
+                finished = true;
+            }
+        }
+
+        // Entrega en el EDT salvo que el trabajo se haya cancelado entretanto.
+        private void deliver(Runnable r) {
+            EventQueue.invokeLater(() -> {
+                if (!cancelled) {
+                    r.run();
+                } else if (!superseded && !notified) {
+                    notified = true;
+                    listener.cancelled();
+                }
+            });
+        }
+    }
+
+    private final TileScheduler scheduler;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "operaciones");
+        t.setDaemon(true);
+        return t;
+    });
+    private Job current;
+
+    public OperationRunner(TileScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /** Planificador sin observar, para reproducir operaciones fuera de un trabajo (deshacer/rehacer). */
+    public TileScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** Lanza op sobre src y cancela el trabajo anterior si seguía en curso. */
+    public synchronized Job submit(String name, BufferedImage src, ImagePipeline.Stage op, Listener listener) {
+        if (current != null && !current.finished) {
+            current.superseded = true;
+            current.cancel();
+        }
+        Job job = new Job(name, listener);
+        current = job;
+        worker.execute(() -> job.run(src, op));
+        return job;
+    }
+
+    /** Cancela el trabajo en curso, si lo hay. */
+    public synchronized void cancel() {
+        if (current != null && !current.finished) current.cancel();
+    }
+
+    public synchronized boolean isBusy() {
+        return current != null && !current.finished;
+    }
+}
\ No newline at end of file
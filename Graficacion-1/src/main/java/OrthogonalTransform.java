@@ -0,0 +1,291 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Rotaciones múltiplos de 90° y espejos como permutaciones exactas de pixeles (sin Graphics2D
+ * ni interpolación). Las 8 transformaciones forman un grupo: se componen de forma perezosa y una
+ * cadena como rotar + espejo + rotar se aplica en una sola pasada sobre el raster.
+ *
+ * Internamente se guarda la matriz (con signo) que lleva coordenadas de destino a origen, con el
+ * origen en el centro de la imagen; componer es multiplicar matrices.
+ */
+public final class OrthogonalTransform {
+
+    public static final OrthogonalTransform IDENTITY = new OrthogonalTransform(1, 0, 0, 1);
+    public static final OrthogonalTransform FLIP_HORIZONTAL = new OrthogonalTransform(-1, 0, 0, 1);
+    public static final OrthogonalTransform FLIP_VERTICAL = new OrthogonalTransform(1, 0, 0, -1);
+    public static final OrthogonalTransform ROTATE_180 = new OrthogonalTransform(-1, 0, 0, -1);
+    public static final OrthogonalTransform ROTATE_90_CW = new OrthogonalTransform(0, 1, -1, 0);
+    public static final OrthogonalTransform ROTATE_90_CCW = new OrthogonalTransform(0, -1, 1, 0);
+    public static final OrthogonalTransform TRANSPOSE = new OrthogonalTransform(0, 1, 1, 0);
+
+    /** Lado de los bloques de la transposición (pixeles), para que origen y destino quepan en caché. */
+    private static final int BLOCK = 64;
+
+    // origen = M * destino (coordenadas centradas)
+    private final int m00, m01, m10, m11;
+
+    private OrthogonalTransform(int m00, int m01, int m10, int m11) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m10 = m10;
+        this.m11 = m11;
+    }
+
+    // --- Composición ---
+
+    /** Transformación equivalente a aplicar this y después next. */
+    public OrthogonalTransform then(OrthogonalTransform next) {
+        // origen = M_this * (M_next * destino)
+        return new OrthogonalTransform(
+                m00 * next.m00 + m01 * next.m10, m00 * next.m01 + m01 * next.m11,
+                m10 * next.m00 + m11 * next.m10, m10 * next.m01 + m11 * next.m11);
+    }
+
+    public OrthogonalTransform rotate90CW() { return then(ROTATE_90_CW); }
+    public OrthogonalTransform rotate90CCW() { return then(ROTATE_90_CCW); }
+    public OrthogonalTransform rotate180() { return then(ROTATE_180); }
+    public OrthogonalTransform flipHorizontal() { return then(FLIP_HORIZONTAL); }
+    public OrthogonalTransform flipVertical() { return then(FLIP_VERTICAL); }
+
+    /** true si intercambia ancho y alto. */
+    public boolean swapsAxes() {
+        return m00 == 0;
+    }
+
+    public boolean isIdentity() {
+        return m00 == 1 && m11 == 1;
+    }
+
+    /** Se puede aplicar en sitio (sin imagen nueva): espejos, 180° e identidad. */
+    public boolean isInPlaceCapable() {
+        return !swapsAxes();
+    }
+
+    // Forma normalizada: (a, b) = swap ? (v, u) : (u, v); x = fx ? W-1-a : a; y = fy ? H-1-b : b
+    private boolean flipX() { return (swapsAxes() ? m01 : m00) < 0; }
+    private boolean flipY() { return (swapsAxes() ? m10 : m11) < 0; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OrthogonalTransform)) return false;
+        OrthogonalTransform t = (OrthogonalTransform) o;
+        return m00 == t.m00 && m01 == t.m01 && m10 == t.m10 && m11 == t.m11;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((m00 + 1) * 27 + (m01 + 1) * 9 + (m10 + 1) * 3 + (m11 + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "OrthogonalTransform[swap=" + swapsAxes() + ", flipX=" + flipX() + ", flipY=" + flipY() + "]";
+    }
+
+    // --- Aplicación ---
+
+    public BufferedImage apply(BufferedImage src) {
+        return apply(src, TileScheduler.SEQUENTIAL);
+    }
+
+    /** Nueva imagen transformada, con el mismo tipo/ColorModel que src; filas de destino en bandas sobre exec. */
+    public BufferedImage apply(BufferedImage src, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        boolean swap = swapsAxes();
+        BufferedImage out = createCompatible(src, swap ? h : w, swap ? w : h);
+        Layout s = Layout.of(src), d = Layout.of(out);
+        if (s == null || d == null || s.pixelStride != d.pixelStride || (s.ints == null) != (d.ints == null)) {
+            exec.forEachBand(0, out.getHeight(), (v0, v1) -> permuteSamples(src.getRaster(), out.getRaster(), v0, v1));
+        } else {
+            exec.forEachBand(0, out.getHeight(), (v0, v1) -> permute(s, d, w, h, v0, v1));
+        }
+        StatisticsCache.shared().permuted(src, out);
+        return out;
+    }
+
+    /** Aplica la transformación sobre img sin reservar memoria; solo para espejos y 180°. */
+    public void applyInPlace(BufferedImage img) {
+        if (swapsAxes()) throw new IllegalArgumentException("Una rotación de 90° cambia las dimensiones; use apply()");
+        if (isIdentity()) return;
+        Layout l = Layout.of(img);
+        int w = img.getWidth(), h = img.getHeight();
+        boolean fx = flipX(), fy = flipY();
+        if (l == null) {
+            swapSamplesInPlace(img.getRaster(), fx, fy);
+            return;
+        }
+        // Sin intercambio de ejes la transformación es una involución: basta intercambiar cada par una vez.
+        int rows = fy ? (h + 1) / 2 : h;
+        for (int v = 0; v < rows; v++) {
+            int y = fy ? h - 1 - v : v;
+            int cols = (fx && y == v) ? w / 2 : w;
+            for (int u = 0; u < cols; u++) {
+                int x = fx ? w - 1 - u : u;
+                if (y == v && x == u) continue;
+                l.swap(l.offset(u, v), l.offset(x, y));
+            }
+        }
+    }
+
+    // --- Núcleos sobre arreglos ---
+
+    private void permute(Layout s, Layout d, int w, int h, int v0, int v1) {
+        boolean fx = flipX(), fy = flipY();
+        int dw = swapsAxes() ? h : w;
+        if (!swapsAxes()) {
+            for (int v = v0; v < v1; v++) {
+                int y = fy ? h - 1 - v : v;
+                if (!fx) {
+                    s.copyRun(d, s.offset(0, y), d.offset(0, v), dw);
+                } else {
+                    int so = s.offset(w - 1, y), dOff = d.offset(0, v);
+                    for (int u = 0; u < dw; u++, so -= s.pixelStride, dOff += d.pixelStride) s.copyPixel(d, so, dOff);
+                }
+            }
+            return;
+        }
+        // Transposición por bloques: destino (u, v) <- origen (x(v), y(u)).
+        for (int bv = v0; bv < v1; bv += BLOCK) {
+            int ev = Math.min(v1, bv + BLOCK);
+            for (int bu = 0; bu < dw; bu += BLOCK) {
+                int eu = Math.min(dw, bu + BLOCK);
+                for (int v = bv; v < ev; v++) {
+                    int x = fx ? w - 1 - v : v;
+                    int dOff = d.offset(bu, v);
+                    // Recorrer u avanza una fila completa en el origen (hacia arriba si fy).
+                    int so = s.offset(x, fy ? h - 1 - bu : bu);
+                    int step = fy ? -s.scanline : s.scanline;
+                    if (s.ints != null) {
+                        int[] si = s.ints, di = d.ints;
+                        for (int u = bu; u < eu; u++, so += step) di[dOff++] = si[so];
+                    } else {
+                        for (int u = bu; u < eu; u++, so += step, dOff += d.pixelStride) s.copyPixel(d, so, dOff);
+                    }
+                }
+            }
+        }
+    }
+
+    // Ruta genérica (indexados de bits, 16 bits, modelos no estándar): muestras por pixel.
+    private void permuteSamples(WritableRaster src, WritableRaster dst, int v0, int v1) {
+        int w = src.getWidth(), h = src.getHeight(), dw = dst.getWidth();
+        boolean fx = flipX(), fy = flipY(), swap = swapsAxes();
+        Object pixel = null;
+        for (int v = v0; v < v1; v++) {
+            for (int u = 0; u < dw; u++) {
+                int a = swap ? v : u, b = swap ? u : v;
+                pixel = src.getDataElements(fx ? w - 1 - a : a, fy ? h - 1 - b : b, pixel);
+                dst.setDataElements(u, v, pixel);
+            }
+        }
+    }
+
+    private void swapSamplesInPlace(WritableRaster r, boolean fx, boolean fy) {
+        int w = r.getWidth(), h = r.getHeight();
+        Object p = null, q = null;
+        for (int v = 0; v < (fy ? (h + 1) / 2 : h); v++) {
+            int y = fy ? h - 1 - v : v;
+            for (int u = 0; u < ((fx && y == v) ? w / 2 : w); u++) {
+                int x = fx ? w - 1 - u : u;
+                if (y == v && x == u) continue;
+                p = r.getDataElements(u, v, p);
+                q = r.getDataElements(x, y, q);
+                r.setDataElements(u, v, q);
+                r.setDataElements(x, y, p);
+            }
+        }
+    }
+
+    private static BufferedImage createCompatible(BufferedImage src, int w, int h) {
+        int type = src.getType();
+        ColorModel cm = src.getColorModel();
+        if (type != 0 && !(cm instanceof IndexColorModel)) return new BufferedImage(w, h, type);
+        // Indexados y personalizados: misma paleta / ColorModel para que la permutación sea exacta.
+        WritableRaster r = src.getRaster().createCompatibleWritableRaster(w, h);
+        return new BufferedImage(cm, r, src.isAlphaPremultiplied(), null);
+    }
+
+    // --- Acceso lineal al DataBuffer: un pixel = pixelStride elementos consecutivos ---
+
+    private static final class Layout {
+        final int[] ints;
+        final byte[] bytes;
+        final int base, scanline, pixelStride;
+
+        private Layout(int[] ints, byte[] bytes, int base, int scanline, int pixelStride) {
+            this.ints = ints;
+            this.bytes = bytes;
+            this.base = base;
+            this.scanline = scanline;
+            this.pixelStride = pixelStride;
+        }
+
+        static Layout of(BufferedImage img) {
+            WritableRaster r = img.getRaster();
+            SampleModel sm = r.getSampleModel();
+            DataBuffer db = r.getDataBuffer();
+            if (db.getNumBanks() != 1) return null;
+            int tx = r.getSampleModelTranslateX(), ty = r.getSampleModelTranslateY();
+            if (sm instanceof SinglePixelPackedSampleModel && db instanceof DataBufferInt) {
+                int stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+                return new Layout(((DataBufferInt) db).getData(), null, db.getOffset() - ty * stride - tx, stride, 1);
+            }
+            if (sm instanceof ComponentSampleModel && db instanceof DataBufferByte) {
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                int ps = csm.getPixelStride();
+                for (int bo : csm.getBandOffsets()) {
+                    if (bo < 0 || bo >= ps) return null;
+                }
+                for (int bank : csm.getBankIndices()) {
+                    if (bank != 0) return null;
+                }
+                int stride = csm.getScanlineStride();
+                return new Layout(null, ((DataBufferByte) db).getData(), db.getOffset() - ty * stride - tx * ps, stride, ps);
+            }
+            return null;
+        }
+
+        int offset(int x, int y) {
+            return base + y * scanline + x * pixelStride;
+        }
+
+        void copyPixel(Layout d, int so, int dOff) {
+            if (ints != null) {
+                d.ints[dOff] = ints[so];
+            } else {
+                for (int i = 0; i < pixelStride; i++) d.bytes[dOff + i] = bytes[so + i];
+            }
+        }
+
+        void copyRun(Layout d, int so, int dOff, int pixels) {
+            if (ints != null) {
+                System.arraycopy(ints, so, d.ints, dOff, pixels);
+            } else {
+                System.arraycopy(bytes, so, d.bytes, dOff, pixels * pixelStride);
+            }
+        }
+
+        void swap(int a, int b) {
+            if (ints != null) {
+                int t = ints[a];
+                ints[a] = ints[b];
+                ints[b] = t;
+            } else {
+                for (int i = 0; i < pixelStride; i++) {
+                    byte t = bytes[a + i];
+                    bytes[a + i] = bytes[b + i];
+                    bytes[b + i] = t;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Acceso directo por filas a los arreglos de respaldo (DataBufferInt / DataBufferByte)
+ * de un BufferedImage, evitando la conversión de ColorModel de getRGB pixel a pixel.
+ * En BYTE_GRAY el byte crudo es el nivel de gris (como en PointOp y al normalizar): se lee
+ * replicado en R, G y B y se escribe la luminancia de cada pixel, sin la conversión a gris lineal
+ * de getRGB/setRGB.
+ * Los tipos sin ruta directa se leen con getRGB por fila completa (y se cuentan como
+ * PixelStore.Conversion.FALLBACK: tras normalizar al cargar no debería quedar ninguno).
+ */
+final class PixelAccess {
+
+    private PixelAccess() {}
+
+    /** Lee n pixeles de la fila y (desde x0) como ARGB empaquetado en dst[dstOff..]. */
+    static void readRow(BufferedImage src, int x0, int y, int n, int[] dst, int dstOff) {
+        WritableRaster raster = src.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int sx = x0 - raster.getSampleModelTranslateX();
+        int sy = y - raster.getSampleModelTranslateY();
+
+        switch (src.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR: {
+                if (!(sm instanceof SinglePixelPackedSampleModel) || !(db instanceof DataBufferInt)) break;
+                int[] data = ((DataBufferInt) db).getData();
+                int p = db.getOffset() + sy * ((SinglePixelPackedSampleModel) sm).getScanlineStride() + sx;
+                int type = src.getType();
+                if (type == BufferedImage.TYPE_INT_ARGB) {
+                    System.arraycopy(data, p, dst, dstOff, n);
+                } else if (type == BufferedImage.TYPE_INT_RGB) {
+                    for (int i = 0; i < n; i++) dst[dstOff + i] = 0xFF000000 | data[p + i];
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        int v = data[p + i];
+                        dst[dstOff + i] = 0xFF000000 | ((v & 0xFF) << 16) | (v & 0xFF00) | ((v >> 16) & 0xFF);
+                    }
+                }
+                return;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) break;
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                byte[] data = ((DataBufferByte) db).getData();
+                int[] bo = csm.getBandOffsets();
+                int ps = csm.getPixelStride();
+                int p = db.getOffset() + sy * csm.getScanlineStride() + sx * ps;
+                boolean alpha = bo.length == 4;
+                for (int i = 0; i < n; i++, p += ps) {
+                    int a = alpha ? (data[p + bo[3]] & 0xFF) : 0xFF;
+                    dst[dstOff + i] = (a << 24) | ((data[p + bo[0]] & 0xFF) << 16)
+                            | ((data[p + bo[1]] & 0xFF) << 8) | (data[p + bo[2]] & 0xFF);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) break;
+                byte[] data = ((DataBufferByte) db).getData();
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                int p = db.getOffset() + sy * csm.getScanlineStride() + sx * csm.getPixelStride();
+                for (int i = 0; i < n; i++) dst[dstOff + i] = 0xFF000000 | (data[p + i] & 0xFF) * 0x010101;
+                return;
+            }
+            default:
+                break;
+        }
+        PixelStore.record(PixelStore.Conversion.FALLBACK);
+        src.getRGB(x0, y, n, 1, dst, dstOff, n);
+    }
+
+    /** Escribe n pixeles ARGB de src[srcOff..] en la fila y (desde x0); inversa de readRow. */
+    static void writeRow(BufferedImage dst, int x0, int y, int n, int[] src, int srcOff) {
+        WritableRaster raster = dst.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int sx = x0 - raster.getSampleModelTranslateX();
+        int sy = y - raster.getSampleModelTranslateY();
+
+        switch (dst.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR: {
+                if (!(sm instanceof SinglePixelPackedSampleModel) || !(db instanceof DataBufferInt)) break;
+                int[] data = ((DataBufferInt) db).getData();
+                int p = db.getOffset() + sy * ((SinglePixelPackedSampleModel) sm).getScanlineStride() + sx;
+                int type = dst.getType();
+                if (type == BufferedImage.TYPE_INT_ARGB) {
+                    System.arraycopy(src, srcOff, data, p, n);
+                } else if (type == BufferedImage.TYPE_INT_RGB) {
+                    for (int i = 0; i < n; i++) data[p + i] = src[srcOff + i] & 0xFFFFFF;
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        int v = src[srcOff + i];
+                        data[p + i] = ((v & 0xFF) << 16) | (v & 0xFF00) | ((v >> 16) & 0xFF);
+                    }
+                }
+                return;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) break;
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                byte[] data = ((DataBufferByte) db).getData();
+                int[] bo = csm.getBandOffsets();
+                int ps = csm.getPixelStride();
+                int p = db.getOffset() + sy * csm.getScanlineStride() + sx * ps;
+                boolean alpha = bo.length == 4;
+                for (int i = 0; i < n; i++, p += ps) {
+                    int v = src[srcOff + i];
+                    data[p + bo[0]] = (byte) (v >> 16);
+                    data[p + bo[1]] = (byte) (v >> 8);
+                    data[p + bo[2]] = (byte) v;
+                    if (alpha) data[p + bo[3]] = (byte) (v >>> 24);
+                }
+                return;
+            }
+            case BufferedImage.TYPE_BYTE_GRAY: {
+                if (!(sm instanceof ComponentSampleModel) || !(db instanceof DataBufferByte)) break;
+                byte[] data = ((DataBufferByte) db).getData();
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                int p = db.getOffset() + sy * csm.getScanlineStride() + sx * csm.getPixelStride();
+                for (int i = 0; i < n; i++) {
+                    int v = src[srcOff + i];
+                    data[p + i] = (byte) PointOp.luma((v >> 16) & 0xFF, (v >> 8) & 0xFF, v & 0xFF);
+                }
+                return;
+            }
+            default:
+                break;
+        }
+        PixelStore.record(PixelStore.Conversion.FALLBACK);
+        dst.setRGB(x0, y, n, 1, src, srcOff, n);
+    }
+
+    /** true si readRow/writeRow acceden directamente al arreglo (sin conversión de ColorModel). */
+    static boolean isDirect(int type) {
+        return type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_BGR || type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    /** Arreglo ARGB de una imagen TYPE_INT_ARGB recién creada (stride == ancho, sin desplazamiento). */
+    static int[] argbData(BufferedImage img) {
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+
+    /** Arreglo int de respaldo de una imagen INT_* empaquetada, o null si no tiene esa forma. */
+    static int[] intData(BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) return null;
+        DataBuffer db = raster.getDataBuffer();
+        return db instanceof DataBufferInt ? ((DataBufferInt) db).getData() : null;
+    }
+
+    /** Arreglo byte de respaldo de una imagen de componentes intercalados (BYTE_GRAY, 3BYTE_BGR...), o null. */
+    static byte[] byteData(BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel)) return null;
+        DataBuffer db = raster.getDataBuffer();
+        return db instanceof DataBufferByte ? ((DataBufferByte) db).getData() : null;
+    }
+
+    /** Índice en el arreglo de respaldo del primer elemento del pixel (0, y); vale para intData y byteData. */
+    static int rowStart(BufferedImage img, int y) {
+        WritableRaster raster = img.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        int sx = -raster.getSampleModelTranslateX(), sy = y - raster.getSampleModelTranslateY();
+        int off = raster.getDataBuffer().getOffset();
+        if (sm instanceof SinglePixelPackedSampleModel) {
+            return off + sy * ((SinglePixelPackedSampleModel) sm).getScanlineStride() + sx;
+        }
+        ComponentSampleModel csm = (ComponentSampleModel) sm;
+        return off + sy * csm.getScanlineStride() + sx * csm.getPixelStride();
+    }
+
+    /** Desplazamiento de cada banda dentro del pixel en byteData (R, G, B[, A]). */
+    static int[] bandOffsets(BufferedImage img) {
+        return ((ComponentSampleModel) img.getRaster().getSampleModel()).getBandOffsets();
+    }
+
+    static int clampIndex(int i, int n) {
+        return (i < 0) ? 0 : (i >= n ? n - 1 : i);
+    }
+}
@@ -0,0 +1,214 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Formato de pixel canónico de la aplicación.
+ *
+ * Las operaciones tienen rutas directas (PixelAccess) sobre los arreglos de respaldo de unos pocos
+ * tipos: INT_ARGB, INT_RGB, INT_BGR, 3BYTE_BGR y 4BYTE_ABGR empaquetados y BYTE_GRAY de un plano.
+ * Cualquier otra imagen (indexada, premultiplicada, personalizada, de 16 bits o de coma flotante)
+ * se convierte una sola vez al cargarla con normalize; a partir de ahí ninguna operación pasa por
+ * el ColorModel. La conversión inversa se hace solo al guardar (forWriter) y al crear los mosaicos
+ * del visor.
+ *
+ * Cada conversión se cuenta por tipo (count): LOAD, SAVE y DISPLAY son las esperadas en los bordes;
+ * FALLBACK cuenta las filas que PixelAccess tuvo que leer o escribir con getRGB/setRGB y debería
+ * quedarse en cero durante el procesamiento. DEPTH cuenta las imágenes de más de 8 bits por muestra
+ * reducidas al cargarlas; la imagen normalizada guarda la profundidad original (sourceBits) para
+ * que la interfaz lo avise.
+ */
+public final class PixelStore {
+
+    /** Dónde ocurrió una conversión de formato. */
+    public enum Conversion {
+        /** Imagen no canónica convertida al cargarla (una por imagen). */
+        LOAD,
+        /** Copia para un escritor que no acepta el formato (JPEG/BMP con alfa). */
+        SAVE,
+        /** Mosaico convertido a una imagen compatible con la pantalla. */
+        DISPLAY,
+        /** Fila leída o escrita por getRGB/setRGB en una operación: ruta lenta. */
+        FALLBACK,
+        /** Imagen de más de 8 bits por muestra reducida a 8 al cargarla (se pierde precisión). */
+        DEPTH
+    }
+
+    /** Propiedad de la imagen normalizada con los bits por muestra del original, si eran más de 8. */
+    public static final String SOURCE_BITS_PROPERTY = "pdi.bitsOrigen";
+
+    private static final LongAdder[] COUNTS = new LongAdder[Conversion.values().length];
+
+    static {
+        for (int i = 0; i < COUNTS.length; i++) COUNTS[i] = new LongAdder();
+    }
+
+    private PixelStore() {}
+
+    // --- Contadores ---
+
+    public static long count(Conversion c) {
+        return COUNTS[c.ordinal()].sum();
+    }
+
+    public static void resetCounts() {
+        for (LongAdder a : COUNTS) a.reset();
+    }
+
+    static void record(Conversion c) {
+        COUNTS[c.ordinal()].increment();
+    }
+
+    /** "conversiones: LOAD=1 SAVE=0 DISPLAY=12 FALLBACK=0" */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder("conversiones:");
+        for (Conversion c : Conversion.values()) {
+            sb.append(' ').append(c.name()).append('=').append(count(c));
+        }
+        return sb.toString();
+    }
+
+    // --- Normalización ---
+
+    /** true si todas las operaciones acceden directamente a los arreglos de img. */
+    public static boolean isCanonical(BufferedImage img) {
+        return PixelAccess.isDirect(img.getType());
+    }
+
+    public static BufferedImage normalize(BufferedImage img) {
+        return normalize(img, TileScheduler.SEQUENTIAL);
+    }
+
+    /**
+     * img sin copiar si ya es canónica; si no, una copia en BYTE_GRAY (una banda gris, o paleta
+     * de grises sin transparencia) o en INT_ARGB / INT_RGB según tenga alfa. Las muestras de más de
+     * 8 bits se reescalan a 0..255 (las de coma flotante se toman en 0..1): todas las operaciones
+     * trabajan con 8 bits por canal.
+     */
+    public static BufferedImage normalize(BufferedImage img, TileScheduler exec) {
+        if (img == null || isCanonical(img)) return img;
+        record(Conversion.LOAD);
+        BufferedImage out = convert(img, exec);
+        int bits = 0;
+        for (int s : img.getSampleModel().getSampleSize()) bits = Math.max(bits, s);
+        if (bits <= 8) return out;
+        record(Conversion.DEPTH);
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put(SOURCE_BITS_PROPERTY, bits);
+        return new BufferedImage(out.getColorModel(), out.getRaster(), false, props);
+    }
+
+    /** Bits por muestra de la imagen original si normalize los redujo; 8 en cualquier otro caso. */
+    public static int sourceBits(BufferedImage img) {
+        Object bits = img.getProperty(SOURCE_BITS_PROPERTY);
+        return bits instanceof Integer ? (Integer) bits : 8;
+    }
+
+    private static BufferedImage convert(BufferedImage img, TileScheduler exec) {
+        int w = img.getWidth(), h = img.getHeight();
+        ColorModel cm = img.getColorModel();
+        Raster raster = img.getRaster();
+
+        if (cm instanceof IndexColorModel && isGrayPalette((IndexColorModel) cm)) {
+            IndexColorModel icm = (IndexColorModel) cm;
+            byte[] lut = new byte[icm.getMapSize()];
+            icm.getGreens(lut);
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] data = PixelAccess.byteData(out);
+            exec.forEachBand(0, h, (y0, y1) -> {
+                int[] idx = new int[w];
+                for (int y = y0; y < y1; y++) {
+                    raster.getSamples(raster.getMinX(), raster.getMinY() + y, w, 1, 0, idx);
+                    for (int x = 0, o = y * w; x < w; x++) data[o + x] = lut[idx[x]];
+                }
+            });
+            return out;
+        }
+
+        if (cm.getNumComponents() == 1 && raster.getNumBands() == 1) {
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] data = PixelAccess.byteData(out);
+            int dataType = raster.getTransferType();
+            boolean real = dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE;
+            long max = (1L << raster.getSampleModel().getSampleSize(0)) - 1;
+            exec.forEachBand(0, h, (y0, y1) -> {
+                int[] si = new int[w];
+                float[] sf = new float[w];
+                for (int y = y0; y < y1; y++) {
+                    int o = y * w, ry = raster.getMinY() + y;
+                    if (real) {
+                        raster.getSamples(raster.getMinX(), ry, w, 1, 0, sf);
+                        for (int x = 0; x < w; x++) data[o + x] = (byte) ConvolutionEngine.clamp(Math.round(sf[x] * 255f));
+                    } else if (max == 255) {
+                        raster.getSamples(raster.getMinX(), ry, w, 1, 0, si);
+                        for (int x = 0; x < w; x++) data[o + x] = (byte) si[x];
+                    } else {
+                        raster.getSamples(raster.getMinX(), ry, w, 1, 0, si);
+                        for (int x = 0; x < w; x++) {
+                            data[o + x] = (byte) (((si[x] & 0xFFFFFFFFL) * 255 + max / 2) / max);
+                        }
+                    }
+                }
+            });
+            return out;
+        }
+
+        boolean alpha = cm.hasAlpha();
+        BufferedImage out = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] data = PixelAccess.intData(out);
+        exec.forEachBand(0, h, (y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                img.getRGB(0, y, w, 1, data, y * w, w);
+                if (!alpha) {
+                    for (int x = 0, o = y * w; x < w; x++) data[o + x] &= 0xFFFFFF;
+                }
+            }
+        });
+        return out;
+    }
+
+    private static boolean isGrayPalette(IndexColorModel icm) {
+        if (icm.hasAlpha()) return false;
+        for (int i = 0; i < icm.getMapSize(); i++) {
+            int r = icm.getRed(i);
+            if (r != icm.getGreen(i) || r != icm.getBlue(i)) return false;
+        }
+        return true;
+    }
+
+    // --- Salida ---
+
+    /**
+     * Imagen que el escritor de format acepta: la misma si ya vale, o una copia opaca sobre blanco
+     * (INT_RGB) para los formatos sin canal alfa (JPEG, BMP).
+     */
+    public static BufferedImage forWriter(BufferedImage img, String format) {
+        String fmt = format.toLowerCase(Locale.ROOT);
+        boolean opaqueOnly = fmt.equals("jpg") || fmt.equals("jpeg") || fmt.equals("bmp");
+        if (isCanonical(img) && !(opaqueOnly && img.getColorModel().hasAlpha())) return img;
+        record(Conversion.SAVE);
+        if (!opaqueOnly) return convert(img, TileScheduler.SEQUENTIAL);
+        BufferedImage rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, img.getWidth(), img.getHeight());
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    /** Copia independiente de img en formato canónico (sin conversión si ya lo era). */
+    public static BufferedImage copy(BufferedImage img) {
+        if (!isCanonical(img)) return normalize(img);
+        BufferedImage out = new BufferedImage(img.getWidth(), img.getHeight(), img.getType());
+        img.copyData(out.getRaster());
+        return out;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,335 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Operación puntual (cada pixel de salida depende solo del mismo pixel de entrada) expresada con
+ * tablas de consulta, para poder componer varias en una sola pasada.
+ *
+ * Toda cadena de tablas por canal y conversiones a gris se reduce a la forma
+ *   pre (tabla por canal) -> [gris -> post (tabla por canal indexada por la luminancia)]
+ * así que aplicar la composición cuesta una lectura, unas pocas consultas y una escritura por pixel.
+ * Las tablas se guardan además ya desplazadas a su posición en el ARGB empaquetado, y apply recorre
+ * directamente los arreglos de INT_ARGB/INT_RGB, 3BYTE_BGR/4BYTE_ABGR y BYTE_GRAY cuando origen y
+ * destino son del mismo tipo, de modo que el coste queda limitado por el ancho de banda de memoria.
+ * El canal alfa no se modifica. Las instancias son inmutables.
+ */
+public final class PointOp {
+
+    // Pesos Rec. 709 en punto fijo (suman 1 << 16).
+    private static final int WR = 13933, WG = 46871, WB = 4732;
+
+    public static final PointOp IDENTITY = new PointOp(identity(), identity(), identity(), false, null, null, null,
+            Collections.emptyList());
+
+    private final int[] preR, preG, preB;
+    private final boolean gray;
+    private final int[] postR, postG, postB;
+    private final List<String> names;
+    // Sin gris: p -> shiftedR[r] | shiftedG[g] | shiftedB[b]. Con gris: p -> packedPost[luma].
+    private final int[] shiftedR, shiftedG, shiftedB, packedPost;
+    // Gris -> gris si la operación da R = G = B para toda entrada gris; null si no.
+    private final byte[] grayTable;
+
+    private PointOp(int[] preR, int[] preG, int[] preB, boolean gray, int[] postR, int[] postG, int[] postB,
+                    List<String> names) {
+        this.preR = preR;
+        this.preG = preG;
+        this.preB = preB;
+        this.gray = gray;
+        this.postR = postR;
+        this.postG = postG;
+        this.postB = postB;
+        this.names = names;
+        if (gray) {
+            shiftedR = shiftedG = shiftedB = null;
+            packedPost = new int[256];
+            for (int v = 0; v < 256; v++) packedPost[v] = (postR[v] << 16) | (postG[v] << 8) | postB[v];
+        } else {
+            shiftedR = new int[256];
+            shiftedG = new int[256];
+            shiftedB = new int[256];
+            for (int v = 0; v < 256; v++) {
+                shiftedR[v] = preR[v] << 16;
+                shiftedG[v] = preG[v] << 8;
+                shiftedB[v] = preB[v];
+            }
+            packedPost = null;
+        }
+        byte[] g = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            int p = applyToPixel(v * 0x010101);
+            int r = (p >> 16) & 0xFF;
+            if (r != ((p >> 8) & 0xFF) || r != (p & 0xFF)) {
+                g = null;
+                break;
+            }
+            g[v] = (byte) r;
+        }
+        grayTable = g;
+    }
+
+    // --- Operaciones básicas ---
+
+    /** Misma tabla (256 valores en 0..255) para R, G y B. */
+    public static PointOp lut(String name, int[] table) {
+        return perChannel(name, table, table, table);
+    }
+
+    public static PointOp perChannel(String name, int[] r, int[] g, int[] b) {
+        return new PointOp(checked(r), checked(g), checked(b), false, null, null, null, List.of(name));
+    }
+
+    /** Suma delta a cada canal (con saturación). */
+    public static PointOp brightness(int delta) {
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = clamp(v + delta);
+        return lut("brillo(" + delta + ")", t);
+    }
+
+    /** Escala la distancia a 128 por factor (1 = sin cambio). */
+    public static PointOp contrast(double factor) {
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = clamp((int) Math.round((v - 128) * factor + 128));
+        return lut("contraste(" + factor + ")", t);
+    }
+
+    /** Corrección gamma: v -> 255 (v / 255)^(1 / gamma); gamma > 1 aclara los tonos medios. */
+    public static PointOp gamma(double gamma) {
+        if (!(gamma > 0)) throw new IllegalArgumentException("Gamma debe ser > 0: " + gamma);
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = clamp((int) Math.round(255 * Math.pow(v / 255.0, 1 / gamma)));
+        return lut("gamma(" + gamma + ")", t);
+    }
+
+    public static PointOp invert() {
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = 255 - v;
+        return lut("invertir", t);
+    }
+
+    /** Luminancia Rec. 709 en los tres canales. */
+    public static PointOp grayscale() {
+        return new PointOp(identity(), identity(), identity(), true, identity(), identity(), identity(),
+                List.of("gris"));
+    }
+
+    /** Blanco si la luminancia es >= t, negro si no. */
+    public static PointOp threshold(int t) {
+        int[] post = new int[256];
+        for (int v = 0; v < 256; v++) post[v] = v >= t ? 255 : 0;
+        return new PointOp(identity(), identity(), identity(), true, post, post, post, List.of("umbral(" + t + ")"));
+    }
+
+    // --- Composición ---
+
+    /** this y después next, como una sola operación. */
+    public PointOp then(PointOp next) {
+        if (next.isIdentity() && next.names.isEmpty()) return this;
+        List<String> n = new ArrayList<>(names);
+        n.addAll(next.names);
+        n = Collections.unmodifiableList(n);
+        if (!gray) {
+            int[] r = compose(preR, next.preR), g = compose(preG, next.preG), b = compose(preB, next.preB);
+            return new PointOp(r, g, b, next.gray, next.postR, next.postG, next.postB, n);
+        }
+        if (!next.gray) {
+            return new PointOp(preR, preG, preB, true,
+                    compose(postR, next.preR), compose(postG, next.preG), compose(postB, next.preB), n);
+        }
+        // Gris seguido de gris: la segunda luminancia depende solo de la primera.
+        int[] r = new int[256], g = new int[256], b = new int[256];
+        for (int y = 0; y < 256; y++) {
+            int y2 = luma(next.preR[postR[y]], next.preG[postG[y]], next.preB[postB[y]]);
+            r[y] = next.postR[y2];
+            g[y] = next.postG[y2];
+            b[y] = next.postB[y2];
+        }
+        return new PointOp(preR, preG, preB, true, r, g, b, n);
+    }
+
+    public boolean isIdentity() {
+        return !gray && isIdentity(preR) && isIdentity(preG) && isIdentity(preB);
+    }
+
+    /** Nombres de las operaciones compuestas, en orden. */
+    public List<String> getNames() {
+        return names;
+    }
+
+    // --- Aplicación ---
+
+    public int applyToPixel(int argb) {
+        int r = preR[(argb >> 16) & 0xFF], g = preG[(argb >> 8) & 0xFF], b = preB[argb & 0xFF];
+        if (gray) {
+            int y = luma(r, g, b);
+            r = postR[y];
+            g = postG[y];
+            b = postB[y];
+        }
+        return (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+    }
+
+    /** Aplica la operación a n pixeles ARGB de row[off..] en sitio. */
+    public void applyToRow(int[] row, int off, int n) {
+        applyPacked(row, off, row, off, n);
+    }
+
+    // Núcleo sobre ARGB empaquetado; src y dst pueden ser el mismo arreglo.
+    private void applyPacked(int[] src, int s, int[] dst, int d, int n) {
+        if (!gray) {
+            int[] tr = shiftedR, tg = shiftedG, tb = shiftedB;
+            for (int i = 0; i < n; i++) {
+                int p = src[s + i];
+                dst[d + i] = (p & 0xFF000000) | tr[(p >> 16) & 0xFF] | tg[(p >> 8) & 0xFF] | tb[p & 0xFF];
+            }
+            return;
+        }
+        int[] pr = preR, pg = preG, pb = preB, post = packedPost;
+        for (int i = 0; i < n; i++) {
+            int p = src[s + i];
+            dst[d + i] = (p & 0xFF000000) | post[luma(pr[(p >> 16) & 0xFF], pg[(p >> 8) & 0xFF], pb[p & 0xFF])];
+        }
+    }
+
+    /**
+     * Aplica la operación de src a dst (mismo tamaño; puede ser la misma imagen) por bandas de filas:
+     * una lectura y una escritura por pixel. En BYTE_GRAY se usan los bytes crudos como gris.
+     */
+    public void apply(BufferedImage src, BufferedImage dst, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        if (dst.getWidth() != w || dst.getHeight() != h) {
+            throw new IllegalArgumentException("Origen y destino deben tener el mismo tamaño");
+        }
+        int type = src.getType();
+        if (type == dst.getType()) {
+            if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+                int[] s = PixelAccess.intData(src), d = PixelAccess.intData(dst);
+                if (s != null && d != null) {
+                    exec.forEachBand(0, h, (y0, y1) -> {
+                        for (int y = y0; y < y1; y++) {
+                            applyPacked(s, PixelAccess.rowStart(src, y), d, PixelAccess.rowStart(dst, y), w);
+                        }
+                    });
+                    return;
+                }
+            } else if (type == BufferedImage.TYPE_BYTE_GRAY && grayTable != null) {
+                byte[] s = PixelAccess.byteData(src), d = PixelAccess.byteData(dst);
+                if (s != null && d != null) {
+                    byte[] t = grayTable;
+                    exec.forEachBand(0, h, (y0, y1) -> {
+                        for (int y = y0; y < y1; y++) {
+                            int si = PixelAccess.rowStart(src, y), di = PixelAccess.rowStart(dst, y);
+                            for (int x = 0; x < w; x++) d[di + x] = t[s[si + x] & 0xFF];
+                        }
+                    });
+                    return;
+                }
+            } else if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+                byte[] s = PixelAccess.byteData(src), d = PixelAccess.byteData(dst);
+                if (s != null && d != null) {
+                    exec.forEachBand(0, h, (y0, y1) -> {
+                        for (int y = y0; y < y1; y++) applyBytes(src, dst, s, d, y, w);
+                    });
+                    return;
+                }
+            }
+        }
+        // Tipos distintos (o BYTE_GRAY con una operación de color): ARGB por fila con PixelAccess, que
+        // en BYTE_GRAY lee el gris replicado y escribe la luminancia.
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                PixelAccess.readRow(src, 0, y, w, row, 0);
+                applyPacked(row, 0, row, 0, w);
+                PixelAccess.writeRow(dst, 0, y, w, row, 0);
+            }
+        });
+    }
+
+    // Una fila de 3BYTE_BGR / 4BYTE_ABGR, canal a canal sobre los bytes; el alfa se copia tal cual.
+    private void applyBytes(BufferedImage src, BufferedImage dst, byte[] s, byte[] d, int y, int w) {
+        int[] bo = PixelAccess.bandOffsets(src);
+        int ps = bo.length, br = bo[0], bg = bo[1], bb = bo[2];
+        int si = PixelAccess.rowStart(src, y), di = PixelAccess.rowStart(dst, y);
+        int[] pr = preR, pg = preG, pb = preB;
+        for (int x = 0; x < w; x++, si += ps, di += ps) {
+            int r = pr[s[si + br] & 0xFF], g = pg[s[si + bg] & 0xFF], b = pb[s[si + bb] & 0xFF];
+            if (gray) {
+                int l = luma(r, g, b);
+                r = postR[l];
+                g = postG[l];
+                b = postB[l];
+            }
+            d[di + br] = (byte) r;
+            d[di + bg] = (byte) g;
+            d[di + bb] = (byte) b;
+            if (ps == 4) d[di + bo[3]] = s[si + bo[3]];
+        }
+    }
+
+    /** true si apply(img, img, exec) escribe en sitio sin perder información por el tipo de img. */
+    public boolean canApplyInPlace(BufferedImage img) {
+        // Una operación de color sobre BYTE_GRAY se quedaría en su luminancia: necesita otro destino.
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) return grayTable != null;
+        return PixelAccess.isDirect(img.getType());
+    }
+
+    /** Imagen de destino para aplicar la operación a src: mismo tipo si lo admite, INT_ARGB si no. */
+    public BufferedImage createTarget(BufferedImage src) {
+        int type = canApplyInPlace(src) ? src.getType() : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(src.getWidth(), src.getHeight(), type);
+    }
+
+    /** Aplica la operación a src en una imagen nueva, o en sitio si inPlace y el tipo lo permite. */
+    public BufferedImage applyTo(BufferedImage src, boolean inPlace, TileScheduler exec) {
+        BufferedImage dst = inPlace && canApplyInPlace(src) ? src : createTarget(src);
+        apply(src, dst, exec);
+        if (dst == src) StatisticsCache.shared().invalidate(src);
+        return dst;
+    }
+
+    @Override
+    public String toString() {
+        return names.isEmpty() ? "identidad" : String.join(" -> ", names);
+    }
+
+    // --- Helpers ---
+
+    static int luma(int r, int g, int b) {
+        return (WR * r + WG * g + WB * b + (1 << 15)) >> 16;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = second[first[v]];
+        return t;
+    }
+
+    private static int[] identity() {
+        int[] t = new int[256];
+        for (int v = 0; v < 256; v++) t[v] = v;
+        return t;
+    }
+
+    private static boolean isIdentity(int[] t) {
+        for (int v = 0; v < 256; v++) {
+            if (t[v] != v) return false;
+        }
+        return true;
+    }
+
+    private static int[] checked(int[] t) {
+        if (t.length != 256) throw new IllegalArgumentException("La tabla debe tener 256 entradas");
+        int[] c = t.clone();
+        for (int v : c) {
+            if (v < 0 || v > 255) throw new IllegalArgumentException("Valor fuera de 0..255 en la tabla: " + v);
+        }
+        return c;
+    }
+
+    private static int clamp(int v) {
+        return (v < 0) ? 0 : (v > 255 ? 255 : v);
+    }
+}
\ No newline at end of file
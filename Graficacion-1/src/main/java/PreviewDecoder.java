@@ -0,0 +1,200 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodificación rápida de una versión reducida de una imagen, para vistas previas y miniaturas.
+ *
+ * Por orden de preferencia:
+ *   1. una miniatura incrustada con la misma proporción que la imagen: la EXIF de un JPEG (IFD1),
+ *      las del lector (JFIF) o una subimagen reducida de un TIFF;
+ *   2. la imagen decodificada con submuestreo (ImageReadParam.setSourceSubsampling): el lector
+ *      solo convierte una de cada paso x paso muestras, así que el coste baja con el cuadrado del paso.
+ * El resultado se normaliza (PixelStore) y se reduce con Resampler hasta maxSize si aún lo supera.
+ */
+public class PreviewDecoder {
+
+    /** Diferencia relativa de proporción admitida en una miniatura (las EXIF a veces llevan bandas negras). */
+    static final double ASPECT_TOLERANCE = 0.03;
+
+    /** Imagen reducida y tamaño de la original. */
+    public static final class Preview {
+        public final BufferedImage image;
+        public final int fullWidth, fullHeight;
+        /** "miniatura", "submuestreo 1/n" o "completa". */
+        public final String source;
+
+        Preview(BufferedImage image, int fullWidth, int fullHeight, String source) {
+            this.image = image;
+            this.fullWidth = fullWidth;
+            this.fullHeight = fullHeight;
+            this.source = source;
+        }
+
+        /** Tamaño de la original respecto a la reducida (1 si se decodificó completa). */
+        public double scale() {
+            return (double) fullWidth / image.getWidth();
+        }
+
+        public boolean isComplete() {
+            return image.getWidth() == fullWidth && image.getHeight() == fullHeight;
+        }
+    }
+
+    private PreviewDecoder() {}
+
+    /**
+     * Versión de file con lado mayor <= maxSize. Solo se aceptan miniaturas incrustadas cuyo lado
+     * mayor sea al menos minThumbnail (1: cualquiera, para mostrar algo cuanto antes; maxSize: sin
+     * perder resolución). Si la imagen ya cabe en maxSize se decodifica completa.
+     */
+    public static Preview read(File file, int maxSize, int minThumbnail) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) throw new IOException("No se pudo abrir " + file);
+            Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+            if (!it.hasNext()) {
+                throw new IOException("Formato de imagen no soportado o archivo inválido: " + file.getName());
+            }
+            ImageReader reader = it.next();
+            try {
+                reader.setInput(in, false, true);
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                int max = Math.max(w, h);
+                if (max > maxSize) {
+                    BufferedImage thumb = embeddedThumbnail(file, reader, w, h, maxSize, minThumbnail);
+                    if (thumb != null) return new Preview(fit(thumb, maxSize), w, h, "miniatura");
+                }
+                int step = Math.max(1, max / maxSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage img = reader.read(0, param);
+                return new Preview(fit(img, maxSize), w, h, step > 1 ? "submuestreo 1/" + step : "completa");
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage fit(BufferedImage img, int maxSize) {
+        img = PixelStore.normalize(img);
+        if (Math.max(img.getWidth(), img.getHeight()) <= maxSize) return img;
+        return Resampler.thumbnail(img, maxSize, ImageOperations.RESIZE_FILTER, TileScheduler.SEQUENTIAL);
+    }
+
+    // --- Miniaturas incrustadas ---
+
+    // La menor que llega a maxSize o, si ninguna llega, la mayor que llega a minThumbnail; null si no hay.
+    private static BufferedImage embeddedThumbnail(File file, ImageReader reader, int w, int h,
+                                                   int maxSize, int minThumbnail) throws IOException {
+        String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        BufferedImage best = null;
+        if (format.equals("jpeg") || format.equals("jpg")) {
+            BufferedImage exif = exifThumbnail(file);
+            if (exif != null && sameAspect(exif.getWidth(), exif.getHeight(), w, h)) best = exif;
+        }
+        if (reader.readerSupportsThumbnails()) {
+            try {
+                for (int i = 0; i < reader.getNumThumbnails(0); i++) {
+                    int tw = reader.getThumbnailWidth(0, i), th = reader.getThumbnailHeight(0, i);
+                    if (sameAspect(tw, th, w, h) && better(tw, th, best, maxSize, minThumbnail)) {
+                        best = reader.readThumbnail(0, i);
+                    }
+                }
+            } catch (IIOException ex) {
+                // Metadatos que el lector no acepta (p. ej. APP1 antes de JFIF): sin miniaturas del lector.
+            }
+        }
+        if (format.startsWith("tif")) {
+            // Subimágenes reducidas (pirámides TIFF): mismas proporciones y menor tamaño.
+            int n = reader.getNumImages(true);
+            for (int i = 1; i < n; i++) {
+                int tw = reader.getWidth(i), th = reader.getHeight(i);
+                if (tw < w && sameAspect(tw, th, w, h) && better(tw, th, best, maxSize, minThumbnail)) {
+                    best = reader.read(i);
+                }
+            }
+        }
+        if (best == null || Math.max(best.getWidth(), best.getHeight()) < minThumbnail) return null;
+        return best;
+    }
+
+    private static boolean better(int tw, int th, BufferedImage best, int maxSize, int minThumbnail) {
+        int m = Math.max(tw, th);
+        if (m < minThumbnail) return false;
+        if (best == null) return true;
+        int b = Math.max(best.getWidth(), best.getHeight());
+        if (b >= maxSize) return m >= maxSize && m < b;
+        return m > b;
+    }
+
+    private static boolean sameAspect(int tw, int th, int w, int h) {
+        double a = (double) tw / th, b = (double) w / h;
+        return Math.abs(a - b) <= ASPECT_TOLERANCE * b;
+    }
+
+    /**
+     * Miniatura EXIF de un JPEG: segmento APP1 "Exif", IFD1, etiquetas 0x0201 (desplazamiento) y
+     * 0x0202 (longitud) del JPEG incrustado. null si no hay o no se puede leer.
+     */
+    static BufferedImage exifThumbnail(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readUnsignedShort() != 0xFFD8) return null;
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) return null;
+                int len = in.readUnsignedShort() - 2;
+                if (marker != 0xFFE1) {
+                    in.skipBytes(len);
+                    continue;
+                }
+                byte[] seg = new byte[len];
+                in.readFully(seg);
+                if (len < 14 || seg[0] != 'E' || seg[1] != 'x' || seg[2] != 'i' || seg[3] != 'f') continue;
+                byte[] jpeg = exifThumbnailBytes(seg, 6);
+                return jpeg == null ? null : ImageIO.read(new ByteArrayInputStream(jpeg));
+            }
+        } catch (IOException | RuntimeException ex) {
+            return null; // EXIF truncado o mal formado: se sigue sin miniatura
+        }
+    }
+
+    // Bloque TIFF que empieza en seg[t]: cabecera, IFD0 (se salta) e IFD1 con el JPEG.
+    private static byte[] exifThumbnailBytes(byte[] seg, int t) {
+        boolean le = seg[t] == 'I';
+        int ifd0 = u32(seg, t + 4, le);
+        int n0 = u16(seg, t + ifd0, le);
+        int ifd1 = u32(seg, t + ifd0 + 2 + 12 * n0, le);
+        if (ifd1 == 0) return null;
+        int n1 = u16(seg, t + ifd1, le);
+        int offset = -1, length = -1;
+        for (int i = 0; i < n1; i++) {
+            int e = t + ifd1 + 2 + 12 * i;
+            int tag = u16(seg, e, le);
+            if (tag == 0x0201) offset = u32(seg, e + 8, le);
+            else if (tag == 0x0202) length = u32(seg, e + 8, le);
+        }
+        if (offset <= 0 || length <= 0 || t + offset + length > seg.length) return null;
+        byte[] jpeg = new byte[length];
+        System.arraycopy(seg, t + offset, jpeg, 0, length);
+        return jpeg;
+    }
+
+    private static int u16(byte[] b, int p, boolean le) {
+        return le ? (b[p] & 0xFF) | (b[p + 1] & 0xFF) << 8 : (b[p] & 0xFF) << 8 | (b[p + 1] & 0xFF);
+    }
+
+    private static int u32(byte[] b, int p, boolean le) {
+        return le ? u16(b, p, true) | u16(b, p + 2, true) << 16 : u16(b, p, false) << 16 | u16(b, p + 2, false);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * Filtros de rango (mediana, percentiles, mínimo, máximo) en ventanas cuadradas de (2r+1)^2 con
+ * coste por pixel independiente del radio (Perreault y Hébert, "Median Filtering in Constant Time").
+ *
+ * Cada columna mantiene un histograma de sus 2r+1 filas que baja una fila sumando y restando un
+ * valor; el histograma de la ventana se desliza en horizontal sumando y restando columnas. Los
+ * histogramas son de dos niveles (16 grupos gruesos de 16 valores finos): el nivel grueso se
+ * actualiza en cada pixel y el fino solo en el grupo donde cae el rango buscado, de forma perezosa.
+ *
+ * Se filtra cada canal de 8 bits por separado, con bordes replicados, en mosaicos independientes
+ * (TileScheduler). BYTE_GRAY se procesa sobre sus bytes crudos y conserva el tipo; el resto
+ * devuelve TYPE_INT_ARGB, como ConvolutionEngine.
+ */
+public class RankFilter {
+
+    /** Con radios mayores una ventana podría desbordar los contadores de 16 bits. */
+    public static final int MAX_RADIUS = 127;
+
+    private RankFilter() {}
+
+    // --- API ---
+
+    public static BufferedImage median(BufferedImage src, int radius) {
+        return median(src, radius, TileScheduler.SEQUENTIAL);
+    }
+
+    public static BufferedImage median(BufferedImage src, int radius, TileScheduler exec) {
+        return rank(src, radius, windowSize(radius) / 2, exec);
+    }
+
+    /** Percentil p en [0, 1] de cada ventana (0 = mínimo, 0.5 = mediana, 1 = máximo). */
+    public static BufferedImage percentile(BufferedImage src, int radius, double p, TileScheduler exec) {
+        if (p < 0 || p > 1) throw new IllegalArgumentException("Percentil fuera de [0, 1]: " + p);
+        return rank(src, radius, (int) Math.round(p * (windowSize(radius) - 1)), exec);
+    }
+
+    /** Valor de la posición k (0-based) de cada ventana ordenada de (2r+1)^2 muestras. */
+    public static BufferedImage rank(BufferedImage src, int radius, int k, TileScheduler exec) {
+        if (radius < 0 || radius > MAX_RADIUS) throw new IllegalArgumentException("Radio fuera de 0.." + MAX_RADIUS + ": " + radius);
+        if (k < 0 || k >= windowSize(radius)) throw new IllegalArgumentException("Rango fuera de la ventana: " + k);
+        int w = src.getWidth(), h = src.getHeight();
+
+        if (src.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] plane = new byte[w * h];
+            exec.forEachBand(0, h, (y0, y1) -> {
+                byte[] row = new byte[w];
+                for (int y = y0; y < y1; y++) {
+                    src.getRaster().getDataElements(0, y, w, 1, row);
+                    System.arraycopy(row, 0, plane, y * w, w);
+                }
+            });
+            BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] dst = ((DataBufferByte) out.getRaster().getDataBuffer()).getData();
+            exec.forEachTile(w, h, TileScheduler.DEFAULT_TILE_SIZE, 0, (tile, halo) ->
+                    filterPlane(plane, dst, w, h, radius, k, tile, new Histograms(tile.width + 2 * radius)));
+            return out;
+        }
+
+        ConvolutionEngine.Planes in = ConvolutionEngine.Planes.split(src, exec);
+        ConvolutionEngine.Planes res = new ConvolutionEngine.Planes(w, h);
+        boolean alpha = src.getColorModel().hasAlpha();
+        exec.forEachTile(w, h, TileScheduler.DEFAULT_TILE_SIZE, 0, (tile, halo) -> {
+            Histograms hist = new Histograms(tile.width + 2 * radius);
+            filterPlane(in.r, res.r, w, h, radius, k, tile, hist);
+            filterPlane(in.g, res.g, w, h, radius, k, tile, hist);
+            filterPlane(in.b, res.b, w, h, radius, k, tile, hist);
+            if (alpha) filterPlane(in.a, res.a, w, h, radius, k, tile, hist);
+        });
+        return res.toImage(alpha, exec);
+    }
+
+    // --- Núcleo: un plano de 8 bits, un mosaico ---
+
+    // Histogramas con contadores de 16 bits empaquetados de 4 en 4 en longs: sumar o restar una
+    // columna a la ventana son 4 operaciones (grueso) o 4 por grupo (fino) en lugar de 16. Los
+    // contadores no desbordan: una ventana tiene como mucho 255^2 < 2^16 muestras (MAX_RADIUS).
+    static final class Histograms {
+        final long[] colFine, colCoarse;
+        final long[] fine = new long[64], coarse = new long[4];
+        final int[] synced = new int[16];
+
+        Histograms(int columns) {
+            colFine = new long[columns * 64];
+            colCoarse = new long[columns * 4];
+        }
+    }
+
+    /** Rango k de cada ventana de src (w x h) para los pixeles de tile, escrito en dst (mismo formato). */
+    static void filterPlane(byte[] src, byte[] dst, int w, int h, int r, int k, Rectangle tile, Histograms hs) {
+        int cols = tile.width + 2 * r, n = 2 * r + 1;
+        long[] colFine = hs.colFine, colCoarse = hs.colCoarse, fine = hs.fine, coarse = hs.coarse;
+        int[] synced = hs.synced;
+        int[] srcCol = new int[cols]; // columna virtual -> columna real (borde replicado)
+        for (int j = 0; j < cols; j++) srcCol[j] = PixelAccess.clampIndex(tile.x - r + j, w);
+
+        // Columnas con las filas tile.y - r .. tile.y + r.
+        Arrays.fill(colFine, 0, cols * 64, 0L);
+        Arrays.fill(colCoarse, 0, cols * 4, 0L);
+        for (int dy = -r; dy <= r; dy++) {
+            int row = PixelAccess.clampIndex(tile.y + dy, h) * w;
+            for (int j = 0; j < cols; j++) {
+                int v = src[row + srcCol[j]] & 0xFF;
+                colFine[j * 64 + (v >> 2)] += 1L << ((v & 3) << 4);
+                colCoarse[j * 4 + (v >> 6)] += 1L << (((v >> 4) & 3) << 4);
+            }
+        }
+
+        for (int y = tile.y; y < tile.y + tile.height; y++) {
+            if (y > tile.y) {
+                int outRow = PixelAccess.clampIndex(y - r - 1, h), inRow = PixelAccess.clampIndex(y + r, h);
+                if (outRow != inRow) {
+                    int ro = outRow * w, ri = inRow * w;
+                    for (int j = 0; j < cols; j++) {
+                        int vo = src[ro + srcCol[j]] & 0xFF, vi = src[ri + srcCol[j]] & 0xFF;
+                        colFine[j * 64 + (vo >> 2)] -= 1L << ((vo & 3) << 4);
+                        colCoarse[j * 4 + (vo >> 6)] -= 1L << (((vo >> 4) & 3) << 4);
+                        colFine[j * 64 + (vi >> 2)] += 1L << ((vi & 3) << 4);
+                        colCoarse[j * 4 + (vi >> 6)] += 1L << (((vi >> 4) & 3) << 4);
+                    }
+                }
+            }
+
+            // Ventana del primer pixel de la fila: columnas virtuales 0..2r.
+            long c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+            for (int j = 0; j < n; j++) {
+                c0 += colCoarse[j * 4];
+                c1 += colCoarse[j * 4 + 1];
+                c2 += colCoarse[j * 4 + 2];
+                c3 += colCoarse[j * 4 + 3];
+            }
+            Arrays.fill(synced, -n - 1); // fuerza el cálculo completo en el primer uso
+
+            int rowBase = y * w;
+            for (int x = 0; x < tile.width; x++) {
+                if (x > 0) {
+                    int add = (x + 2 * r) * 4, sub = (x - 1) * 4;
+                    c0 += colCoarse[add] - colCoarse[sub];
+                    c1 += colCoarse[add + 1] - colCoarse[sub + 1];
+                    c2 += colCoarse[add + 2] - colCoarse[sub + 2];
+                    c3 += colCoarse[add + 3] - colCoarse[sub + 3];
+                }
+                coarse[0] = c0;
+                coarse[1] = c1;
+                coarse[2] = c2;
+                coarse[3] = c3;
+
+                // Grupo grueso que contiene la posición k.
+                int c = 0, below = 0;
+                for (int cnt; below + (cnt = lane(coarse, c)) <= k; c++) below += cnt;
+
+                // Sincroniza el histograma fino del grupo c (4 longs) con la ventana actual.
+                int base = c * 4;
+                if (x - synced[c] > n) {
+                    long f0 = 0, f1 = 0, f2 = 0, f3 = 0;
+                    for (int j = x; j < x + n; j++) {
+                        int off = j * 64 + base;
+                        f0 += colFine[off];
+                        f1 += colFine[off + 1];
+                        f2 += colFine[off + 2];
+                        f3 += colFine[off + 3];
+                    }
+                    fine[base] = f0;
+                    fine[base + 1] = f1;
+                    fine[base + 2] = f2;
+                    fine[base + 3] = f3;
+                } else {
+                    for (int s = synced[c] + 1; s <= x; s++) {
+                        int add = (s + 2 * r) * 64 + base, sub = (s - 1) * 64 + base;
+                        fine[base] += colFine[add] - colFine[sub];
+                        fine[base + 1] += colFine[add + 1] - colFine[sub + 1];
+                        fine[base + 2] += colFine[add + 2] - colFine[sub + 2];
+                        fine[base + 3] += colFine[add + 3] - colFine[sub + 3];
+                    }
+                }
+                synced[c] = x;
+
+                int v = c * 16;
+                for (int cnt; below + (cnt = lane(fine, v)) <= k; v++) below += cnt;
+                dst[rowBase + tile.x + x] = (byte) v;
+            }
+        }
+    }
+
+    // Contador i (de 16 bits) de un histograma empaquetado.
+    private static int lane(long[] packed, int i) {
+        return (int) (packed[i >> 2] >>> ((i & 3) << 4)) & 0xFFFF;
+    }
+
+    // --- Helpers ---
+
+    private static int windowSize(int radius) {
+        return (2 * radius + 1) * (2 * radius + 1);
+    }
+}
\ No newline at end of file
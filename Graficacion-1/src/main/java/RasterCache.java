@@ -0,0 +1,272 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché persistente en disco de pixeles ya decodificados.
+ *
+ * Clave: ruta canónica + tamaño + fecha de modificación del archivo de origen. Cada entrada es un
+ * archivo .raw (cabecera + arreglo del raster tal cual); al reabrir se mapea con FileChannel.map y
+ * se copia en bloque al DataBuffer, sin pasar por el decodificador PNG/JPEG/TIFF.
+ * El tamaño total se limita con expulsión LRU.
+ *
+ * Configuración: -Dpdi.cache.dir, -Dpdi.cache.maxMB (por defecto 2048), -Dpdi.cache.enabled=false.
+ */
+public class RasterCache {
+
+    private static final int MAGIC = 0x50444952; // "PDIR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final String SUFFIX = ".raw";
+
+    private static volatile RasterCache defaultCache;
+
+    private final Path dir;
+    private final long maxBytes;
+    // Orden de acceso: la primera entrada es la menos usada recientemente.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RasterCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File f : files) {
+                entries.put(f.getName(), f.length());
+                totalBytes += f.length();
+            }
+        }
+    }
+
+    /** Caché compartida según las propiedades del sistema; null si está desactivada o no se pudo crear. */
+    public static RasterCache getDefault() {
+        if (!Boolean.parseBoolean(System.getProperty("pdi.cache.enabled", "true"))) return null;
+        RasterCache c = defaultCache;
+        if (c == null) {
+            synchronized (RasterCache.class) {
+                c = defaultCache;
+                if (c == null) {
+                    String d = System.getProperty("pdi.cache.dir",
+                            System.getProperty("user.home") + File.separator + ".cache" + File.separator + "pdi-raster");
+                    long mb = Long.getLong("pdi.cache.maxMB", 2048L);
+                    try {
+                        c = new RasterCache(Path.of(d), mb * 1024 * 1024);
+                        defaultCache = c;
+                    } catch (IOException ex) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return c;
+    }
+
+    // --- API ---
+
+    /** Devuelve la imagen desde la caché o la decodifica y la guarda; null si el formato no se reconoce. */
+    public BufferedImage read(File file) throws IOException {
+        String key = keyFor(file);
+        BufferedImage cached = load(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        BufferedImage img = ImageFileService.decode(file);
+        if (img == null) return null;
+        try {
+            store(key, img);
+        } catch (IOException ex) {
+            // La caché es opcional: un fallo al guardar no impide abrir la imagen.
+        }
+        return img;
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void clear() throws IOException {
+        for (String name : entries.keySet()) Files.deleteIfExists(dir.resolve(name));
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RasterCache[" + dir + ", " + (getSizeBytes() >> 20) + "/" + (maxBytes >> 20) + " MB, aciertos="
+                + getHits() + ", fallos=" + getMisses() + ", expulsiones=" + getEvictions() + "]";
+    }
+
+    // --- Carga (mapeo en memoria) ---
+
+    private BufferedImage load(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) return null; // también actualiza el orden LRU
+        }
+        Path p = dir.resolve(key);
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            map.order(ByteOrder.nativeOrder());
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) return null;
+            int w = map.getInt(), h = map.getInt(), type = map.getInt();
+            BufferedImage img = new BufferedImage(w, h, type);
+            DataBuffer db = img.getRaster().getDataBuffer();
+            if (db instanceof DataBufferInt) {
+                map.asIntBuffer().get(((DataBufferInt) db).getData());
+            } else {
+                map.get(((DataBufferByte) db).getData());
+            }
+            p.toFile().setLastModified(System.currentTimeMillis());
+            return img;
+        } catch (IOException | RuntimeException ex) {
+            remove(key); // entrada corrupta o borrada por fuera
+            return null;
+        }
+    }
+
+    // --- Guardado ---
+
+    private void store(String key, BufferedImage img) throws IOException {
+        BufferedImage raw = storable(img);
+        if (raw == null) return;
+        DataBuffer db = raw.getRaster().getDataBuffer();
+        long dataBytes = db instanceof DataBufferInt ? 4L * db.getSize() : db.getSize();
+        long size = HEADER_BYTES + dataBytes;
+        if (size > Integer.MAX_VALUE || size > maxBytes) return;
+
+        Path tmp = Files.createTempFile(dir, "entry", ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.nativeOrder());
+            map.putInt(MAGIC).putInt(VERSION).putInt(raw.getWidth()).putInt(raw.getHeight()).putInt(raw.getType());
+            if (db instanceof DataBufferInt) {
+                map.asIntBuffer().put(((DataBufferInt) db).getData());
+            } else {
+                map.put(((DataBufferByte) db).getData());
+            }
+        }
+        Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            Long old = entries.put(key, size);
+            totalBytes += size - (old != null ? old : 0);
+            evictIfNeeded();
+        }
+    }
+
+    // Solo tipos de 8 bits con un arreglo contiguo; el resto (indexados, personalizados) pasa a ARGB.
+    private static BufferedImage storable(BufferedImage img) {
+        // Reducida a 8 bits al cargarla: se decodifica de nuevo para que la reducción se avise cada vez.
+        if (PixelStore.sourceBits(img) > 8) return null;
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                if (isContiguous(img)) return img;
+                break;
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return null; // 16 bits: no se degrada la precisión
+            default:
+                if (img.getColorModel().getComponentSize(0) > 8) return null;
+                break;
+        }
+        BufferedImage argb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = argb.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return argb;
+    }
+
+    private static boolean isContiguous(BufferedImage img) {
+        WritableRaster r = img.getRaster();
+        if (r.getSampleModelTranslateX() != 0 || r.getSampleModelTranslateY() != 0) return false;
+        if (r.getDataBuffer().getNumBanks() != 1 || r.getDataBuffer().getOffset() != 0) return false;
+        SampleModel sm = r.getSampleModel();
+        if (sm instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) sm).getScanlineStride() == img.getWidth()
+                    && r.getDataBuffer().getSize() == img.getWidth() * img.getHeight();
+        }
+        if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            return csm.getScanlineStride() == img.getWidth() * csm.getPixelStride()
+                    && r.getDataBuffer().getSize() == csm.getScanlineStride() * img.getHeight();
+        }
+        return false;
+    }
+
+    // --- LRU ---
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            try {
+                Files.deleteIfExists(dir.resolve(e.getKey()));
+            } catch (IOException ex) {
+                continue; // en Windows puede seguir mapeado; se reintenta en la próxima expulsión
+            }
+            totalBytes -= e.getValue();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) totalBytes -= size;
+        try {
+            Files.deleteIfExists(dir.resolve(key));
+        } catch (IOException ex) {
+            // se ignora: la entrada ya no está indexada
+        }
+    }
+
+    private static String keyFor(File file) throws IOException {
+        String id = file.getCanonicalPath() + "|" + file.length() + "|" + file.lastModified();
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(d.length * 2 + SUFFIX.length());
+            for (byte b : d) sb.append(String.format("%02x", b));
+            return sb.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Operaciones restringidas a una región de la imagen (ROI), con máscara opcional.
+ *
+ * La operación recibe una vista de la región ampliada con el halo de su kernel (getSubimage:
+ * comparte el arreglo de la imagen, sin copiar) y su resultado se escribe en sitio solo dentro de
+ * la región; fuera de ella la imagen no se lee más allá del halo ni se modifica. Con halo mayor o
+ * igual que el radio del kernel, el resultado dentro de la región es el mismo que daría la
+ * operación sobre la imagen completa (en los bordes de la imagen la vista replica los mismos
+ * pixeles). Las operaciones con normalización global (Sobel, Canny) la calculan sobre la vista.
+ *
+ * La máscara es una forma en coordenadas de la imagen; su cobertura con antialiasing (0..255)
+ * mezcla el resultado con el original, así que el borde de la selección queda suavizado.
+ *
+ * Las escrituras en sitio pasan por StatisticsCache.update: si img tenía estadísticas en caché se
+ * corrigen recorriendo solo la región.
+ */
+public class RegionProcessor {
+
+    private RegionProcessor() {}
+
+    /**
+     * Aplica op a la región roi de img, modificando img en sitio, y devuelve img. op no debe modificar
+     * la imagen que recibe (como todos los filtros de ImageOperations) y debe devolverla del mismo
+     * tamaño. mask puede ser null; halo es el radio de vecindad que lee op.
+     */
+    public static BufferedImage apply(BufferedImage img, Rectangle roi, Shape mask, int halo,
+                                      ImagePipeline.Stage op, TileScheduler exec) {
+        Rectangle r = clip(img, roi, mask);
+        if (r.isEmpty()) return img;
+        Rectangle ext = new Rectangle(r.x - halo, r.y - halo, r.width + 2 * halo, r.height + 2 * halo)
+                .intersection(bounds(img));
+        BufferedImage view = img.getSubimage(ext.x, ext.y, ext.width, ext.height);
+        BufferedImage out = op.apply(view, exec);
+        if (out.getWidth() != ext.width || out.getHeight() != ext.height) {
+            throw new IllegalArgumentException("La operación cambia el tamaño de la región: "
+                    + ext.width + "x" + ext.height + " -> " + out.getWidth() + "x" + out.getHeight());
+        }
+        if (out == view) return img; // sin cambios
+        byte[] cov = coverage(r, mask);
+        StatisticsCache.shared().update(img, r, () -> write(out, r.x - ext.x, r.y - ext.y, img, r, cov, exec), exec);
+        return img;
+    }
+
+    /**
+     * Operación puntual sobre la región. Sin máscara escribe directamente en la vista de la región
+     * (sin ninguna imagen intermedia) cuando el tipo de img lo permite.
+     */
+    public static BufferedImage applyPointOp(BufferedImage img, Rectangle roi, Shape mask, PointOp op,
+                                             TileScheduler exec) {
+        Rectangle r = clip(img, roi, mask);
+        if (r.isEmpty() || op.isIdentity()) return img;
+        BufferedImage view = img.getSubimage(r.x, r.y, r.width, r.height);
+        if (mask == null && op.canApplyInPlace(view)) {
+            StatisticsCache.shared().update(img, r, () -> op.apply(view, view, exec), exec);
+            return img;
+        }
+        BufferedImage out = op.createTarget(view);
+        op.apply(view, out, exec);
+        byte[] cov = coverage(r, mask);
+        StatisticsCache.shared().update(img, r, () -> write(out, 0, 0, img, r, cov, exec), exec);
+        return img;
+    }
+
+    /** roi recortada a la imagen y a los límites de la máscara. */
+    static Rectangle clip(BufferedImage img, Rectangle roi, Shape mask) {
+        Rectangle r = roi.intersection(bounds(img));
+        if (mask != null && !r.isEmpty()) r = r.intersection(mask.getBounds());
+        return r;
+    }
+
+    private static Rectangle bounds(BufferedImage img) {
+        return new Rectangle(0, 0, img.getWidth(), img.getHeight());
+    }
+
+    // Cobertura de mask en cada pixel de r (fila a fila, r.width x r.height); null sin máscara.
+    private static byte[] coverage(Rectangle r, Shape mask) {
+        if (mask == null) return null;
+        BufferedImage m = new BufferedImage(r.width, r.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = m.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.translate(-r.x, -r.y);
+        g.setColor(Color.WHITE);
+        g.fill(mask);
+        g.dispose();
+        return PixelAccess.byteData(m);
+    }
+
+    // Copia (o mezcla según cov) el rectángulo de src que empieza en (sx, sy) sobre r de dst. Con el
+    // mismo tipo y sin máscara se copian las muestras crudas; si no, ARGB por fila con PixelAccess
+    // (en un destino BYTE_GRAY cada pixel se guarda como su luminancia).
+    private static void write(BufferedImage src, int sx, int sy, BufferedImage dst, Rectangle r, byte[] cov,
+                              TileScheduler exec) {
+        int w = r.width;
+        WritableRaster in = src.getRaster(), out = dst.getRaster();
+        boolean raw = src.getType() == dst.getType() && src.getType() != BufferedImage.TYPE_CUSTOM;
+        exec.forEachBand(0, r.height, (y0, y1) -> {
+            if (raw && cov == null) {
+                Object row = null;
+                for (int y = y0; y < y1; y++) {
+                    row = in.getDataElements(sx, sy + y, w, 1, row);
+                    out.setDataElements(r.x, r.y + y, w, 1, row);
+                }
+            } else {
+                int[] row = new int[w];
+                int[] orig = cov != null ? new int[w] : null;
+                for (int y = y0; y < y1; y++) {
+                    PixelAccess.readRow(src, sx, sy + y, w, row, 0);
+                    if (cov != null) {
+                        PixelAccess.readRow(dst, r.x, r.y + y, w, orig, 0);
+                        for (int x = 0, c = y * w; x < w; x++, c++) row[x] = blend(orig[x], row[x], cov[c] & 0xFF);
+                    }
+                    PixelAccess.writeRow(dst, r.x, r.y + y, w, row, 0);
+                }
+            }
+        });
+    }
+
+    // a * (255 - m) + b * m por canal, redondeado; m = 0 deja a intacto.
+    private static int blend(int a, int b, int m) {
+        if (m == 0) return a;
+        if (m == 255) return b;
+        int n = 255 - m, out = 0;
+        for (int s = 0; s < 32; s += 8) {
+            int v = (((a >>> s) & 0xFF) * n + ((b >>> s) & 0xFF) * m + 127) / 255;
+            out |= v << s;
+        }
+        return out;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,341 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redimensionado separable: una pasada horizontal y otra vertical con tablas de contribución por eje
+ * (qué pixeles de origen y con qué peso forman cada pixel de destino). Las tablas dependen solo de
+ * (tamaño origen, tamaño destino, filtro) y se guardan en caché, así que redimensionar muchas
+ * imágenes del mismo tamaño no las recalcula.
+ *
+ * Al reducir, el soporte del filtro se ensancha en la misma proporción (sin aliasing). Para
+ * reducciones grandes se divide antes a la mitad con promedios 2x2 mientras sobre margen, de modo que
+ * la pasada filtrada final trabaja con una reducción de 2x a 4x. Las imágenes con alfa se
+ * promedian premultiplicadas para que los pixeles transparentes no oscurezcan los bordes.
+ * BYTE_GRAY se trata como un único canal (bytes crudos) y conserva el tipo.
+ */
+public class Resampler {
+
+    public enum Filter {
+        BOX(0.5),
+        BILINEAR(1),
+        /** Catmull-Rom (Keys con a = -0.5). */
+        BICUBIC(2),
+        /** Mitchell-Netravali con B = C = 1/3. */
+        MITCHELL(2),
+        LANCZOS3(3);
+
+        final double support;
+        // Tablas de contribución por (origen << 32 | destino).
+        private final Map<Long, Contributions> cache = new ConcurrentHashMap<>();
+
+        Filter(double support) {
+            this.support = support;
+        }
+
+        double weight(double x) {
+            x = Math.abs(x);
+            switch (this) {
+                case BOX:
+                    return x < 0.5 ? 1 : 0;
+                case BILINEAR:
+                    return x < 1 ? 1 - x : 0;
+                case BICUBIC:
+                    if (x < 1) return (1.5 * x - 2.5) * x * x + 1;
+                    return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+                case MITCHELL:
+                    if (x < 1) return (7 * x * x * x - 12 * x * x + 16 / 3.0) / 6;
+                    return x < 2 ? (-7 / 3.0 * x * x * x + 12 * x * x - 20 * x + 32 / 3.0) / 6 : 0;
+                default:
+                    return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+            }
+        }
+
+        Contributions contributions(int srcSize, int dstSize) {
+            long key = (long) srcSize << 32 | dstSize;
+            Contributions c = cache.get(key);
+            if (c == null) {
+                if (cache.size() >= MAX_CACHED_TABLES) cache.clear();
+                c = new Contributions(this, srcSize, dstSize);
+                cache.put(key, c);
+            }
+            return c;
+        }
+    }
+
+    /** Tablas por filtro que se conservan; al llenarse se vacía la caché del filtro. */
+    static final int MAX_CACHED_TABLES = 64;
+
+    /** Pixeles de origen [start[i], start[i] + count[i]) con pesos weights[i * stride ..] (suman 1). */
+    static final class Contributions {
+        final int[] start, count;
+        final float[] weights;
+        final int stride;
+
+        Contributions(Filter f, int srcSize, int dstSize) {
+            double scale = (double) dstSize / srcSize;
+            double fs = Math.max(1, 1 / scale); // ensanchamiento del filtro al reducir
+            double radius = f.support * fs;
+            stride = (int) Math.ceil(2 * radius) + 2;
+            start = new int[dstSize];
+            count = new int[dstSize];
+            weights = new float[dstSize * stride];
+            double[] w = new double[stride];
+            for (int i = 0; i < dstSize; i++) {
+                double center = (i + 0.5) / scale - 0.5;
+                int lo = (int) Math.ceil(center - radius), hi = (int) Math.floor(center + radius);
+                int s = PixelAccess.clampIndex(lo, srcSize), e = PixelAccess.clampIndex(hi, srcSize);
+                Arrays.fill(w, 0);
+                double sum = 0;
+                for (int j = lo; j <= hi; j++) {
+                    double v = f.weight((j - center) / fs);
+                    // Fuera de la imagen se replica el borde: su peso pasa al pixel extremo.
+                    w[PixelAccess.clampIndex(j, srcSize) - s] += v;
+                    sum += v;
+                }
+                if (sum == 0) { // soporte sin muestras (BOX ampliando): vecino más cercano
+                    s = e = PixelAccess.clampIndex((int) Math.round(center), srcSize);
+                    w[0] = sum = 1;
+                }
+                start[i] = s;
+                count[i] = e - s + 1;
+                for (int k = 0; k < count[i]; k++) weights[i * stride + k] = (float) (w[k] / sum);
+            }
+        }
+    }
+
+    // Fuente de filas ARGB: la imagen original o un nivel reducido a la mitad.
+    private interface RowSource {
+        int width();
+        int height();
+        void read(int y, int[] dst);
+    }
+
+    private Resampler() {}
+
+    // --- API ---
+
+    public static BufferedImage resize(BufferedImage src, int dstW, int dstH, Filter filter, TileScheduler exec) {
+        if (dstW < 1 || dstH < 1) throw new IllegalArgumentException("Tamaño inválido: " + dstW + "x" + dstH);
+        boolean gray = src.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        boolean alpha = !gray && src.getColorModel().hasAlpha();
+        RowSource in = imageSource(src);
+        while (in.width() >= 4 * dstW || in.height() >= 4 * dstH) {
+            in = halve(in, in.width() >= 4 * dstW, in.height() >= 4 * dstH, alpha, exec);
+        }
+        int type = gray || PixelAccess.isDirect(src.getType()) ? src.getType() : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage out = new BufferedImage(dstW, dstH, type);
+        resample(in, out, filter, gray ? GRAY : alpha ? ARGB : RGB, alpha, exec);
+        return out;
+    }
+
+    /** Reducción que cabe en maxSize x maxSize conservando la proporción; nunca amplía. */
+    public static BufferedImage thumbnail(BufferedImage src, int maxSize, Filter filter, TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        double s = Math.min(1, (double) maxSize / Math.max(w, h));
+        if (s == 1) return src;
+        return resize(src, Math.max(1, (int) Math.round(w * s)), Math.max(1, (int) Math.round(h * s)), filter, exec);
+    }
+
+    // --- Pasada filtrada ---
+
+    // Desplazamientos de los canales procesados dentro del ARGB.
+    private static final int[] GRAY = {0}, RGB = {16, 8, 0}, ARGB = {24, 16, 8, 0};
+
+    private static void resample(RowSource in, BufferedImage out, Filter f, int[] shifts, boolean alpha,
+                                 TileScheduler exec) {
+        int sw = in.width(), dw = out.getWidth(), dh = out.getHeight(), nc = shifts.length;
+        Contributions cx = f.contributions(sw, dw), cy = f.contributions(in.height(), dh);
+        boolean gray = out.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        int window = 0;
+        for (int n : cy.count) window = Math.max(window, n);
+        int ring = window;
+
+        // Cada banda de filas de destino filtra en horizontal solo las filas de origen que necesita y
+        // las guarda en un anillo de 'window' filas (start[y] no decrece): nada se materializa entero.
+        exec.forEachBand(0, dh, (y0, y1) -> {
+            int[] row = new int[Math.max(sw, dw)];
+            float[] ch = new float[sw * nc];
+            float[][] rows = new float[ring][dw * nc];
+            int[] rowOf = new int[ring];
+            Arrays.fill(rowOf, -1);
+            float[] acc = new float[dw * nc];
+            byte[] g = gray ? new byte[dw] : null;
+            for (int y = y0; y < y1; y++) {
+                Arrays.fill(acc, 0);
+                int s = cy.start[y], n = cy.count[y], wi = y * cy.stride;
+                for (int k = 0; k < n; k++) {
+                    int sy = s + k, slot = sy % ring;
+                    if (rowOf[slot] != sy) {
+                        in.read(sy, row);
+                        unpack(row, sw, ch, shifts, alpha);
+                        horizontal(ch, rows[slot], dw, nc, cx);
+                        rowOf[slot] = sy;
+                    }
+                    float wk = cy.weights[wi + k];
+                    float[] src = rows[slot];
+                    for (int i = 0; i < acc.length; i++) acc[i] += wk * src[i];
+                }
+                if (gray) {
+                    for (int x = 0; x < dw; x++) g[x] = (byte) toByte(acc[x]);
+                    out.getRaster().setDataElements(0, y, dw, 1, g);
+                } else {
+                    pack(acc, row, dw, shifts, alpha);
+                    PixelAccess.writeRow(out, 0, y, dw, row, 0);
+                }
+            }
+        });
+    }
+
+    // Fila de origen -> fila de destino, canales intercalados (x * nc + c). Un acumulador por canal
+    // dentro del mismo bucle de pesos: las sumas de los canales son independientes y se solapan.
+    private static void horizontal(float[] ch, float[] dst, int dw, int nc, Contributions cx) {
+        int[] start = cx.start, count = cx.count;
+        float[] wt = cx.weights;
+        int stride = cx.stride;
+        for (int x = 0; x < dw; x++) {
+            int s = start[x] * nc, n = count[x], wi = x * stride, o = x * nc;
+            if (nc == 1) {
+                float a0 = 0;
+                for (int k = 0; k < n; k++) a0 += wt[wi + k] * ch[s + k];
+                dst[o] = a0;
+            } else if (nc == 3) {
+                float a0 = 0, a1 = 0, a2 = 0;
+                for (int k = 0, p = s; k < n; k++, p += 3) {
+                    float w = wt[wi + k];
+                    a0 += w * ch[p];
+                    a1 += w * ch[p + 1];
+                    a2 += w * ch[p + 2];
+                }
+                dst[o] = a0;
+                dst[o + 1] = a1;
+                dst[o + 2] = a2;
+            } else {
+                float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+                for (int k = 0, p = s; k < n; k++, p += 4) {
+                    float w = wt[wi + k];
+                    a0 += w * ch[p];
+                    a1 += w * ch[p + 1];
+                    a2 += w * ch[p + 2];
+                    a3 += w * ch[p + 3];
+                }
+                dst[o] = a0;
+                dst[o + 1] = a1;
+                dst[o + 2] = a2;
+                dst[o + 3] = a3;
+            }
+        }
+    }
+
+    // Fila ARGB -> canales float intercalados; con alfa los colores quedan premultiplicados.
+    private static void unpack(int[] row, int n, float[] ch, int[] shifts, boolean alpha) {
+        int nc = shifts.length;
+        for (int x = 0, o = 0; x < n; x++, o += nc) {
+            int p = row[x];
+            if (alpha) {
+                float a = p >>> 24, k = a / 255f;
+                ch[o] = a;
+                ch[o + 1] = ((p >> 16) & 0xFF) * k;
+                ch[o + 2] = ((p >> 8) & 0xFF) * k;
+                ch[o + 3] = (p & 0xFF) * k;
+            } else {
+                for (int c = 0; c < nc; c++) ch[o + c] = (p >> shifts[c]) & 0xFF;
+            }
+        }
+    }
+
+    private static void pack(float[] acc, int[] row, int n, int[] shifts, boolean alpha) {
+        int nc = shifts.length;
+        for (int x = 0, o = 0; x < n; x++, o += nc) {
+            if (alpha) {
+                int a = toByte(acc[o]);
+                float k = a == 0 ? 0 : 255f / a;
+                row[x] = a << 24 | toByte(acc[o + 1] * k) << 16 | toByte(acc[o + 2] * k) << 8 | toByte(acc[o + 3] * k);
+            } else {
+                int p = 0xFF000000;
+                for (int c = 0; c < nc; c++) p |= toByte(acc[o + c]) << shifts[c];
+                row[x] = p;
+            }
+        }
+    }
+
+    // Redondeo y recorte a 0..255 (los lóbulos negativos de Lanczos y bicúbico pueden salirse).
+    private static int toByte(float v) {
+        return v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f);
+    }
+
+    // --- Reducción a la mitad (mipmap) ---
+
+    // Promedio 2x2 (o 2x1 / 1x2 si solo se reduce un eje); con tamaño impar se replica el borde.
+    private static RowSource halve(RowSource in, boolean hx, boolean hy, boolean alpha, TileScheduler exec) {
+        int sw = in.width(), sh = in.height();
+        int w = hx ? (sw + 1) / 2 : sw, h = hy ? (sh + 1) / 2 : sh;
+        int[] data = new int[w * h];
+        exec.forEachBand(0, h, (y0, y1) -> {
+            int[] r0 = new int[sw], r1 = new int[sw];
+            for (int y = y0; y < y1; y++) {
+                in.read(hy ? 2 * y : y, r0);
+                if (hy) in.read(Math.min(2 * y + 1, sh - 1), r1);
+                int o = y * w;
+                for (int x = 0; x < w; x++) {
+                    int xa = hx ? 2 * x : x, xb = hx ? Math.min(xa + 1, sw - 1) : xa;
+                    data[o + x] = hy ? average(r0[xa], r0[xb], r1[xa], r1[xb], alpha)
+                            : average(r0[xa], r0[xb], r0[xa], r0[xb], alpha);
+                }
+            }
+        });
+        return bufferSource(data, w, h);
+    }
+
+    private static int average(int p, int q, int r, int s, boolean alpha) {
+        if (!alpha) {
+            int rr = ((p >> 16) & 0xFF) + ((q >> 16) & 0xFF) + ((r >> 16) & 0xFF) + ((s >> 16) & 0xFF);
+            int gg = ((p >> 8) & 0xFF) + ((q >> 8) & 0xFF) + ((r >> 8) & 0xFF) + ((s >> 8) & 0xFF);
+            int bb = (p & 0xFF) + (q & 0xFF) + (r & 0xFF) + (s & 0xFF);
+            return 0xFF000000 | ((rr + 2) >> 2) << 16 | ((gg + 2) >> 2) << 8 | ((bb + 2) >> 2);
+        }
+        int ap = p >>> 24, aq = q >>> 24, ar = r >>> 24, as = s >>> 24, sa = ap + aq + ar + as;
+        if (sa == 0) return 0;
+        int rr = ((p >> 16) & 0xFF) * ap + ((q >> 16) & 0xFF) * aq + ((r >> 16) & 0xFF) * ar + ((s >> 16) & 0xFF) * as;
+        int gg = ((p >> 8) & 0xFF) * ap + ((q >> 8) & 0xFF) * aq + ((r >> 8) & 0xFF) * ar + ((s >> 8) & 0xFF) * as;
+        int bb = (p & 0xFF) * ap + (q & 0xFF) * aq + (r & 0xFF) * ar + (s & 0xFF) * as;
+        int half = sa >> 1;
+        return ((sa + 2) >> 2) << 24 | ((rr + half) / sa) << 16 | ((gg + half) / sa) << 8 | ((bb + half) / sa);
+    }
+
+    // --- Fuentes de filas ---
+
+    private static RowSource imageSource(BufferedImage src) {
+        int w = src.getWidth(), h = src.getHeight();
+        boolean gray = src.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        return new RowSource() {
+            public int width() { return w; }
+            public int height() { return h; }
+
+            public void read(int y, int[] dst) {
+                if (!gray) {
+                    PixelAccess.readRow(src, 0, y, w, dst, 0);
+                    return;
+                }
+                // Bytes crudos, repetidos en los tres canales para que halve los trate igual.
+                byte[] g = (byte[]) src.getRaster().getDataElements(0, y, w, 1, null);
+                for (int x = 0; x < w; x++) dst[x] = 0xFF000000 | (g[x] & 0xFF) * 0x010101;
+            }
+        };
+    }
+
+    private static RowSource bufferSource(int[] data, int w, int h) {
+        return new RowSource() {
+            public int width() { return w; }
+            public int height() { return h; }
+            public void read(int y, int[] dst) { System.arraycopy(data, y * w, dst, 0, w); }
+        };
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1;
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+}
\ No newline at end of file
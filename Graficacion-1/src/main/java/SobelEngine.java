@@ -0,0 +1,247 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Núcleo del detector de bordes Sobel sin arreglos del tamaño de la imagen.
+ *
+ * La luminancia se lee en un anillo de tres filas, la magnitud se calcula en enteros (o con una
+ * raíz por pixel en L2) y el resultado se escribe directamente en el DataBufferByte de la salida
+ * TYPE_BYTE_GRAY. Memoria extra por banda: cinco filas de int, O(ancho).
+ *
+ * Normalización: TWO_PASS recorre la imagen dos veces (la primera solo busca el máximo) y reproduce
+ * el resultado histórico; BOUND escala por la magnitud máxima posible y hace un único recorrido.
+ *
+ * El recorrido no depende de Sobel: cualquier operador 3x3 sobre la luminancia (RowKernel) se
+ * aplica igual, con la misma luminancia y la misma codificación de la salida (ver EdgeFilter).
+ */
+public class SobelEngine {
+
+    /** Fórmula de la magnitud del gradiente. */
+    public enum Magnitude {
+        /** |gx| + |gy|. */
+        L1,
+        /** sqrt(gx² + gy²). */
+        L2,
+        /** max(|gx|,|gy|) + min(|gx|,|gy|)/2; se desvía de L2 menos de un 12%. */
+        APPROX;
+
+        /** Clave máxima alcanzable con luminancias 0..255 (L2 en cuadrado). */
+        int boundKey() {
+            return BOUNDS[ordinal()];
+        }
+    }
+
+    public enum Normalization {
+        /** Escala por el máximo real de la imagen (dos recorridos). */
+        TWO_PASS,
+        /** Escala por la cota teórica de la magnitud (un recorrido). */
+        BOUND
+    }
+
+    /** Fila y de la imagen como ARGB empaquetado. */
+    interface RowReader {
+        void read(int y, int[] argb);
+    }
+
+    /** Recibe la magnitud (en claves de Magnitude) de la fila y; mag[0] y mag[w-1] son 0. */
+    interface RowSink {
+        void accept(int y, int[] mag);
+    }
+
+    /** Respuesta de un operador 3x3 sobre tres filas de luminancia. */
+    interface RowKernel {
+        /** Claves de las columnas 1..w-2 de la fila r (a es la de arriba, b la de abajo) en out; devuelve la máxima. */
+        int apply(int[] a, int[] r, int[] b, int[] out);
+    }
+
+    private static final int[] BOUNDS = {
+            computeBound(Magnitude.L1), computeBound(Magnitude.L2), computeBound(Magnitude.APPROX)};
+
+    private SobelEngine() {}
+
+    // --- API ---
+
+    public static BufferedImage apply(BufferedImage src, Magnitude magnitude, Normalization normalization) {
+        return apply(src, null, magnitude, normalization, TileScheduler.SEQUENTIAL);
+    }
+
+    /**
+     * Bordes de src en dst (TYPE_BYTE_GRAY del mismo tamaño; si es null se crea). Las filas y
+     * columnas del borde quedan en negro.
+     */
+    public static BufferedImage apply(BufferedImage src, BufferedImage dst, Magnitude magnitude,
+                                      Normalization normalization, TileScheduler exec) {
+        return apply(src, dst, kernel(magnitude), magnitude == Magnitude.L2,
+                normalization == Normalization.TWO_PASS ? -1 : magnitude.boundKey(), exec);
+    }
+
+    /**
+     * Como apply, con la respuesta de kernel. squared indica claves al cuadrado (se escala su raíz);
+     * boundKey es la clave máxima posible, o -1 para buscar la real en un primer recorrido.
+     */
+    static BufferedImage apply(BufferedImage src, BufferedImage dst, RowKernel kernel, boolean squared, int boundKey,
+                               TileScheduler exec) {
+        int w = src.getWidth(), h = src.getHeight();
+        if (dst == null) {
+            dst = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        } else if (dst.getType() != BufferedImage.TYPE_BYTE_GRAY || dst.getWidth() != w || dst.getHeight() != h) {
+            throw new IllegalArgumentException("El destino debe ser TYPE_BYTE_GRAY de " + w + "x" + h);
+        }
+        RowReader reader = (y, argb) -> PixelAccess.readRow(src, 0, y, w, argb, 0);
+
+        int maxKey;
+        if (boundKey < 0) {
+            LongAccumulator max = new LongAccumulator(Math::max, 0);
+            exec.forEachBand(0, h, (y0, y1) -> max.accumulate(scan(reader, w, h, y0, y1, kernel, null)));
+            maxKey = (int) max.get();
+        } else {
+            maxKey = boundKey;
+        }
+
+        WritableRaster raster = dst.getRaster();
+        ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        int stride = sm.getScanlineStride();
+        int base = db.getOffset() - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+        byte[] data = db.getData();
+        RowSink writer = byteWriter(squared, maxKey, data, base, stride);
+
+        byte black = ImageOperations.grayStoreTable()[0];
+        for (int x = 0; x < w; x++) {
+            data[base + x] = black;
+            data[base + (h - 1) * stride + x] = black;
+        }
+        exec.forEachBand(0, h, (y0, y1) -> scan(reader, w, h, y0, y1, kernel, writer));
+        return dst;
+    }
+
+    /** La magnitud de Sobel como RowKernel. */
+    static RowKernel kernel(Magnitude magnitude) {
+        return (a, r, b, mag) -> magnitudeRow(a, r, b, mag, magnitude);
+    }
+
+    // --- Recorrido por filas ---
+
+    /**
+     * Calcula la magnitud de las filas interiores de [y0, y1) (de una imagen de h filas) con un
+     * anillo de tres filas de luminancia y las entrega a sink, si no es null. Devuelve la clave máxima.
+     */
+    static int scan(RowReader in, int w, int h, int y0, int y1, Magnitude magnitude, RowSink sink) {
+        return scan(in, w, h, y0, y1, kernel(magnitude), sink);
+    }
+
+    /** Como scan con la respuesta de kernel en lugar de la magnitud de Sobel. */
+    static int scan(RowReader in, int w, int h, int y0, int y1, RowKernel kernel, RowSink sink) {
+        int from = Math.max(1, y0), to = Math.min(h - 1, y1);
+        if (from >= to) return 0;
+        int[] argb = new int[w];
+        int[] above = new int[w], row = new int[w], below = new int[w];
+        int[] mag = new int[w];
+        luminanceRow(in, from - 1, argb, above);
+        luminanceRow(in, from, argb, row);
+        int max = 0;
+        for (int y = from; y < to; y++) {
+            luminanceRow(in, y + 1, argb, below);
+            max = Math.max(max, kernel.apply(above, row, below, mag));
+            if (sink != null) sink.accept(y, mag);
+            int[] t = above;
+            above = row;
+            row = below;
+            below = t;
+        }
+        return max;
+    }
+
+    /** Escritor que convierte claves en bytes (0..255 escalado por maxKey) en data[base + y*stride + x]. */
+    static RowSink byteWriter(Magnitude magnitude, int maxKey, byte[] data, int base, int stride) {
+        return byteWriter(magnitude == Magnitude.L2, maxKey, data, base, stride);
+    }
+
+    /** Como byteWriter; con squared las claves son cuadrados y se escala su raíz. */
+    static RowSink byteWriter(boolean squared, int maxKey, byte[] data, int base, int stride) {
+        byte[] store = ImageOperations.grayStoreTable();
+        int norm = Math.max(1, maxKey);
+        if (squared) {
+            double scale = 255.0 / Math.sqrt(norm);
+            return (y, mag) -> {
+                int off = base + y * stride;
+                for (int x = 0; x < mag.length; x++) {
+                    data[off + x] = store[(int) (Math.sqrt(mag[x]) * scale + 0.5)];
+                }
+            };
+        }
+        // L1, APPROX y claves lineales: enteros pequeños (<= 2040), tabla directa clave -> byte.
+        byte[] lut = new byte[norm + 1];
+        for (int k = 0; k <= norm; k++) lut[k] = store[(255 * 2 * k + norm) / (2 * norm)];
+        return (y, mag) -> {
+            int off = base + y * stride;
+            for (int x = 0; x < mag.length; x++) data[off + x] = lut[mag[x]];
+        };
+    }
+
+    // Misma luminancia que la versión original (Rec. 709, redondeo en float).
+    private static void luminanceRow(RowReader in, int y, int[] argb, int[] lum) {
+        in.read(y, argb);
+        for (int x = 0; x < lum.length; x++) {
+            int p = argb[x];
+            float v = 0.2126f * ((p >> 16) & 0xFF) + 0.7152f * ((p >> 8) & 0xFF) + 0.0722f * (p & 0xFF);
+            lum[x] = Math.min(255, Math.round(v));
+        }
+    }
+
+    // Claves de magnitud de las columnas 1..w-2; devuelve la máxima.
+    static int magnitudeRow(int[] a, int[] r, int[] b, int[] mag, Magnitude magnitude) {
+        int n = r.length - 1, max = 0;
+        switch (magnitude) {
+            case L1:
+                for (int x = 1; x < n; x++) {
+                    int gx = (a[x + 1] - a[x - 1]) + 2 * (r[x + 1] - r[x - 1]) + (b[x + 1] - b[x - 1]);
+                    int gy = (b[x - 1] - a[x - 1]) + 2 * (b[x] - a[x]) + (b[x + 1] - a[x + 1]);
+                    int k = Math.abs(gx) + Math.abs(gy);
+                    mag[x] = k;
+                    max = Math.max(max, k);
+                }
+                break;
+            case L2:
+                for (int x = 1; x < n; x++) {
+                    int gx = (a[x + 1] - a[x - 1]) + 2 * (r[x + 1] - r[x - 1]) + (b[x + 1] - b[x - 1]);
+                    int gy = (b[x - 1] - a[x - 1]) + 2 * (b[x] - a[x]) + (b[x + 1] - a[x + 1]);
+                    int k = gx * gx + gy * gy;
+                    mag[x] = k;
+                    max = Math.max(max, k);
+                }
+                break;
+            default:
+                for (int x = 1; x < n; x++) {
+                    int gx = Math.abs((a[x + 1] - a[x - 1]) + 2 * (r[x + 1] - r[x - 1]) + (b[x + 1] - b[x - 1]));
+                    int gy = Math.abs((b[x - 1] - a[x - 1]) + 2 * (b[x] - a[x]) + (b[x + 1] - a[x + 1]));
+                    int k = Math.max(gx, gy) + (Math.min(gx, gy) >> 1);
+                    mag[x] = k;
+                    max = Math.max(max, k);
+                }
+                break;
+        }
+        return max;
+    }
+
+    // Las tres magnitudes son convexas en la vecindad, así que el máximo está en un vértice del
+    // cubo [0,255]^8: basta probar las 256 vecindades de ceros y 255.
+    private static int computeBound(Magnitude magnitude) {
+        int[] a = new int[3], r = new int[3], b = new int[3], mag = new int[3];
+        int max = 0;
+        for (int bits = 0; bits < 256; bits++) {
+            int[] v = new int[9];
+            for (int i = 0, j = 0; i < 9; i++) {
+                if (i != 4) v[i] = ((bits >> j++) & 1) * 255;
+            }
+            System.arraycopy(v, 0, a, 0, 3);
+            System.arraycopy(v, 3, r, 0, 3);
+            System.arraycopy(v, 6, b, 0, 3);
+            max = Math.max(max, magnitudeRow(a, r, b, mag, magnitude));
+        }
+        return max;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Caché de ImageStatistics por identidad de imagen. BufferedImage no tiene número de versión, así
+ * que quien modifica una imagen en sitio debe avisar: con update, si sabe qué región toca (el
+ * resultado se corrige restando la región antes y sumándola después), o con invalidate.
+ * Para operaciones que devuelven una imagen nueva igual a la anterior salvo en una región, derive
+ * calcula las estadísticas sin recorrer el resto; para rotaciones y espejos (los mismos pixeles en
+ * otro orden) permuted las copia sin recorrer nada. Por lo mismo, una rotación o un espejo en sitio
+ * no necesita avisar.
+ *
+ * Las claves son débiles: una imagen descartada sale sola de la caché.
+ */
+public class StatisticsCache {
+
+    private static final StatisticsCache SHARED = new StatisticsCache();
+
+    // WeakHashMap usa equals/hashCode, que en BufferedImage son los de Object: identidad.
+    private final Map<BufferedImage, ImageStatistics> entries = new WeakHashMap<>();
+
+    public static StatisticsCache shared() {
+        return SHARED;
+    }
+
+    public ImageStatistics get(BufferedImage img, TileScheduler exec) {
+        ImageStatistics s = lookup(img);
+        if (s == null) {
+            s = ImageStatistics.of(img, exec);
+            store(img, s);
+        }
+        return s;
+    }
+
+    /** Estadísticas ya calculadas de img, o null. */
+    public synchronized ImageStatistics lookup(BufferedImage img) {
+        return entries.get(img);
+    }
+
+    public synchronized void invalidate(BufferedImage img) {
+        entries.remove(img);
+    }
+
+    /**
+     * Ejecuta edit, que solo puede modificar img dentro de region, y mantiene al día sus
+     * estadísticas en caché recorriendo solo la región dos veces. Si no había nada en caché, solo
+     * ejecuta edit.
+     */
+    public void update(BufferedImage img, Rectangle region, Runnable edit, TileScheduler exec) {
+        ImageStatistics before = lookup(img);
+        if (before == null) {
+            edit.run();
+            return;
+        }
+        ImageStatistics removed = ImageStatistics.of(img, region, exec);
+        try {
+            edit.run();
+        } catch (RuntimeException e) {
+            invalidate(img);
+            throw e;
+        }
+        store(img, before.minus(removed).plus(ImageStatistics.of(img, region, exec)));
+    }
+
+    /**
+     * Registra las estadísticas de 'to', que debe tener el tamaño de 'from' y coincidir con ella
+     * fuera de region. Si 'from' no está en caché no hace nada.
+     */
+    public void derive(BufferedImage from, BufferedImage to, Rectangle region, TileScheduler exec) {
+        if (from.getWidth() != to.getWidth() || from.getHeight() != to.getHeight()) {
+            throw new IllegalArgumentException("Las imágenes deben tener el mismo tamaño");
+        }
+        ImageStatistics base = lookup(from);
+        if (base == null) return;
+        store(to, base.minus(ImageStatistics.of(from, region, exec)).plus(ImageStatistics.of(to, region, exec)));
+    }
+
+    /** Registra las estadísticas de 'from' para 'to', que tiene los mismos pixeles en otro orden. */
+    public void permuted(BufferedImage from, BufferedImage to) {
+        ImageStatistics s = lookup(from);
+        if (s != null) store(to, s);
+    }
+
+    private synchronized void store(BufferedImage img, ImageStatistics s) {
+        entries.put(img, s);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,349 @@
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Vector;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Procesamiento por franjas de imágenes más grandes que el heap.
+ *
+ * El origen se lee por regiones (ImageReader.read con setSourceRegion) de stripRows filas más
+ * el halo que necesita el filtro, y el resultado se expone al ImageWriter como un RenderedImage
+ * perezoso que calcula cada franja cuando el escritor la pide. La memoria pico es
+ * O(ancho x (stripRows + halo)) en lugar de O(ancho x alto).
+ *
+ * Los formatos con acceso aleatorio por regiones (TIFF por strips/tiles) leen solo lo necesario;
+ * PNG/JPEG vuelven a decodificar desde el inicio en cada región, pero la memoria sigue acotada.
+ *
+ * Al escribir, PNG, TIFF y BMP piden el resultado por regiones (getData(Rectangle)); el escritor de
+ * JPEG pide una única tesela y la recorre línea a línea, así que recibe un raster que resuelve cada
+ * línea sobre su franja. Si un escritor pide la imagen completa y no cabe en el heap, la escritura
+ * falla con un IOException en lugar de agotar la memoria.
+ */
+public class StreamingProcessor {
+
+    public static final int DEFAULT_STRIP_ROWS = 256;
+
+    // Bytes por pixel que ocupa procesar una imagen en memoria: decodificada, normalizada y resultado.
+    private static final int IN_MEMORY_BYTES_PER_PIXEL = 12;
+
+    private StreamingProcessor() {}
+
+    // --- API ---
+
+    /**
+     * Gaussiano por franjas; idéntico a ImageOperations.gaussianBlur sobre la imagen completa,
+     * también en el tipo: un origen BYTE_GRAY se escribe con una sola banda.
+     */
+    public static void gaussianBlur(File in, File out, String format, float sigma, int stripRows) throws IOException {
+        try (StripSource source = new StripSource(in)) {
+            float[] kernel = sigma > 0f ? ImageOperations.gaussianKernel1D(sigma) : new float[] {1f};
+            int halo = kernel.length / 2;
+            boolean alpha = source.hasAlpha && !isJpeg(format);
+            int[] rgbMasks = {0xFF0000, 0xFF00, 0xFF};
+            int[] argbMasks = {0xFF0000, 0xFF00, 0xFF, 0xFF000000};
+
+            int type = source.gray ? BufferedImage.TYPE_BYTE_GRAY
+                    : alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+            write(new LazyStrips(source, stripRows, type) {
+                @Override
+                Raster computeStrip(int y0, int y1) throws IOException {
+                    int r0 = Math.max(0, y0 - halo), r1 = Math.min(source.height, y1 + halo);
+                    BufferedImage blurred = ConvolutionEngine.convolveSeparable(source.readRows(r0, r1), kernel, kernel);
+                    int w = source.width;
+                    if (source.gray) {
+                        // R = G = B: cada fila vuelve a un byte por pixel, como keepGray en memoria.
+                        BufferedImage strip = new BufferedImage(w, y1 - y0, BufferedImage.TYPE_BYTE_GRAY);
+                        int[] row = new int[w];
+                        for (int y = y0; y < y1; y++) {
+                            PixelAccess.readRow(blurred, 0, y - r0, w, row, 0);
+                            PixelAccess.writeRow(strip, 0, y - y0, w, row, 0);
+                        }
+                        return strip.getRaster().createTranslatedChild(0, y0);
+                    }
+                    // Sin copia: las filas de la franja se exponen directamente sobre el DataBufferInt.
+                    DataBufferInt db = new DataBufferInt(PixelAccess.argbData(blurred), w * (y1 - y0), (y0 - r0) * w);
+                    return Raster.createPackedRaster(db, w, y1 - y0, w, alpha ? argbMasks : rgbMasks, new Point(0, y0));
+                }
+            }, out, format);
+        }
+    }
+
+    /** Sobel L2 por franjas en dos pasadas; idéntico a ImageOperations.sobelEdges. */
+    public static void sobelEdges(File in, File out, String format, int stripRows) throws IOException {
+        sobelEdges(in, out, format, stripRows, SobelEngine.Magnitude.L2, SobelEngine.Normalization.TWO_PASS);
+    }
+
+    /**
+     * Sobel por franjas. Con TWO_PASS la primera pasada solo obtiene la magnitud máxima
+     * (normalización global) y la segunda calcula y escribe; con BOUND el origen se lee una sola vez.
+     */
+    public static void sobelEdges(File in, File out, String format, int stripRows,
+                                  SobelEngine.Magnitude magnitude, SobelEngine.Normalization normalization) throws IOException {
+        try (StripSource source = new StripSource(in)) {
+            int rows = stripRows > 0 ? stripRows : DEFAULT_STRIP_ROWS;
+            int maxKey = magnitude.boundKey();
+            if (normalization == SobelEngine.Normalization.TWO_PASS) {
+                maxKey = 0;
+                for (int y = 0; y < source.height; y += rows) {
+                    maxKey = Math.max(maxKey, sobelStrip(source, y, Math.min(source.height, y + rows), magnitude, null));
+                }
+            }
+            int norm = maxKey;
+
+            write(new LazyStrips(source, rows, BufferedImage.TYPE_BYTE_GRAY) {
+                @Override
+                Raster computeStrip(int y0, int y1) throws IOException {
+                    int w = source.width;
+                    WritableRaster r = getColorModel().createCompatibleWritableRaster(w, y1 - y0);
+                    byte[] data = ((DataBufferByte) r.getDataBuffer()).getData();
+                    sobelStrip(source, y0, y1, magnitude, SobelEngine.byteWriter(magnitude, norm, data, -y0 * w, w));
+                    return r.createTranslatedChild(0, y0);
+                }
+            }, out, format);
+        }
+    }
+
+    // Magnitudes de las filas [y0, y1) leyendo una fila de halo arriba y abajo; devuelve la clave máxima.
+    private static int sobelStrip(StripSource source, int y0, int y1, SobelEngine.Magnitude magnitude,
+                                  SobelEngine.RowSink sink) throws IOException {
+        int w = source.width;
+        int r0 = Math.max(0, y0 - 1), r1 = Math.min(source.height, y1 + 1);
+        BufferedImage region = source.readRows(r0, r1);
+        return SobelEngine.scan((y, argb) -> PixelAccess.readRow(region, 0, y - r0, w, argb, 0),
+                w, source.height, y0, y1, magnitude, sink);
+    }
+
+    /**
+     * Píxeles de la imagen 0 de in según su cabecera (sin decodificarla), o -1 si no se puede leer.
+     */
+    public static long pixelCount(File in) {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            if (stream == null) return -1;
+            Iterator<ImageReader> it = ImageIO.getImageReaders(stream);
+            if (!it.hasNext()) return -1;
+            ImageReader reader = it.next();
+            try {
+                reader.setInput(stream, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    /** true si concurrent imágenes de pixels píxeles caben a la vez en el heap procesándolas completas. */
+    public static boolean fitsInMemory(long pixels, int concurrent) {
+        long budget = Runtime.getRuntime().maxMemory() / Math.max(1, concurrent);
+        return pixels >= 0 && pixels <= budget / IN_MEMORY_BYTES_PER_PIXEL;
+    }
+
+    // --- Escritura ---
+
+    private static void write(LazyStrips img, File out, String format) throws IOException {
+        String fmt = format.toLowerCase(Locale.ROOT);
+        Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName(fmt);
+        if (!it.hasNext()) throw new IOException("El formato '" + fmt + "' no es escribible.");
+        ImageWriter writer = it.next();
+        // Mismos ajustes de compresión que el resto de escrituras (ImageEncoder, opción -c).
+        ImageWriteParam param = ImageEncoder.param(writer, ImageEncoder.canonical(fmt), ImageFileService.getEncodeOptions());
+        if (isJpeg(fmt)) img.setLineByLine(true);
+        Files.deleteIfExists(out.toPath()); // ImageIO no trunca un archivo más largo
+        boolean ok = false;
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            if (ios == null) throw new IOException("No se pudo abrir para escritura: " + out);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(img, null, null), param);
+            ok = true;
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            writer.dispose();
+            if (!ok) Files.deleteIfExists(out.toPath()); // sin archivos a medio escribir
+        }
+    }
+
+    private static boolean isJpeg(String format) {
+        String fmt = format.toLowerCase(Locale.ROOT);
+        return fmt.equals("jpg") || fmt.equals("jpeg");
+    }
+
+    // --- Lectura por regiones ---
+
+    static final class StripSource implements AutoCloseable {
+        final int width, height;
+        final boolean hasAlpha, gray;
+        private final ImageInputStream stream;
+        private final ImageReader reader;
+
+        StripSource(File file) throws IOException {
+            stream = ImageIO.createImageInputStream(file);
+            if (stream == null) throw new IOException("No se pudo abrir: " + file);
+            Iterator<ImageReader> it = ImageIO.getImageReaders(stream);
+            if (!it.hasNext()) {
+                stream.close();
+                throw new IOException("Formato de imagen no soportado: " + file.getName());
+            }
+            reader = it.next();
+            reader.setInput(stream, true, true);
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+            BufferedImage first = readRows(0, 1);
+            hasAlpha = first.getColorModel().hasAlpha();
+            gray = first.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        }
+
+        /** Filas [y0, y1) de la imagen 0 como BufferedImage de ancho completo. */
+        synchronized BufferedImage readRows(int y0, int y1) throws IOException {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y0, width, y1 - y0));
+            return reader.read(0, param);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            stream.close();
+        }
+    }
+
+    // --- Imagen perezosa: una franja (tile de ancho completo) por petición ---
+
+    abstract static class LazyStrips implements RenderedImage {
+        final StripSource source;
+        final int stripRows;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+        private int cachedIndex = -1;
+        private Raster cached;
+        private boolean lineByLine;
+
+        LazyStrips(StripSource source, int stripRows, int imageType) {
+            this.source = source;
+            this.stripRows = Math.min(stripRows > 0 ? stripRows : DEFAULT_STRIP_ROWS, Math.max(1, source.height));
+            BufferedImage proto = new BufferedImage(1, 1, imageType);
+            colorModel = proto.getColorModel();
+            sampleModel = proto.getSampleModel().createCompatibleSampleModel(source.width, this.stripRows);
+        }
+
+        /** Calcula las filas [y0, y1) como un raster situado en (0, y0), compatible con getColorModel(). */
+        abstract Raster computeStrip(int y0, int y1) throws IOException;
+
+        /** Se expone como una única tesela (LineRaster) para escritores que la recorren por líneas. */
+        void setLineByLine(boolean lineByLine) {
+            this.lineByLine = lineByLine;
+        }
+
+        // Los escritores piden las filas en orden: basta con conservar la última franja.
+        private synchronized Raster strip(int index) {
+            if (index == cachedIndex) return cached;
+            int y0 = index * stripRows, y1 = Math.min(source.height, y0 + stripRows);
+            try {
+                cached = computeStrip(y0, y1);
+                cachedIndex = index;
+                return cached;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Error procesando filas " + y0 + "-" + y1 + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        @Override public Vector<RenderedImage> getSources() { return null; }
+        @Override public Object getProperty(String name) { return java.awt.Image.UndefinedProperty; }
+        @Override public String[] getPropertyNames() { return null; }
+        @Override public ColorModel getColorModel() { return colorModel; }
+        @Override public SampleModel getSampleModel() { return sampleModel; }
+        @Override public int getWidth() { return source.width; }
+        @Override public int getHeight() { return source.height; }
+        @Override public int getMinX() { return 0; }
+        @Override public int getMinY() { return 0; }
+        @Override public int getNumXTiles() { return 1; }
+        @Override public int getNumYTiles() { return lineByLine ? 1 : (source.height + stripRows - 1) / stripRows; }
+        @Override public int getMinTileX() { return 0; }
+        @Override public int getMinTileY() { return 0; }
+        @Override public int getTileWidth() { return source.width; }
+        @Override public int getTileHeight() { return lineByLine ? source.height : stripRows; }
+        @Override public int getTileGridXOffset() { return 0; }
+        @Override public int getTileGridYOffset() { return 0; }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return lineByLine ? new LineRaster(this) : strip(tileY);
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, source.width, source.height));
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            Rectangle r = rect.intersection(new Rectangle(0, 0, source.width, source.height));
+            long bytes = (long) r.width * r.height * ((colorModel.getPixelSize() + 7) / 8);
+            if (bytes > Runtime.getRuntime().maxMemory() / 2) {
+                throw new IllegalStateException("El escritor pidió " + r.width + "x" + r.height
+                        + " pixeles de una vez (" + (bytes >> 20) + " MB) y no caben en memoria;"
+                        + " use png, tiff o bmp para procesar por franjas.");
+            }
+            WritableRaster out = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(r.width, r.height), new Point(r.x, r.y));
+            copyData(out);
+            return out;
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = colorModel.createCompatibleWritableRaster(source.width, source.height);
+            }
+            Rectangle r = raster.getBounds().intersection(new Rectangle(0, 0, source.width, source.height));
+            for (int t = r.y / stripRows; t * stripRows < r.y + r.height; t++) {
+                Raster s = strip(t);
+                Rectangle part = s.getBounds().intersection(r);
+                raster.setRect(s.createChild(part.x, part.y, part.width, part.height, part.x, part.y, null));
+            }
+            return raster;
+        }
+    }
+    // Raster de la imagen completa sin muestras propias: el escritor de JPEG lo recibe como única
+    // tesela y pide cada línea con createChild, que se resuelve sobre la franja que la contiene (las
+    // líneas llegan en orden, así que cada franja se calcula una vez). Solo admite ese acceso.
+    private static final class LineRaster extends Raster {
+        private final LazyStrips strips;
+
+        LineRaster(LazyStrips strips) {
+            super(strips.getSampleModel(), strips.getSampleModel().createCompatibleSampleModel(1, 1).createDataBuffer(),
+                    new Rectangle(0, 0, strips.getWidth(), strips.getHeight()), new Point(0, 0), null);
+            this.strips = strips;
+        }
+
+        @Override
+        public Raster createChild(int x, int y, int w, int h, int childMinX, int childMinY, int[] bandList) {
+            int t = y / strips.stripRows;
+            Raster src = (y + h - 1) / strips.stripRows == t ? strips.strip(t) : strips.getData(new Rectangle(x, y, w, h));
+            return src.createChild(x, y, w, h, childMinX, childMinY, bandList);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Generador de miniaturas para directorios completos (sin interfaz gráfica).
+ *
+ * Uso: java ThumbnailGenerator -i <directorio|glob> -o <dir salida> [-s 256] [-f jpg] [-t hilos] [-force]
+ *
+ * Cada archivo se decodifica con PreviewDecoder (miniatura incrustada o submuestreo, nunca la
+ * imagen completa si no hace falta), que ya la deja en -s de lado, y se codifica con
+ * ImageEncoder. Las miniaturas más nuevas que su original se dan por buenas y no se regeneran
+ * salvo con -force. Cada miniatura conserva el nombre completo del original (a.png -> a.png.jpg),
+ * así que a.png y a.jpg no se pisan; dos originales con el mismo nombre en carpetas distintas
+ * (un glob recursivo) se rechazan en lugar de sobrescribirse.
+ */
+public class ThumbnailGenerator {
+
+    public static final int DEFAULT_SIZE = 256;
+
+    private ThumbnailGenerator() {}
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String input = null, output = null, format = "jpg";
+        int size = DEFAULT_SIZE, threads = Runtime.getRuntime().availableProcessors();
+        boolean force = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-i": input = BatchProcessor.value(args, i++); break;
+                    case "-o": output = BatchProcessor.value(args, i++); break;
+                    case "-s": size = Integer.parseInt(BatchProcessor.value(args, i++)); break;
+                    case "-f": format = ImageEncoder.canonical(BatchProcessor.value(args, i++)); break;
+                    case "-t": threads = Integer.parseInt(BatchProcessor.value(args, i++)); break;
+                    case "-force": force = true; break;
+                    default: throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+                }
+            }
+            if (input == null || output == null) throw new IllegalArgumentException("Faltan -i y/o -o");
+            if (size < 1) throw new IllegalArgumentException("Tamaño inválido: " + size);
+            if (!ImageEncoder.canWrite(format)) throw new IllegalArgumentException("El formato '" + format + "' no es escribible.");
+
+            List<File> files = BatchProcessor.listInputs(input);
+            File outDir = new File(output);
+            if (!outDir.isDirectory() && !outDir.mkdirs()) throw new IOException("No se pudo crear " + outDir);
+            List<File> pending = force ? files : outdated(files, outDir, format);
+            System.out.println((files.size() - pending.size()) + " miniaturas al día, " + pending.size() + " por generar");
+
+            BatchProcessor.Report r = generate(pending, outDir, size, format, threads, null);
+            System.out.println(r);
+            if (r.failed > 0) System.exit(1);
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.err.println("Uso: java ThumbnailGenerator -i <dir|glob> -o <dir> [-s 256] [-f jpg] [-t hilos] [-force]");
+            System.exit(2);
+        }
+    }
+
+    /** Archivo de salida de la miniatura de f: su nombre completo, con la extensión del formato añadida. */
+    public static File target(File f, File outDir, String format) {
+        return new File(outDir, f.getName() + "." + ImageEncoder.canonical(format));
+    }
+
+    /** Archivos sin miniatura o con una más antigua que el original. */
+    public static List<File> outdated(List<File> files, File outDir, String format) {
+        List<File> out = new ArrayList<>();
+        for (File f : files) {
+            File t = target(f, outDir, format);
+            if (!t.isFile() || t.lastModified() < f.lastModified()) out.add(f);
+        }
+        return out;
+    }
+
+    /**
+     * Genera las miniaturas en paralelo. pixels del Report cuenta los pixeles de las originales.
+     * onDone (si no es null) recibe cuántos archivos van terminados, desde los hilos de trabajo.
+     */
+    public static BatchProcessor.Report generate(List<File> files, File outDir, int size, String format,
+                                                 int threads, IntConsumer onDone) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        AtomicInteger ok = new AtomicInteger(), failed = new AtomicInteger(), done = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        long t0 = System.nanoTime();
+        Map<File, File> owners = new HashMap<>();
+        try {
+            List<Future<?>> pending = new ArrayList<>(files.size());
+            for (File f : files) {
+                File owner = owners.putIfAbsent(target(f, outDir, format), f);
+                if (owner != null) {
+                    failed.incrementAndGet();
+                    System.err.println(f + ": misma miniatura que " + owner + ", se omite");
+                    if (onDone != null) onDone.accept(done.incrementAndGet());
+                    continue;
+                }
+                pending.add(pool.submit(() -> {
+                    try {
+                        PreviewDecoder.Preview p = PreviewDecoder.read(f, size, size);
+                        ImageEncoder.write(p.image, target(f, outDir, format), format, ImageFileService.getEncodeOptions());
+                        pixels.addAndGet((long) p.fullWidth * p.fullHeight);
+                        ok.incrementAndGet();
+                    } catch (IOException | RuntimeException ex) {
+                        failed.incrementAndGet();
+                        System.err.println(f.getName() + ": " + ex.getMessage());
+                    }
+                    if (onDone != null) onDone.accept(done.incrementAndGet());
+                }));
+            }
+            for (Future<?> fut : pending) {
+                try {
+                    fut.get();
+                } catch (ExecutionException ex) {
+                    // No ocurre: cada tarea captura sus propios errores.
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new BatchProcessor.Report(ok.get(), failed.get(), System.nanoTime() - t0, pixels.get());
+    }
+}
\ No newline at end of file
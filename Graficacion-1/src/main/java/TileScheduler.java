@@ -0,0 +1,196 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reparte el trabajo de una imagen en bandas de filas o en mosaicos cuadrados y los
+ * ejecuta en un ForkJoinPool. Cada tarea escribe solo su región de salida y lee del
+ * origen compartido (incluido el halo que necesite su kernel), así que el resultado
+ * es idéntico bit a bit al de la ejecución secuencial.
+ *
+ * Con withMonitor se obtiene un planificador que informa del avance de cada pasada y comprueba
+ * antes de cada banda o mosaico si la ejecución se canceló (CancellationException): así una
+ * operación larga se puede abandonar sin que ella misma sepa nada de cancelaciones.
+ */
+public class TileScheduler {
+
+    /** Ejecuta todo en el hilo que llama, en una sola banda. */
+    public static final TileScheduler SEQUENTIAL = new TileScheduler(null, 0);
+
+    public static final int DEFAULT_MIN_BAND_ROWS = 16;
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /** Región de filas [from, to). */
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /** Mosaico de salida y su región de lectura ampliada con el halo (recortada a la imagen). */
+    public interface TileTask {
+        void run(Rectangle tile, Rectangle withHalo);
+    }
+
+    /** Observador de una ejecución; se llama desde los hilos de trabajo. */
+    public interface Monitor {
+        boolean isCancelled();
+
+        /** Avance de la pasada actual (forEachBand o forEachTile): done de total filas o mosaicos. */
+        void progress(int done, int total);
+    }
+
+    /** Bandas en que se parte una pasada secuencial observada, para poder cancelarla a medias. */
+    static final int MONITORED_SEQUENTIAL_BANDS = 16;
+
+    private final ForkJoinPool pool;
+    private final int minBandRows;
+    private final Monitor monitor;
+
+    public TileScheduler(ForkJoinPool pool, int minBandRows) {
+        this(pool, Math.max(1, minBandRows > 0 ? minBandRows : DEFAULT_MIN_BAND_ROWS), null);
+    }
+
+    private TileScheduler(ForkJoinPool pool, int minBandRows, Monitor monitor) {
+        this.pool = pool;
+        this.minBandRows = minBandRows;
+        this.monitor = monitor;
+    }
+
+    public TileScheduler(ForkJoinPool pool) {
+        this(pool, DEFAULT_MIN_BAND_ROWS);
+    }
+
+    /** Pool propio con el paralelismo indicado (el llamador decide cuándo cerrarlo con shutdown()). */
+    public static TileScheduler withParallelism(int parallelism) {
+        return new TileScheduler(new ForkJoinPool(Math.max(1, parallelism)));
+    }
+
+    public static TileScheduler common() {
+        return new TileScheduler(ForkJoinPool.commonPool());
+    }
+
+    public int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    public boolean isSequential() {
+        return pool == null || pool.getParallelism() <= 1;
+    }
+
+    /** Mismo pool y bandas, observado por monitor (no lo cierres con shutdown: el pool es compartido). */
+    public TileScheduler withMonitor(Monitor monitor) {
+        return new TileScheduler(pool, minBandRows, monitor);
+    }
+
+    public void shutdown() {
+        if (pool != null && pool != ForkJoinPool.commonPool()) pool.shutdown();
+    }
+
+    /**
+     * Para algoritmos iterativos que no reparten su bucle en bandas: con monitor lanza
+     * CancellationException si la ejecución se canceló e informa del avance (done de total).
+     */
+    public void checkpoint(int done, int total) {
+        if (monitor == null) return;
+        if (monitor.isCancelled()) throw new CancellationException();
+        monitor.progress(done, total);
+    }
+
+    // --- Bandas de filas ---
+
+    public void forEachBand(int from, int to, RangeTask task) {
+        int rows = to - from;
+        if (rows <= 0) return;
+        RangeTask run = monitor != null ? observeRange(task, rows) : task;
+        if (isSequential() || rows <= minBandRows) {
+            if (monitor == null) {
+                run.run(from, to);
+                return;
+            }
+            int step = Math.max(minBandRows, (rows + MONITORED_SEQUENTIAL_BANDS - 1) / MONITORED_SEQUENTIAL_BANDS);
+            for (int y = from; y < to; y += step) run.run(y, Math.min(to, y + step));
+            return;
+        }
+        // ~4 bandas por hilo para equilibrar la carga, sin bajar de minBandRows.
+        int bands = Math.min(getParallelism() * 4, (rows + minBandRows - 1) / minBandRows);
+        int bandRows = (rows + bands - 1) / bands;
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int y = from; y < to; y += bandRows) {
+            int y0 = y, y1 = Math.min(to, y + bandRows);
+            tasks.add(action(() -> run.run(y0, y1)));
+        }
+        invokeAll(tasks);
+    }
+
+    // --- Mosaicos ---
+
+    public void forEachTile(int width, int height, int tileSize, int halo, TileTask task) {
+        int ts = tileSize > 0 ? tileSize : DEFAULT_TILE_SIZE;
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        List<Rectangle> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += ts) {
+            for (int x = 0; x < width; x += ts) {
+                tiles.add(new Rectangle(x, y, Math.min(ts, width - x), Math.min(ts, height - y)));
+            }
+        }
+        TileTask run = monitor != null ? observeTiles(task, tiles.size()) : task;
+        if (isSequential() || tiles.size() == 1) {
+            for (Rectangle t : tiles) run.run(t, withHalo(t, halo, bounds));
+            return;
+        }
+        List<RecursiveAction> tasks = new ArrayList<>(tiles.size());
+        for (Rectangle t : tiles) {
+            Rectangle h = withHalo(t, halo, bounds);
+            tasks.add(action(() -> run.run(t, h)));
+        }
+        invokeAll(tasks);
+    }
+
+    public static Rectangle withHalo(Rectangle tile, int halo, Rectangle bounds) {
+        Rectangle r = new Rectangle(tile.x - halo, tile.y - halo, tile.width + 2 * halo, tile.height + 2 * halo);
+        return r.intersection(bounds);
+    }
+
+    // --- Helpers ---
+
+    private RangeTask observeRange(RangeTask task, int total) {
+        AtomicInteger done = new AtomicInteger();
+        return (y0, y1) -> {
+            if (monitor.isCancelled()) throw new CancellationException();
+            task.run(y0, y1);
+            monitor.progress(done.addAndGet(y1 - y0), total);
+        };
+    }
+
+    private TileTask observeTiles(TileTask task, int total) {
+        AtomicInteger done = new AtomicInteger();
+        return (tile, halo) -> {
+            if (monitor.isCancelled()) throw new CancellationException();
+            task.run(tile, halo);
+            monitor.progress(done.incrementAndGet(), total);
+        };
+    }
+
+    private void invokeAll(List<RecursiveAction> tasks) {
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(action(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
+    private static RecursiveAction action(Runnable r) {
+        return new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                r.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Rutas de codificación de ImageFileService (incluida la conversión a RGB previa al JPEG). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class ImageFileServiceBenchmark {
+
+    @Param({"1", "12", "50"})
+    public int megapixels;
+
+    @Param({"INT_ARGB", "INT_RGB", "3BYTE_BGR", "BYTE_GRAY"})
+    public String pixelType;
+
+    @Param({"png", "jpg", "tiff", "bmp"})
+    public String format;
+
+    BufferedImage src;
+    File dir;
+    File target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        src = Images.create(megapixels, pixelType);
+        dir = Files.createTempDirectory("pdi-bench").toFile();
+        target = new File(dir, "salida");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public File write() throws Throwable {
+        return (File) Ops.WRITE.invokeExact(src, target, format);
+    }
+}
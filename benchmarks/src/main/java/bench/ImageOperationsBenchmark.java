@@ -0,0 +1,200 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Todas las entradas de ImageOperations sobre imágenes de 1 a 50 MP y los tipos de pixel habituales.
+ * Ejemplo: java -jar benchmarks/target/benchmarks.jar ImageOperationsBenchmark -p megapixels=12 -rf json
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class ImageOperationsBenchmark {
+
+    @Param({"1", "12", "50"})
+    public int megapixels;
+
+    @Param({"INT_ARGB", "INT_RGB", "3BYTE_BGR", "BYTE_GRAY"})
+    public String pixelType;
+
+    BufferedImage src;
+    Object pointOpChain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        src = Images.create(megapixels, pixelType);
+        pointOpChain = Ops.pointOpChain();
+    }
+
+    /** Sigma solo multiplica los casos del gaussiano; 20 ya pasa por la FFT. */
+    @State(Scope.Benchmark)
+    public static class Gaussian {
+        @Param({"1.0", "3.0", "8.0", "20.0"})
+        public float sigma;
+    }
+
+    @Benchmark
+    public BufferedImage gaussianBlur(Gaussian g) throws Throwable {
+        return (BufferedImage) Ops.GAUSSIAN_BLUR.invokeExact(src, g.sigma);
+    }
+
+    @Benchmark
+    public BufferedImage gaussianBlurApprox(Gaussian g) throws Throwable {
+        return (BufferedImage) Ops.GAUSSIAN_BLUR_APPROX.invokeExact(src, g.sigma);
+    }
+
+    /** El tiempo de la media, la mediana y la erosión no debería depender del radio. */
+    @State(Scope.Benchmark)
+    public static class Window {
+        @Param({"1", "3", "7", "15"})
+        public int radius;
+    }
+
+    @Benchmark
+    public BufferedImage meanFilter(Window m) throws Throwable {
+        return (BufferedImage) Ops.MEAN_FILTER.invokeExact(src, m.radius);
+    }
+
+    @Benchmark
+    public BufferedImage erosion(Window m) throws Throwable {
+        return (BufferedImage) Ops.EROSION.invokeExact(src, m.radius);
+    }
+
+    @Benchmark
+    public BufferedImage medianFilter(Window m) throws Throwable {
+        return (BufferedImage) Ops.MEDIAN_FILTER.invokeExact(src, m.radius);
+    }
+
+    @Benchmark
+    public BufferedImage lowPassFilter() throws Throwable {
+        return (BufferedImage) Ops.LOW_PASS_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage highPassFilter() throws Throwable {
+        return (BufferedImage) Ops.HIGH_PASS_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage bandPassFilter() throws Throwable {
+        return (BufferedImage) Ops.BAND_PASS_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage sobelEdges() throws Throwable {
+        return (BufferedImage) Ops.SOBEL_EDGES.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage cannyFilter() throws Throwable {
+        return (BufferedImage) Ops.CANNY_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage laplacianFilter() throws Throwable {
+        return (BufferedImage) Ops.LAPLACIAN_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage prewittFilter() throws Throwable {
+        return (BufferedImage) Ops.PREWITT_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage robertsFilter() throws Throwable {
+        return (BufferedImage) Ops.ROBERTS_FILTER.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage skeletonization() throws Throwable {
+        return (BufferedImage) Ops.SKELETONIZATION.invokeExact(src);
+    }
+
+    /** Las operaciones puntuales deberían acercarse al ancho de banda de memoria. */
+    @Benchmark
+    public BufferedImage adjustBrightness() throws Throwable {
+        return (BufferedImage) Ops.ADJUST_BRIGHTNESS.invokeExact(src, 32);
+    }
+
+    @Benchmark
+    public BufferedImage toGrayscale() throws Throwable {
+        return (BufferedImage) Ops.TO_GRAYSCALE.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage invert() throws Throwable {
+        return (BufferedImage) Ops.INVERT.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage threshold() throws Throwable {
+        return (BufferedImage) Ops.THRESHOLD.invokeExact(src, 128);
+    }
+
+    @Benchmark
+    public BufferedImage adaptiveThreshold() throws Throwable {
+        return (BufferedImage) Ops.ADAPTIVE_THRESHOLD.invokeExact(src);
+    }
+
+    /** Brillo + contraste + gamma fusionados: debería costar lo mismo que uno solo. */
+    @Benchmark
+    public BufferedImage applyPointOpChain() throws Throwable {
+        return (BufferedImage) Ops.APPLY_POINT_OP.invokeExact(src, pointOpChain);
+    }
+
+    @Benchmark
+    public BufferedImage resizeHalf() throws Throwable {
+        return (BufferedImage) Ops.RESIZE.invokeExact(src, src.getWidth() / 2, src.getHeight() / 2);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnail256() throws Throwable {
+        return (BufferedImage) Ops.THUMBNAIL.invokeExact(src, 256);
+    }
+
+    @Benchmark
+    public BufferedImage deepCopy() throws Throwable {
+        return (BufferedImage) Ops.DEEP_COPY.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage rotate90CW() throws Throwable {
+        return (BufferedImage) Ops.ROTATE_90_CW.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage rotate90CCW() throws Throwable {
+        return (BufferedImage) Ops.ROTATE_90_CCW.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage rotate180() throws Throwable {
+        return (BufferedImage) Ops.ROTATE_180.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage flipHorizontal() throws Throwable {
+        return (BufferedImage) Ops.FLIP_HORIZONTAL.invokeExact(src);
+    }
+
+    @Benchmark
+    public BufferedImage flipVertical() throws Throwable {
+        return (BufferedImage) Ops.FLIP_VERTICAL.invokeExact(src);
+    }
+}
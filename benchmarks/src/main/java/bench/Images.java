@@ -0,0 +1,40 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/** Imágenes sintéticas reproducibles para los benchmarks. */
+final class Images {
+
+    private Images() {}
+
+    static int type(String name) {
+        switch (name) {
+            case "INT_ARGB": return BufferedImage.TYPE_INT_ARGB;
+            case "INT_RGB": return BufferedImage.TYPE_INT_RGB;
+            case "3BYTE_BGR": return BufferedImage.TYPE_3BYTE_BGR;
+            case "BYTE_GRAY": return BufferedImage.TYPE_BYTE_GRAY;
+            default: throw new IllegalArgumentException("Tipo desconocido: " + name);
+        }
+    }
+
+    /** Imagen 4:3 de aproximadamente 'megapixels' MP con degradados y ruido (semilla fija). */
+    static BufferedImage create(int megapixels, String typeName) {
+        long pixels = megapixels * 1_000_000L;
+        int w = (int) Math.round(Math.sqrt(pixels * 4.0 / 3.0));
+        int h = (int) (pixels / w);
+        BufferedImage img = new BufferedImage(w, h, type(typeName));
+        Random rnd = new Random(42);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int r = (x * 255 / w + rnd.nextInt(32)) & 0xFF;
+                int g = (y * 255 / h + rnd.nextInt(32)) & 0xFF;
+                int b = ((x ^ y) + rnd.nextInt(32)) & 0xFF;
+                row[x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+            img.setRGB(0, y, w, 1, row, 0, w);
+        }
+        return img;
+    }
+}
@@ -0,0 +1,95 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Handles a las clases de la aplicación, que viven en el paquete por defecto y no se pueden
+ * importar desde un paquete con nombre (JMH exige uno). Al ser static final, el JIT los trata
+ * como constantes y invokeExact no añade coste medible frente a operaciones de milisegundos.
+ */
+final class Ops {
+
+    private Ops() {}
+
+    static final MethodHandle GAUSSIAN_BLUR = find("ImageOperations", "gaussianBlur",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, float.class));
+    static final MethodHandle SOBEL_EDGES = unary("ImageOperations", "sobelEdges");
+    static final MethodHandle GAUSSIAN_BLUR_APPROX = find("ImageOperations", "gaussianBlurApprox",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, float.class));
+    static final MethodHandle LOW_PASS_FILTER = unary("ImageOperations", "lowPassFilter");
+    static final MethodHandle EROSION = find("ImageOperations", "erosion",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle MEAN_FILTER = find("ImageOperations", "meanFilter",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle MEDIAN_FILTER = find("ImageOperations", "medianFilter",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle RESIZE = find("ImageOperations", "resize",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class, int.class));
+    static final MethodHandle THUMBNAIL = find("ImageOperations", "thumbnail",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle DEEP_COPY = unary("ImageOperations", "deepCopy");
+    static final MethodHandle ROTATE_90_CW = unary("ImageOperations", "rotate90CW");
+    static final MethodHandle ROTATE_90_CCW = unary("ImageOperations", "rotate90CCW");
+    static final MethodHandle ROTATE_180 = unary("ImageOperations", "rotate180");
+    static final MethodHandle FLIP_HORIZONTAL = unary("ImageOperations", "flipHorizontal");
+    static final MethodHandle FLIP_VERTICAL = unary("ImageOperations", "flipVertical");
+    static final MethodHandle ADJUST_BRIGHTNESS = find("ImageOperations", "adjustBrightness",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle TO_GRAYSCALE = unary("ImageOperations", "toGrayscale");
+    static final MethodHandle INVERT = unary("ImageOperations", "invert");
+    static final MethodHandle THRESHOLD = find("ImageOperations", "binarize",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, int.class));
+    static final MethodHandle ADAPTIVE_THRESHOLD = unary("ImageOperations", "binarize");
+    /** applyPointOp(BufferedImage, PointOp) con el PointOp visto como Object (ver pointOpChain). */
+    static final MethodHandle APPLY_POINT_OP = find("ImageOperations", "applyPointOp",
+            MethodType.methodType(BufferedImage.class, BufferedImage.class, type("PointOp")))
+            .asType(MethodType.methodType(BufferedImage.class, BufferedImage.class, Object.class));
+    static final MethodHandle CANNY_FILTER = unary("ImageOperations", "cannyFilter");
+    static final MethodHandle LAPLACIAN_FILTER = unary("ImageOperations", "laplacianFilter");
+    static final MethodHandle PREWITT_FILTER = unary("ImageOperations", "prewittFilter");
+    static final MethodHandle ROBERTS_FILTER = unary("ImageOperations", "robertsFilter");
+    static final MethodHandle HIGH_PASS_FILTER = unary("ImageOperations", "highPassFilter");
+    static final MethodHandle BAND_PASS_FILTER = unary("ImageOperations", "bandPassFilter");
+    static final MethodHandle SKELETONIZATION = unary("ImageOperations", "skeletonization");
+    static final MethodHandle WRITE = find("ImageFileService", "write",
+            MethodType.methodType(File.class, BufferedImage.class, File.class, String.class));
+
+    /** Brillo, contraste y gamma fusionados en un PointOp (una sola tabla y una sola pasada). */
+    static Object pointOpChain() {
+        Class<?> op = type("PointOp");
+        try {
+            MethodHandles.Lookup l = MethodHandles.publicLookup();
+            MethodHandle then = l.findVirtual(op, "then", MethodType.methodType(op, op));
+            Object brightness = l.findStatic(op, "brightness", MethodType.methodType(op, int.class)).invoke(20);
+            Object contrast = l.findStatic(op, "contrast", MethodType.methodType(op, double.class)).invoke(1.2);
+            Object gamma = l.findStatic(op, "gamma", MethodType.methodType(op, double.class)).invoke(1.8);
+            return then.invoke(then.invoke(brightness, contrast), gamma);
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle unary(String owner, String name) {
+        return find(owner, name, MethodType.methodType(BufferedImage.class, BufferedImage.class));
+    }
+
+    private static MethodHandle find(String owner, String name, MethodType type) {
+        try {
+            return MethodHandles.publicLookup().findStatic(Class.forName(owner), name, type);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+}